@@ -86,6 +86,16 @@ public enum NoxesiumFeature {
      * Fixes serialization of item stacks in rules.
      */
     FIXED_ITEM_STACK_SERIALIZATION(11),
+    /**
+     * Sends all qib interactions triggered in a single tick in one batched packet.
+     */
+    BATCHED_QIB_TRIGGERS(13),
+    /**
+     * Allows the server to pick the spatial index used to find colliding qibs.
+     *
+     * @see [ServerRuleIndices.QIB_SPATIAL_INDEX]
+     */
+    QIB_SPATIAL_INDEX_RULE(13),
     ;
 
     private final int minProtocolVersion;
@@ -10,7 +10,7 @@ public class ProtocolVersion {
      * of Noxesium is available on the client. The protocol version will increment every full release, as such
      * ít is recommended to work with >= comparisons.
      */
-    public static final int VERSION = 12;
+    public static final int VERSION = 13;
 
     /**
      * The name space to use for Noxesium.
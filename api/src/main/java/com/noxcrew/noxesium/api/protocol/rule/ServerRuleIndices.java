@@ -108,4 +108,10 @@ public class ServerRuleIndices {
      * Sets the amount of ticks the riptide has coyote time for.
      */
     public static final int RIPTIDE_COYOTE_TIME = 17;
+
+    /**
+     * Sets the type of spatial index used to find colliding qibs. Clients can
+     * override this in their configuration.
+     */
+    public static final int QIB_SPATIAL_INDEX = 18;
 }
@@ -0,0 +1,18 @@
+package com.noxcrew.noxesium.api.qib;
+
+/**
+ * All types of spatial index the client can use to find the interaction
+ * entities a player is colliding with.
+ */
+public enum QibSpatialIndexType {
+    /**
+     * A bounding volume hierarchy which handles entities of any size and
+     * distribution well.
+     */
+    TREE,
+    /**
+     * A uniform grid which is cheapest to update and query when entities are
+     * small and spread out evenly.
+     */
+    GRID,
+}
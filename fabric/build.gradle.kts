@@ -36,10 +36,6 @@ dependencies {
         api(this)
     }
 
-    // Add PRTree which we use for collision detection
-    include("org.khelekore:prtree:1.5")
-    implementation("org.khelekore:prtree:1.5")
-
     // Compatibility with other mods
     if (property("enableSodium") == "true") {
         modImplementation("maven.modrinth:sodium:${property("sodium")}")
@@ -54,6 +50,16 @@ dependencies {
             isTransitive = false
         }
     }
+
+    // Tests and the qib replay harness
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.launcher)
+    testImplementation(libs.jmh.core)
+    testAnnotationProcessor(libs.jmh.generator)
+
+    // PRTree is no longer used by the mod but kept around to benchmark against
+    testImplementation(libs.prtree)
 }
 
 java {
@@ -84,6 +90,36 @@ tasks {
         }
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
+    // Benchmarks replaying qib traces without starting the game, pass -PqibTraces to use traces recorded in-game
+    register<JavaExec>("qibReplay") {
+        group = "verification"
+        description = "Benchmarks replaying qib traces and reports the time and memory spent per tick."
+        classpath = sourceSets.test.get().runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+
+        // Pass every trace file in the given folder as a value of the trace parameter
+        val traces = file(providers.gradleProperty("qibTraces").getOrElse("src/test/resources/qib-traces"))
+        val paths = if (traces.isDirectory) {
+            traces.listFiles { trace -> trace.name.endsWith(".bin") }.orEmpty().sorted().map { it.path }
+        } else {
+            listOf(traces.path)
+        }
+        args("QibReplayBenchmark", "-prof", "gc", "-p", "trace=" + paths.joinToString(","))
+    }
+
+    // Runs the JMH benchmarks in the test source set, pass -PjmhArgs to pass arguments to JMH
+    register<JavaExec>("jmh") {
+        group = "verification"
+        description = "Runs the JMH benchmarks of the spatial indices."
+        classpath = sourceSets.test.get().runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        providers.gradleProperty("jmhArgs").orNull?.let { args(it.split(" ")) }
+    }
+
     withType<AbstractArchiveTask> {
         archiveBaseName.set("noxesium")
     }
@@ -9,8 +9,10 @@ import com.noxcrew.noxesium.feature.TeamGlowHotkeys;
 import com.noxcrew.noxesium.feature.entity.ExtraEntityData;
 import com.noxcrew.noxesium.feature.entity.ExtraEntityDataModule;
 import com.noxcrew.noxesium.feature.entity.QibBehaviorModule;
+import com.noxcrew.noxesium.feature.entity.QibMetricsModule;
+import com.noxcrew.noxesium.feature.entity.QibReplayModule;
 import com.noxcrew.noxesium.feature.entity.SpatialDebuggingModule;
-import com.noxcrew.noxesium.feature.entity.SpatialInteractionEntityTree;
+import com.noxcrew.noxesium.feature.entity.SpatialRebuildScheduler;
 import com.noxcrew.noxesium.feature.model.CustomServerCreativeItems;
 import com.noxcrew.noxesium.feature.rule.ServerRuleModule;
 import com.noxcrew.noxesium.feature.rule.ServerRules;
@@ -169,8 +171,11 @@ public class NoxesiumMod implements ClientModInitializer {
         registerModule(new NoxesiumPacketHandling());
         registerModule(new CustomServerCreativeItems());
         registerModule(new ExtraEntityDataModule());
+        registerModule(new QibMetricsModule());
+        registerModule(new QibReplayModule());
         registerModule(new QibBehaviorModule());
         registerModule(new SpatialDebuggingModule());
+        registerModule(new SpatialRebuildScheduler());
 
         // Every time the client joins a server we send over information on the version being used,
         // we initialize when both packets are known ad we are in the PLAY phase, whenever both have
@@ -249,23 +254,6 @@ public class NoxesiumMod implements ClientModInitializer {
                             }
                         }
                 );
-
-        // Run rebuilds on a separate thread to not destroy fps unnecessarily
-        var rebuildThread = new Thread("Noxesium Spatial Container Rebuild Thread") {
-            @Override
-            public void run() {
-                while (true) {
-                    try {
-                        Thread.sleep(2500);
-                        SpatialInteractionEntityTree.rebuild();
-                    } catch (InterruptedException ex) {
-                        return;
-                    }
-                }
-            }
-        };
-        rebuildThread.setDaemon(true);
-        rebuildThread.start();
     }
 
     /**
@@ -2,6 +2,8 @@ package com.noxcrew.noxesium.config;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import com.noxcrew.noxesium.feature.entity.SpatialInteractionEntityTree;
 import com.noxcrew.noxesium.feature.rule.ServerRules;
 import net.fabricmc.fabric.api.util.TriState;
 import net.fabricmc.loader.api.FabricLoader;
@@ -28,6 +30,8 @@ public class NoxesiumConfig {
     public boolean showFpsOverlay = false;
     public boolean showGameTimeOverlay = false;
     public boolean enableQibSystemDebugging = false;
+    public boolean showQibMetricsOverlay = false;
+    public boolean showUiInvalidationOverlay = false;
     public boolean enableExperimentalPerformancePatches = false;
     public boolean showGlowingSettings = false;
     public boolean dumpIncomingPackets = false;
@@ -35,12 +39,14 @@ public class NoxesiumConfig {
     public boolean printPacketExceptions = false;
     public double mapUiSize = 0.8;
     public MapLocation mapUiLocation = MapLocation.TOP;
+    public QibSpatialIndexType qibSpatialIndex = null;
 
     /**
-     * Returns whether experimental patches are available.
+     * Returns whether experimental patches are available. They are still off
+     * unless [enableExperimentalPerformancePatches] is set.
      */
     public boolean areExperimentalPatchesAvailable() {
-        return false;
+        return true;
     }
 
     /**
@@ -60,6 +66,17 @@ public class NoxesiumConfig {
         return renderMapsInUi.get();
     }
 
+    /**
+     * Returns the type of spatial index to use for qibs. Uses the server's
+     * choice unless one is configured.
+     */
+    public QibSpatialIndexType getQibSpatialIndex() {
+        if (qibSpatialIndex != null) {
+            return qibSpatialIndex;
+        }
+        return ServerRules.QIB_SPATIAL_INDEX.getValue().orElse(QibSpatialIndexType.TREE);
+    }
+
     /**
      * Whether the experimental performance patches should be used.
      */
@@ -97,6 +114,9 @@ public class NoxesiumConfig {
         } catch (Exception x) {
             x.printStackTrace();
         }
+
+        // Apply changes to the configured type of spatial index
+        SpatialInteractionEntityTree.selectIndex();
     }
 
     /**
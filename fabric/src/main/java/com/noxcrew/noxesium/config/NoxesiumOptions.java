@@ -69,6 +69,26 @@ public class NoxesiumOptions {
             }
     );
 
+    private static final OptionInstance<Boolean> qibMetricsOverlay = OptionInstance.createBoolean(
+            "noxesium.options.qib_metrics_overlay.name",
+            OptionInstance.cachedConstantTooltip(Component.translatable("noxesium.options.qib_metrics_overlay.tooltip")),
+            NoxesiumMod.getInstance().getConfig().showQibMetricsOverlay,
+            (newValue) -> {
+                NoxesiumMod.getInstance().getConfig().showQibMetricsOverlay = newValue;
+                NoxesiumMod.getInstance().getConfig().save();
+            }
+    );
+
+    private static final OptionInstance<Boolean> uiInvalidationOverlay = OptionInstance.createBoolean(
+            "noxesium.options.ui_invalidation_overlay.name",
+            OptionInstance.cachedConstantTooltip(Component.translatable("noxesium.options.ui_invalidation_overlay.tooltip")),
+            NoxesiumMod.getInstance().getConfig().showUiInvalidationOverlay,
+            (newValue) -> {
+                NoxesiumMod.getInstance().getConfig().showUiInvalidationOverlay = newValue;
+                NoxesiumMod.getInstance().getConfig().save();
+            }
+    );
+
     private static final OptionInstance<Boolean> extendedPacketLogging = OptionInstance.createBoolean(
             "noxesium.options.extended_packet_logging.name",
             OptionInstance.cachedConstantTooltip(Component.translatable("noxesium.options.extended_packet_logging.tooltip")),
@@ -113,6 +133,14 @@ public class NoxesiumOptions {
         return qibSystemDebugVisuals;
     }
 
+    public static OptionInstance<Boolean> qibMetricsOverlay() {
+        return qibMetricsOverlay;
+    }
+
+    public static OptionInstance<Boolean> uiInvalidationOverlay() {
+        return uiInvalidationOverlay;
+    }
+
     public static OptionInstance<Boolean> extendedPacketLogging() {
         return extendedPacketLogging;
     }
@@ -24,10 +24,11 @@ public class NoxesiumSettingsScreen extends OptionsSubScreen {
                 NoxesiumOptions.dumpOutgoingPackets(),
                 NoxesiumOptions.extendedPacketLogging(),
                 NoxesiumOptions.playerGlowingKeybinds(),
-                NoxesiumOptions.qibSystemDebugVisuals()
+                NoxesiumOptions.qibSystemDebugVisuals(),
+                NoxesiumOptions.qibMetricsOverlay()
         );
         if (NoxesiumMod.getInstance().getConfig().areExperimentalPatchesAvailable()) {
-            this.list.addSmall(NoxesiumOptions.experimentalPatches());
+            this.list.addSmall(NoxesiumOptions.experimentalPatches(), NoxesiumOptions.uiInvalidationOverlay());
         }
     }
 }
@@ -0,0 +1,33 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibDefinition;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A [QibDefinition] with all of its effects compiled into [QibProgram]s.
+ */
+public record CompiledQibDefinition(
+    @Nullable
+    QibProgram onEnter,
+    @Nullable
+    QibProgram onLeave,
+    @Nullable
+    QibProgram whileInside,
+    @Nullable
+    QibProgram onJump,
+    boolean triggerEnterLeaveOnSwitch
+) {
+
+    /**
+     * Compiles all effects of [definition].
+     */
+    public static CompiledQibDefinition compile(QibDefinition definition) {
+        return new CompiledQibDefinition(
+            QibProgram.compileNullable(definition.onEnter()),
+            QibProgram.compileNullable(definition.onLeave()),
+            QibProgram.compileNullable(definition.whileInside()),
+            QibProgram.compileNullable(definition.onJump()),
+            definition.triggerEnterLeaveOnSwitch()
+        );
+    }
+}
@@ -0,0 +1,699 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.doubles.DoubleCollection;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import net.minecraft.world.phys.AABB;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A dynamic bounding volume hierarchy of axis-aligned boxes which supports
+ * inserting, removing and moving individual values in O(log n) without
+ * having to rebuild the entire tree.
+ * <p>
+ * Leaves are stored with a slightly enlarged box so small movements of a value
+ * do not require it to be re-inserted. Whenever a leaf is inserted or removed
+ * the tree is re-balanced using AVL rotations to keep queries logarithmic.
+ * <p>
+ * Values are referenced by their integer id and all nodes are stored in flat
+ * arrays. Each leaf holds a copy of the exact box it was last given so queries
+ * never have to look at the original objects.
+ */
+public class DynamicAABBTree implements SpatialIndex {
+
+    /**
+     * The amount by which leaf boxes are enlarged in every direction.
+     */
+    private static final double FAT_MARGIN = 0.1;
+
+    /**
+     * The amount of doubles used to store a single box.
+     */
+    private static final int STRIDE = 6;
+
+    private static final int NULL = -1;
+
+    private final Int2IntMap leaves = new Int2IntOpenHashMap();
+
+    // Node storage, boxes are packed as [minX, minY, minZ, maxX, maxY, maxZ]
+    private double[] bounds;
+    private double[] exactBounds;
+    private int[] parent;
+    private int[] left;
+    private int[] right;
+    private int[] height;
+    private int[] values;
+
+    private int capacity;
+    private int freeList = NULL;
+    private int nextNode = 0;
+    private int root = NULL;
+    private int[] stack = new int[64];
+    private final SpatialSweep sweep = new SpatialSweep();
+    private int visited = 0;
+    private int candidates = 0;
+
+    public DynamicAABBTree() {
+        leaves.defaultReturnValue(NULL);
+        allocate(16);
+    }
+
+    /**
+     * Returns the amount of values stored in this tree.
+     */
+    @Override
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * Returns whether a value with the given [id] is stored in this tree.
+     */
+    @Override
+    public boolean contains(int id) {
+        return leaves.containsKey(id);
+    }
+
+    /**
+     * Returns an immutable copy of the exact boxes of all values in this tree
+     * marked with the given [generation].
+     */
+    @Override
+    public SpatialSnapshot snapshot(long generation) {
+        var ids = new int[leaves.size()];
+        var packed = new double[ids.length * STRIDE];
+        var index = 0;
+        for (var entry : Int2IntMaps.fastIterable(leaves)) {
+            ids[index] = entry.getIntKey();
+            System.arraycopy(exactBounds, entry.getIntValue() * STRIDE, packed, index * STRIDE, STRIDE);
+            index++;
+        }
+        return new SpatialSnapshot(generation, ids, packed);
+    }
+
+    /**
+     * Builds a balanced tree containing all entities in [snapshot] by recursively
+     * splitting them along their longest axis.
+     */
+    public static DynamicAABBTree build(SpatialSnapshot snapshot) {
+        var tree = new DynamicAABBTree();
+        var size = snapshot.size();
+        if (size == 0) return tree;
+
+        tree.allocate(Math.max(16, size * 2));
+        var packed = snapshot.getPackedBounds();
+        var nodes = new int[size];
+        for (var index = 0; index < size; index++) {
+            var leaf = tree.allocateNode();
+            var offset = index * STRIDE;
+            tree.values[leaf] = snapshot.getId(index);
+            tree.leaves.put(snapshot.getId(index), leaf);
+            tree.parent[leaf] = NULL;
+            tree.left[leaf] = NULL;
+            tree.right[leaf] = NULL;
+            tree.height[leaf] = 0;
+            System.arraycopy(packed, offset, tree.exactBounds, leaf * STRIDE, STRIDE);
+            setBox(tree.bounds, leaf,
+                packed[offset] - FAT_MARGIN, packed[offset + 1] - FAT_MARGIN, packed[offset + 2] - FAT_MARGIN,
+                packed[offset + 3] + FAT_MARGIN, packed[offset + 4] + FAT_MARGIN, packed[offset + 5] + FAT_MARGIN
+            );
+            nodes[index] = leaf;
+        }
+        tree.root = tree.buildRange(nodes, 0, size);
+        return tree;
+    }
+
+    /**
+     * Copies the stored box of the value with [id] into [target] starting at
+     * [offset], returns whether the value is in this tree.
+     */
+    @Override
+    public boolean copyBox(int id, double[] target, int offset) {
+        var leaf = leaves.get(id);
+        if (leaf == NULL) return false;
+        System.arraycopy(exactBounds, leaf * STRIDE, target, offset, STRIDE);
+        return true;
+    }
+
+    /**
+     * Copies the current state of the value with [id] to [target], removing
+     * it from [target] if it is not in this tree.
+     */
+    @Override
+    public void copyTo(int id, SpatialIndex target) {
+        var leaf = leaves.get(id);
+        if (leaf == NULL) {
+            target.remove(id);
+            return;
+        }
+
+        var offset = leaf * STRIDE;
+        target.update(id,
+            exactBounds[offset], exactBounds[offset + 1], exactBounds[offset + 2],
+            exactBounds[offset + 3], exactBounds[offset + 4], exactBounds[offset + 5]
+        );
+    }
+
+    /**
+     * Inserts or moves the value with the given [id] to the given box, returns
+     * whether the value was newly inserted.
+     */
+    @Override
+    public boolean update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var leaf = leaves.get(id);
+        var inserted = leaf == NULL;
+        if (!inserted) {
+            setBox(exactBounds, leaf, minX, minY, minZ, maxX, maxY, maxZ);
+
+            // If the fat box still contains the new box we don't need to move anything
+            if (encloses(leaf, minX, minY, minZ, maxX, maxY, maxZ)) return false;
+            removeLeaf(leaf);
+        } else {
+            leaf = allocateNode();
+            values[leaf] = id;
+            leaves.put(id, leaf);
+            setBox(exactBounds, leaf, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        setBox(bounds, leaf,
+            minX - FAT_MARGIN, minY - FAT_MARGIN, minZ - FAT_MARGIN,
+            maxX + FAT_MARGIN, maxY + FAT_MARGIN, maxZ + FAT_MARGIN
+        );
+        insertLeaf(leaf);
+        return inserted;
+    }
+
+    /**
+     * Removes the value with the given [id] from this tree.
+     */
+    @Override
+    public boolean remove(int id) {
+        var leaf = leaves.remove(id);
+        if (leaf == NULL) return false;
+        removeLeaf(leaf);
+        freeNode(leaf);
+        return true;
+    }
+
+    /**
+     * Removes all values from this tree.
+     */
+    @Override
+    public void clear() {
+        leaves.clear();
+        root = NULL;
+        freeList = NULL;
+        nextNode = 0;
+    }
+
+    @Override
+    public void drainStats(SpatialQueryStats stats) {
+        stats.visited += visited;
+        stats.candidates += candidates;
+        visited = 0;
+        candidates = 0;
+    }
+
+    /**
+     * Adds the ids of all values whose stored box clips [box] to [output].
+     */
+    @Override
+    public void find(AABB box, IntCollection output) {
+        if (root == NULL) return;
+
+        var minX = box.minX;
+        var minY = box.minY;
+        var minZ = box.minZ;
+        var maxX = box.maxX;
+        var maxY = box.maxY;
+        var maxZ = box.maxZ;
+
+        var top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            var node = stack[--top];
+            visited++;
+            if (!intersects(bounds, node, minX, minY, minZ, maxX, maxY, maxZ)) continue;
+
+            if (left[node] == NULL) {
+                candidates++;
+                // The tree stores enlarged boxes so we check the exact box again
+                if (intersects(exactBounds, node, minX, minY, minZ, maxX, maxY, maxZ)) {
+                    output.add(values[node]);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = left[node];
+                stack[top++] = right[node];
+            }
+        }
+    }
+
+    /**
+     * Adds the ids of all values whose stored box is clipped at any point by a box
+     * that moved by the given offset and ended up at [box] to [output]. Values are
+     * added in the order in which the moving box first touches them, together with
+     * the moment at which they were touched if [times] is given.
+     * <p>
+     * This is done by growing every box by the half extents of [box] and casting
+     * the center of the moving box along the movement through them.
+     */
+    @Override
+    public void sweep(AABB box, double dx, double dy, double dz, IntCollection output, @Nullable DoubleCollection times) {
+        if (root == NULL) return;
+
+        sweep.begin(box, dx, dy, dz);
+        var top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            var node = stack[--top];
+            visited++;
+            if (sweep.time(bounds, node * STRIDE) == SpatialSweep.MISS) continue;
+
+            if (left[node] == NULL) {
+                candidates++;
+                // The tree stores enlarged boxes so we check the exact box again
+                var time = sweep.time(exactBounds, node * STRIDE);
+                if (time != SpatialSweep.MISS) {
+                    sweep.hit(values[node], time);
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = left[node];
+                stack[top++] = right[node];
+            }
+        }
+        sweep.drainTo(output, times);
+    }
+
+    /**
+     * Returns the height of this tree, or -1 if it is empty.
+     */
+    int getHeight() {
+        return root == NULL ? -1 : height[root];
+    }
+
+    /**
+     * Checks that the links, heights and boxes of all nodes are consistent, throwing an
+     * [IllegalStateException] if they are not. This visits every node so it is only used by tests.
+     */
+    void validate() {
+        if (root == NULL) {
+            Preconditions.checkState(leaves.isEmpty(), "Tree without root has %s leaves", leaves.size());
+            return;
+        }
+        Preconditions.checkState(parent[root] == NULL, "Root %s has a parent", root);
+        var count = validate(root);
+        Preconditions.checkState(count == leaves.size(), "Found %s leaves but %s are stored", count, leaves.size());
+    }
+
+    /**
+     * Checks the subtree below [node] and returns the amount of leaves in it.
+     */
+    private int validate(int node) {
+        if (left[node] == NULL) {
+            Preconditions.checkState(right[node] == NULL, "Leaf %s has a right child", node);
+            Preconditions.checkState(height[node] == 0, "Leaf %s has height %s", node, height[node]);
+            Preconditions.checkState(leaves.get(values[node]) == node, "Leaf %s is not stored for value %s", node, values[node]);
+            Preconditions.checkState(encloses(node, exactBounds, node), "Leaf %s does not enclose its exact box", node);
+            return 1;
+        }
+
+        var leftChild = left[node];
+        var rightChild = right[node];
+        Preconditions.checkState(parent[leftChild] == node && parent[rightChild] == node, "Children of %s do not link back", node);
+        Preconditions.checkState(height[node] == 1 + Math.max(height[leftChild], height[rightChild]), "Node %s has the wrong height", node);
+        Preconditions.checkState(encloses(node, bounds, leftChild) && encloses(node, bounds, rightChild), "Node %s does not enclose its children", node);
+        return validate(leftChild) + validate(rightChild);
+    }
+
+    /**
+     * Returns whether the fat box of [node] fully contains the box of [other] in [array].
+     */
+    private boolean encloses(int node, double[] array, int other) {
+        var offset = other * STRIDE;
+        return encloses(node, array[offset], array[offset + 1], array[offset + 2], array[offset + 3], array[offset + 4], array[offset + 5]);
+    }
+
+    /**
+     * Builds a subtree out of the leaves in [nodes] between [from] and [to]
+     * and returns its root.
+     */
+    private int buildRange(int[] nodes, int from, int to) {
+        if (to - from == 1) return nodes[from];
+
+        // Determine the axis along which the centers of the leaves are spread out the most
+        var axis = 0;
+        var largestSpread = -1.0;
+        for (var candidate = 0; candidate < 3; candidate++) {
+            var min = Double.POSITIVE_INFINITY;
+            var max = Double.NEGATIVE_INFINITY;
+            for (var index = from; index < to; index++) {
+                var center = center(nodes[index], candidate);
+                min = Math.min(min, center);
+                max = Math.max(max, center);
+            }
+            if (max - min > largestSpread) {
+                largestSpread = max - min;
+                axis = candidate;
+            }
+        }
+
+        // Split the leaves in half along that axis
+        var splitAxis = axis;
+        IntArrays.quickSort(nodes, from, to, (a, b) -> Double.compare(center(a, splitAxis), center(b, splitAxis)));
+        var middle = (from + to) >>> 1;
+        var leftChild = buildRange(nodes, from, middle);
+        var rightChild = buildRange(nodes, middle, to);
+
+        var node = allocateNode();
+        parent[node] = NULL;
+        left[node] = leftChild;
+        right[node] = rightChild;
+        parent[leftChild] = node;
+        parent[rightChild] = node;
+        height[node] = 1 + Math.max(height[leftChild], height[rightChild]);
+        union(node, leftChild, rightChild);
+        return node;
+    }
+
+    /**
+     * Returns the center of the box of [node] on [axis], doubled to avoid a division.
+     */
+    private double center(int node, int axis) {
+        var offset = node * STRIDE;
+        return bounds[offset + axis] + bounds[offset + axis + 3];
+    }
+
+    /**
+     * Inserts [leaf] into the tree by descending towards the sibling
+     * which results in the smallest increase in surface area.
+     */
+    private void insertLeaf(int leaf) {
+        parent[leaf] = NULL;
+        left[leaf] = NULL;
+        right[leaf] = NULL;
+        height[leaf] = 0;
+
+        if (root == NULL) {
+            root = leaf;
+            return;
+        }
+
+        var index = root;
+        while (left[index] != NULL) {
+            var area = surfaceArea(index);
+            var combinedArea = combinedSurfaceArea(index, leaf);
+
+            // Cost of creating a new parent for this node and the new leaf
+            var cost = 2.0 * combinedArea;
+
+            // Minimum cost of pushing the leaf further down the tree
+            var inheritanceCost = 2.0 * (combinedArea - area);
+            var costLeft = descendCost(left[index], leaf) + inheritanceCost;
+            var costRight = descendCost(right[index], leaf) + inheritanceCost;
+
+            if (cost < costLeft && cost < costRight) break;
+            index = costLeft < costRight ? left[index] : right[index];
+        }
+
+        // Create a new parent that holds both the sibling and the leaf
+        var sibling = index;
+        var oldParent = parent[sibling];
+        var newParent = allocateNode();
+        parent[newParent] = oldParent;
+        height[newParent] = height[sibling] + 1;
+        union(newParent, leaf, sibling);
+
+        if (oldParent != NULL) {
+            if (left[oldParent] == sibling) {
+                left[oldParent] = newParent;
+            } else {
+                right[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        left[newParent] = sibling;
+        right[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        refit(newParent);
+    }
+
+    /**
+     * Removes [leaf] from the tree, its sibling takes the place of their parent.
+     */
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        var oldParent = parent[leaf];
+        var grandParent = parent[oldParent];
+        var sibling = left[oldParent] == leaf ? right[oldParent] : left[oldParent];
+        parent[leaf] = NULL;
+
+        if (grandParent != NULL) {
+            if (left[grandParent] == oldParent) {
+                left[grandParent] = sibling;
+            } else {
+                right[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(oldParent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(oldParent);
+        }
+    }
+
+    /**
+     * Walks up the tree from [node] re-balancing and updating the
+     * boxes and heights of all ancestors.
+     */
+    private void refit(int node) {
+        var index = node;
+        while (index != NULL) {
+            index = balance(index);
+            height[index] = 1 + Math.max(height[left[index]], height[right[index]]);
+            union(index, left[index], right[index]);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if [a] is imbalanced, returns the
+     * node that now holds the position of [a].
+     */
+    private int balance(int a) {
+        if (left[a] == NULL || height[a] < 2) return a;
+
+        var b = left[a];
+        var c = right[a];
+        var balance = height[c] - height[b];
+
+        // Rotate c up
+        if (balance > 1) {
+            var f = left[c];
+            var g = right[c];
+
+            left[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+
+            if (height[f] > height[g]) {
+                right[c] = f;
+                right[a] = g;
+                parent[g] = a;
+                union(a, b, g);
+                union(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                right[c] = g;
+                right[a] = f;
+                parent[f] = a;
+                union(a, b, f);
+                union(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+
+        // Rotate b up
+        if (balance < -1) {
+            var d = left[b];
+            var e = right[b];
+
+            left[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+
+            if (height[d] > height[e]) {
+                right[b] = d;
+                left[a] = e;
+                parent[e] = a;
+                union(a, c, e);
+                union(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                right[b] = e;
+                left[a] = d;
+                parent[d] = a;
+                union(a, c, d);
+                union(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Replaces [oldChild] with [newChild] in [parentNode], or makes [newChild] the root.
+     */
+    private void replaceChild(int parentNode, int oldChild, int newChild) {
+        if (parentNode == NULL) {
+            root = newChild;
+        } else if (left[parentNode] == oldChild) {
+            left[parentNode] = newChild;
+        } else {
+            right[parentNode] = newChild;
+        }
+    }
+
+    /**
+     * Returns a node index that can be used, growing the storage if necessary.
+     */
+    private int allocateNode() {
+        if (freeList != NULL) {
+            var node = freeList;
+            freeList = parent[node];
+            return node;
+        }
+        if (nextNode == capacity) {
+            allocate(capacity * 2);
+        }
+        return nextNode++;
+    }
+
+    /**
+     * Returns [node] to the free list.
+     */
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Grows the node storage to [newCapacity].
+     */
+    private void allocate(int newCapacity) {
+        bounds = bounds == null ? new double[newCapacity * STRIDE] : Arrays.copyOf(bounds, newCapacity * STRIDE);
+        exactBounds = exactBounds == null ? new double[newCapacity * STRIDE] : Arrays.copyOf(exactBounds, newCapacity * STRIDE);
+        parent = parent == null ? new int[newCapacity] : Arrays.copyOf(parent, newCapacity);
+        left = left == null ? new int[newCapacity] : Arrays.copyOf(left, newCapacity);
+        right = right == null ? new int[newCapacity] : Arrays.copyOf(right, newCapacity);
+        height = height == null ? new int[newCapacity] : Arrays.copyOf(height, newCapacity);
+        values = values == null ? new int[newCapacity] : Arrays.copyOf(values, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Stores the given box for [node] in [array].
+     */
+    private static void setBox(double[] array, int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var offset = node * STRIDE;
+        array[offset] = minX;
+        array[offset + 1] = minY;
+        array[offset + 2] = minZ;
+        array[offset + 3] = maxX;
+        array[offset + 4] = maxY;
+        array[offset + 5] = maxZ;
+    }
+
+    /**
+     * Sets the box of [target] to the union of the boxes of [a] and [b].
+     */
+    private void union(int target, int a, int b) {
+        var t = target * STRIDE;
+        var i = a * STRIDE;
+        var j = b * STRIDE;
+        bounds[t] = Math.min(bounds[i], bounds[j]);
+        bounds[t + 1] = Math.min(bounds[i + 1], bounds[j + 1]);
+        bounds[t + 2] = Math.min(bounds[i + 2], bounds[j + 2]);
+        bounds[t + 3] = Math.max(bounds[i + 3], bounds[j + 3]);
+        bounds[t + 4] = Math.max(bounds[i + 4], bounds[j + 4]);
+        bounds[t + 5] = Math.max(bounds[i + 5], bounds[j + 5]);
+    }
+
+    /**
+     * Returns whether the box of [node] in [array] clips the given box.
+     */
+    private static boolean intersects(double[] array, int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var offset = node * STRIDE;
+        return array[offset] < maxX && array[offset + 3] > minX &&
+            array[offset + 1] < maxY && array[offset + 4] > minY &&
+            array[offset + 2] < maxZ && array[offset + 5] > minZ;
+    }
+
+    /**
+     * Returns whether the fat box of [node] fully contains the given box.
+     */
+    private boolean encloses(int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var offset = node * STRIDE;
+        return bounds[offset] <= minX && bounds[offset + 1] <= minY && bounds[offset + 2] <= minZ &&
+            bounds[offset + 3] >= maxX && bounds[offset + 4] >= maxY && bounds[offset + 5] >= maxZ;
+    }
+
+    /**
+     * Returns the cost of inserting [leaf] below [node].
+     */
+    private double descendCost(int node, int leaf) {
+        var combined = combinedSurfaceArea(node, leaf);
+        return left[node] == NULL ? combined : combined - surfaceArea(node);
+    }
+
+    /**
+     * Returns the surface area of the box of [node].
+     */
+    private double surfaceArea(int node) {
+        var offset = node * STRIDE;
+        var x = bounds[offset + 3] - bounds[offset];
+        var y = bounds[offset + 4] - bounds[offset + 1];
+        var z = bounds[offset + 5] - bounds[offset + 2];
+        return 2.0 * (x * y + y * z + z * x);
+    }
+
+    /**
+     * Returns the surface area of the union of the boxes of [a] and [b].
+     */
+    private double combinedSurfaceArea(int a, int b) {
+        var i = a * STRIDE;
+        var j = b * STRIDE;
+        var x = Math.max(bounds[i + 3], bounds[j + 3]) - Math.min(bounds[i], bounds[j]);
+        var y = Math.max(bounds[i + 4], bounds[j + 4]) - Math.min(bounds[i + 1], bounds[j + 1]);
+        var z = Math.max(bounds[i + 5], bounds[j + 5]) - Math.min(bounds[i + 2], bounds[j + 2]);
+        return 2.0 * (x * y + y * z + z * x);
+    }
+}
@@ -34,4 +34,11 @@ public interface ExtraEntityDataHolder {
     public default void noxesium$resetExtraData(ClientServerRule<?> rule) {
         throw new UnsupportedOperationException("Unimplemented");
     }
+
+    /**
+     * Returns the interned id of this entity's qib behavior, or -1 if it has none.
+     */
+    public default int noxesium$getQibBehaviorId() {
+        return -1;
+    }
 }
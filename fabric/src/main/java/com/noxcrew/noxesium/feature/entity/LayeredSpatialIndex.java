@@ -0,0 +1,282 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleCollection;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import net.minecraft.world.phys.AABB;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A spatial index that stores values in one of two layers based on how often
+ * they move. Most values never move and are kept in a static layer which is
+ * expensive to update but fast to query. Values that move on most ticks, such
+ * as interaction entities riding a moving platform, are moved into a dynamic
+ * layer made of a coarse grid in which a value only has to be re-linked when it
+ * crosses into another cell.
+ * <p>
+ * Each value is stored in exactly one of the layers so both layers can be queried
+ * without having to remove duplicates. Values are moved back into the static
+ * layer once they have stopped moving for a while.
+ */
+public class LayeredSpatialIndex implements SpatialIndex {
+
+    /**
+     * The size of a single cell of the dynamic layer in blocks.
+     */
+    private static final double DYNAMIC_CELL_SIZE = 8.0;
+
+    /**
+     * The amount of ticks in a row a value has to move on to become dynamic.
+     */
+    private static final int PROMOTE_STREAK = 4;
+
+    /**
+     * The amount of ticks that can pass between two moves for them to count as
+     * being in a row.
+     */
+    private static final int STREAK_GAP = 2;
+
+    /**
+     * The amount of ticks a dynamic value has to stay in place to become static again.
+     */
+    private static final int DEMOTE_TICKS = 100;
+
+    /**
+     * The interval in ticks at which dynamic values are checked for being demoted.
+     */
+    private static final int DEMOTE_INTERVAL = 20;
+
+    private SpatialIndex staticLayer;
+    private final UniformGridIndex dynamicLayer = new UniformGridIndex(DYNAMIC_CELL_SIZE);
+
+    /**
+     * The tick each value last moved at and the amount of ticks in a row it moved on,
+     * only tracked for values that moved recently.
+     */
+    private final Int2LongMap lastMoved = new Int2LongOpenHashMap();
+    private final Int2IntMap streaks = new Int2IntOpenHashMap();
+    private long tick = 0L;
+    private long staticGeneration = 0L;
+
+    // Scratch lists used to merge the results of both layers
+    private final IntArrayList demoted = new IntArrayList();
+    private final IntArrayList staticHits = new IntArrayList();
+    private final DoubleArrayList staticTimes = new DoubleArrayList();
+    private final IntArrayList dynamicHits = new IntArrayList();
+    private final DoubleArrayList dynamicTimes = new DoubleArrayList();
+
+    public LayeredSpatialIndex(SpatialIndex staticLayer) {
+        this.staticLayer = staticLayer;
+        lastMoved.defaultReturnValue(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the layer storing all values that rarely move.
+     */
+    public SpatialIndex getStaticLayer() {
+        return staticLayer;
+    }
+
+    /**
+     * Replaces the static layer with [staticLayer] which should contain the same values.
+     */
+    public void setStaticLayer(SpatialIndex staticLayer) {
+        this.staticLayer = staticLayer;
+    }
+
+    /**
+     * Returns the layer storing all values that move often.
+     */
+    public SpatialIndex getDynamicLayer() {
+        return dynamicLayer;
+    }
+
+    /**
+     * Returns a counter that is increased whenever the values in the static layer change.
+     */
+    public long getStaticGeneration() {
+        return staticGeneration;
+    }
+
+    /**
+     * Returns the amount of values currently in the dynamic layer.
+     */
+    public int getDynamicSize() {
+        return dynamicLayer.size();
+    }
+
+    /**
+     * Returns whether the value with [id] is currently in the dynamic layer.
+     */
+    public boolean isDynamic(int id) {
+        return dynamicLayer.contains(id);
+    }
+
+    /**
+     * Copies the current state of the value with [id] to [target] if it is in the
+     * static layer, otherwise removes it from [target].
+     */
+    public void copyStaticTo(int id, SpatialIndex target) {
+        staticLayer.copyTo(id, target);
+    }
+
+    /**
+     * Advances the clock used to determine how often values move. Values that
+     * stopped moving are moved back into the static layer and passed to [onDemoted].
+     */
+    public void tick(IntConsumer onDemoted) {
+        tick++;
+        if (tick % DEMOTE_INTERVAL != 0 || lastMoved.isEmpty()) return;
+
+        for (var entry : Int2LongMaps.fastIterable(lastMoved)) {
+            if (tick - entry.getLongValue() >= DEMOTE_TICKS) {
+                demoted.add(entry.getIntKey());
+            }
+        }
+
+        for (var index = 0; index < demoted.size(); index++) {
+            var id = demoted.getInt(index);
+            lastMoved.remove(id);
+            streaks.remove(id);
+            if (dynamicLayer.contains(id)) {
+                dynamicLayer.copyTo(id, staticLayer);
+                dynamicLayer.remove(id);
+                staticGeneration++;
+                onDemoted.accept(id);
+            }
+        }
+        demoted.clear();
+    }
+
+    @Override
+    public int size() {
+        return staticLayer.size() + dynamicLayer.size();
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return staticLayer.contains(id) || dynamicLayer.contains(id);
+    }
+
+    @Override
+    public SpatialSnapshot snapshot(long generation) {
+        var staticSnapshot = staticLayer.snapshot(generation);
+        if (dynamicLayer.size() == 0) return staticSnapshot;
+
+        var dynamicSnapshot = dynamicLayer.snapshot(generation);
+        var staticSize = staticSnapshot.size();
+        var ids = new int[staticSize + dynamicSnapshot.size()];
+        var packed = new double[ids.length * 6];
+        for (var index = 0; index < staticSize; index++) {
+            ids[index] = staticSnapshot.getId(index);
+        }
+        for (var index = 0; index < dynamicSnapshot.size(); index++) {
+            ids[staticSize + index] = dynamicSnapshot.getId(index);
+        }
+        System.arraycopy(staticSnapshot.getPackedBounds(), 0, packed, 0, staticSize * 6);
+        System.arraycopy(dynamicSnapshot.getPackedBounds(), 0, packed, staticSize * 6, dynamicSnapshot.size() * 6);
+        return new SpatialSnapshot(generation, ids, packed);
+    }
+
+    @Override
+    public boolean copyBox(int id, double[] target, int offset) {
+        return staticLayer.copyBox(id, target, offset) || dynamicLayer.copyBox(id, target, offset);
+    }
+
+    @Override
+    public void copyTo(int id, SpatialIndex target) {
+        if (dynamicLayer.contains(id)) {
+            dynamicLayer.copyTo(id, target);
+        } else {
+            staticLayer.copyTo(id, target);
+        }
+    }
+
+    @Override
+    public boolean update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (dynamicLayer.contains(id)) {
+            lastMoved.put(id, tick);
+            dynamicLayer.update(id, minX, minY, minZ, maxX, maxY, maxZ);
+            return false;
+        }
+        staticGeneration++;
+        if (!staticLayer.contains(id)) {
+            return staticLayer.update(id, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        // Count the amount of ticks in a row this value has moved on
+        var last = lastMoved.put(id, tick);
+        var streak = streaks.get(id);
+        if (last != tick) {
+            streak = tick - last <= STREAK_GAP ? streak + 1 : 1;
+            streaks.put(id, streak);
+        }
+
+        if (streak >= PROMOTE_STREAK) {
+            streaks.remove(id);
+            staticLayer.remove(id);
+            dynamicLayer.update(id, minX, minY, minZ, maxX, maxY, maxZ);
+        } else {
+            staticLayer.update(id, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(int id) {
+        lastMoved.remove(id);
+        streaks.remove(id);
+        if (staticLayer.remove(id)) {
+            staticGeneration++;
+            return true;
+        }
+        return dynamicLayer.remove(id);
+    }
+
+    @Override
+    public void clear() {
+        staticGeneration++;
+        staticLayer.clear();
+        dynamicLayer.clear();
+        lastMoved.clear();
+        streaks.clear();
+    }
+
+    @Override
+    public void drainStats(SpatialQueryStats stats) {
+        staticLayer.drainStats(stats);
+        dynamicLayer.drainStats(stats);
+    }
+
+    @Override
+    public void find(AABB box, IntCollection output) {
+        staticLayer.find(box, output);
+        dynamicLayer.find(box, output);
+    }
+
+    @Override
+    public void sweep(AABB box, double dx, double dy, double dz, IntCollection output, @Nullable DoubleCollection times) {
+        if (dynamicLayer.size() == 0) {
+            staticLayer.sweep(box, dx, dy, dz, output, times);
+            return;
+        }
+
+        staticLayer.sweep(box, dx, dy, dz, staticHits, staticTimes);
+        dynamicLayer.sweep(box, dx, dy, dz, dynamicHits, dynamicTimes);
+
+        SpatialSweep.merge(staticHits, staticTimes, dynamicHits, dynamicTimes, output, times);
+
+        staticHits.clear();
+        staticTimes.clear();
+        dynamicHits.clear();
+        dynamicTimes.clear();
+    }
+}
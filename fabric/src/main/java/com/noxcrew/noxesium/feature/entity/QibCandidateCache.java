@@ -0,0 +1,158 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Caches the static interaction entities around the player so qib checks do
+ * not have to query the entire [LayeredSpatialIndex] every tick. A single query is made
+ * for a region around the player that is grown in the direction the player is
+ * moving in, and the entities it finds are tested directly until the player
+ * leaves the region or the static layer of the tree changes.
+ * <p>
+ * Entities in the dynamic layer of the tree move too often to be cached and
+ * are always looked up directly.
+ */
+public class QibCandidateCache {
+
+    /**
+     * The amount of ticks of movement to grow the region by.
+     */
+    private static final double PREDICTED_TICKS = 20.0;
+
+    /**
+     * The distance the region extends beyond the player in every direction.
+     */
+    private static final double MARGIN = 4.0;
+
+    /**
+     * The amount of doubles used to store a single box.
+     */
+    private static final int STRIDE = 6;
+
+    private final LayeredSpatialIndex index;
+    private final SpatialSweep sweep = new SpatialSweep();
+    private final IntArrayList candidates = new IntArrayList();
+    private double[] bounds = new double[16 * STRIDE];
+    @Nullable
+    private AABB region;
+    private long generation = -1L;
+    private int tested = 0;
+
+    // Scratch lists used to merge the results with the dynamic layer
+    private final IntArrayList staticHits = new IntArrayList();
+    private final DoubleArrayList staticTimes = new DoubleArrayList();
+    private final IntArrayList dynamicHits = new IntArrayList();
+    private final DoubleArrayList dynamicTimes = new DoubleArrayList();
+
+    /**
+     * Creates a new cache of the entities stored in [index].
+     */
+    public QibCandidateCache(LayeredSpatialIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Adds the ids of all entities that clip [box] to [output]. The player is
+     * expected to be moving at [velocity] blocks per tick.
+     */
+    public void find(AABB box, Vec3 velocity, IntCollection output) {
+        prepare(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, velocity);
+
+        for (var candidate = 0; candidate < candidates.size(); candidate++) {
+            var offset = candidate * STRIDE;
+            if (bounds[offset] < box.maxX && bounds[offset + 3] > box.minX &&
+                bounds[offset + 1] < box.maxY && bounds[offset + 4] > box.minY &&
+                bounds[offset + 2] < box.maxZ && bounds[offset + 5] > box.minZ) {
+                output.add(candidates.getInt(candidate));
+            }
+        }
+        tested += candidates.size();
+        index.getDynamicLayer().find(box, output);
+    }
+
+    /**
+     * Adds the ids of all entities clipped by [box] while it moved by the given
+     * offset to end up at its current position to [output], ordered by the moment
+     * at which they were first touched. The player is expected to be moving at
+     * [velocity] blocks per tick.
+     */
+    public void sweep(AABB box, double dx, double dy, double dz, Vec3 velocity, IntCollection output) {
+        prepare(
+            Math.min(box.minX, box.minX - dx),
+            Math.min(box.minY, box.minY - dy),
+            Math.min(box.minZ, box.minZ - dz),
+            Math.max(box.maxX, box.maxX - dx),
+            Math.max(box.maxY, box.maxY - dy),
+            Math.max(box.maxZ, box.maxZ - dz),
+            velocity
+        );
+
+        sweep.begin(box, dx, dy, dz);
+        for (var candidate = 0; candidate < candidates.size(); candidate++) {
+            var time = sweep.time(bounds, candidate * STRIDE);
+            if (time != SpatialSweep.MISS) {
+                sweep.hit(candidates.getInt(candidate), time);
+            }
+        }
+        tested += candidates.size();
+        sweep.drainTo(staticHits, staticTimes);
+
+        index.getDynamicLayer().sweep(box, dx, dy, dz, dynamicHits, dynamicTimes);
+        SpatialSweep.merge(staticHits, staticTimes, dynamicHits, dynamicTimes, output, null);
+        staticHits.clear();
+        staticTimes.clear();
+        dynamicHits.clear();
+        dynamicTimes.clear();
+    }
+
+    /**
+     * Adds the amount of cached entities tested since the last call to [stats].
+     */
+    public void drainStats(SpatialQueryStats stats) {
+        stats.candidates += tested;
+        tested = 0;
+    }
+
+    /**
+     * Forgets about the current region.
+     */
+    public void clear() {
+        region = null;
+        generation = -1L;
+        candidates.clear();
+    }
+
+    /**
+     * Ensures the cached region contains the given area, querying a new region
+     * if it does not or if the static layer of the tree has changed.
+     */
+    private void prepare(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Vec3 velocity) {
+        var currentGeneration = index.getStaticGeneration();
+        if (region != null && generation == currentGeneration &&
+            region.minX <= minX && region.minY <= minY && region.minZ <= minZ &&
+            region.maxX >= maxX && region.maxY >= maxY && region.maxZ >= maxZ) {
+            return;
+        }
+
+        region = new AABB(minX, minY, minZ, maxX, maxY, maxZ)
+            .expandTowards(velocity.x * PREDICTED_TICKS, velocity.y * PREDICTED_TICKS, velocity.z * PREDICTED_TICKS)
+            .inflate(MARGIN);
+        generation = currentGeneration;
+
+        candidates.clear();
+        index.getStaticLayer().find(region, candidates);
+        if (candidates.size() * STRIDE > bounds.length) {
+            bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, candidates.size() * STRIDE));
+        }
+        for (var candidate = 0; candidate < candidates.size(); candidate++) {
+            index.copyBox(candidates.getInt(candidate), bounds, candidate * STRIDE);
+        }
+    }
+}
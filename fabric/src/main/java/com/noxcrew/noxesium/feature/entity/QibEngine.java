@@ -0,0 +1,323 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibCondition;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * Determines which qib behaviors a player triggers as they move through the
+ * interaction entities stored in a [LayeredSpatialIndex] and runs their effects.
+ * The engine does not depend on a running client, everything it needs to know
+ * about the player and the world is provided by a [Context]. This allows the
+ * same logic to be replayed headlessly, see [QibReplay].
+ */
+public class QibEngine {
+
+    /**
+     * Provides the engine with access to the player and the world it is in.
+     */
+    public interface Context {
+
+        /**
+         * Returns the behavior id of the entity with [entityId], or -1 if it has none.
+         */
+        int getBehavior(int entityId);
+
+        /**
+         * Returns the compiled definition of the behavior with [behavior], or `null`
+         * if it is not defined.
+         */
+        @Nullable
+        CompiledQibDefinition getDefinition(int behavior);
+
+        /**
+         * Returns whether the player currently matches [condition].
+         */
+        boolean test(QibCondition condition);
+
+        /**
+         * Applies [instruction] to the player, only called for instructions that
+         * affect the player and not for those that control the program.
+         */
+        void apply(QibProgram.Instruction instruction);
+
+        /**
+         * Called whenever the player triggers the given type of behavior.
+         */
+        void onTrigger(int behavior, ServerboundQibTriggeredPacket.Type type, int entityId);
+    }
+
+    /**
+     * An effect waiting to be executed by [wheel].
+     */
+    private record ScheduledEffect(int entityId, int behavior, QibProgram program) {
+    }
+
+    private final QibCandidateCache candidates;
+    @Nullable
+    private AABB lastBoundingBox;
+
+    /**
+     * The tick of [wheel] at which the player started colliding with each behavior id and each entity id.
+     */
+    private final Int2LongMap collidingWithTypes = new Int2LongOpenHashMap();
+    private final Int2LongMap collidingWithEntities = new Int2LongOpenHashMap();
+
+    /**
+     * The behavior of each entity the player is colliding with, kept so leaving
+     * an entity that was removed in the meantime still triggers its behavior.
+     */
+    private final Int2IntMap collidingBehaviors = new Int2IntOpenHashMap();
+    private final IntSet triggeredJump = new IntOpenHashSet();
+    private final QibTimingWheel<ScheduledEffect> wheel = new QibTimingWheel<>();
+
+    // The context of the current tick, stored so the consumer of due effects only has to be created once
+    @Nullable
+    private Context tickContext;
+    private final Consumer<ScheduledEffect> runScheduled = (effect) -> execute(tickContext, effect.entityId(), effect.behavior(), effect.program());
+
+    // Re-used between ticks to avoid allocating new collections every tick
+    private final IntArrayList hits = new IntArrayList();
+    private final IntSet hitSet = new IntOpenHashSet();
+    private final IntSet collidingTypes = new IntOpenHashSet();
+
+    // Statistics about the last tick and the amount of effects executed since they were last drained
+    private long lastQueryNanos = 0L;
+    private int lastHits = 0;
+    private int executedEffects = 0;
+
+    /**
+     * Creates a new engine that finds interaction entities in [index].
+     */
+    public QibEngine(LayeredSpatialIndex index) {
+        this.candidates = new QibCandidateCache(index);
+        collidingBehaviors.defaultReturnValue(-1);
+    }
+
+    /**
+     * Returns the cache of interaction entities around the player.
+     */
+    public QibCandidateCache getCandidateCache() {
+        return candidates;
+    }
+
+    /**
+     * Returns the amount of effects waiting to be executed.
+     */
+    public int getScheduledEffects() {
+        return wheel.size();
+    }
+
+    /**
+     * Returns the time spent finding interaction entities in the last tick.
+     */
+    public long getLastQueryNanos() {
+        return lastQueryNanos;
+    }
+
+    /**
+     * Returns the amount of interaction entities the player clipped in the last tick.
+     */
+    public int getLastHits() {
+        return lastHits;
+    }
+
+    /**
+     * Returns the amount of effects executed since the last call and resets it.
+     */
+    public int drainExecutedEffects() {
+        var result = executedEffects;
+        executedEffects = 0;
+        return result;
+    }
+
+    /**
+     * Runs a single tick in which the player ended up at [boundingBox] while
+     * moving at [velocity] blocks per tick.
+     */
+    public void tick(AABB boundingBox, Vec3 velocity, Context context) {
+        // Run all scheduled effects that are due
+        tickContext = context;
+        wheel.advance(runScheduled);
+
+        // Sweep the hitbox from the last position to the current one so we
+        // collide with everything the player moved through this tick.
+        var started = System.nanoTime();
+        hits.clear();
+        if (lastBoundingBox != null) {
+            var dx = (boundingBox.minX + boundingBox.maxX - lastBoundingBox.minX - lastBoundingBox.maxX) / 2.0;
+            var dy = boundingBox.minY - lastBoundingBox.minY;
+            var dz = (boundingBox.minZ + boundingBox.maxZ - lastBoundingBox.minZ - lastBoundingBox.maxZ) / 2.0;
+            candidates.sweep(boundingBox, dx, dy, dz, velocity, hits);
+        } else {
+            candidates.find(boundingBox, velocity, hits);
+        }
+        lastQueryNanos = System.nanoTime() - started;
+        lastHits = hits.size();
+
+        checkForCollisions(context);
+        lastBoundingBox = boundingBox;
+    }
+
+    /**
+     * Triggers the jump behavior of all entities the player is colliding with.
+     */
+    public void jump(Context context) {
+        for (var entry : Int2LongMaps.fastIterable(collidingWithEntities)) {
+            // Don't trigger jumping twice for the same entity!
+            var entityId = entry.getIntKey();
+            if (triggeredJump.contains(entityId)) continue;
+
+            // Check the behavior of the entity
+            var behavior = collidingBehaviors.get(entityId);
+            var definition = context.getDefinition(behavior);
+            if (definition == null) continue;
+
+            // Try to trigger the jump behavior
+            if (definition.onJump() != null) {
+                context.onTrigger(behavior, ServerboundQibTriggeredPacket.Type.JUMP, entityId);
+                execute(context, entityId, behavior, definition.onJump());
+                triggeredJump.add(entityId);
+            }
+        }
+    }
+
+    /**
+     * Forgets about the last position of the player and all entities around it,
+     * including which entities it was colliding with and any effects still waiting
+     * to be executed.
+     */
+    public void clear() {
+        lastBoundingBox = null;
+        candidates.clear();
+        collidingWithTypes.clear();
+        collidingWithEntities.clear();
+        collidingBehaviors.clear();
+        triggeredJump.clear();
+        wheel.clear();
+        tickContext = null;
+        executedEffects = 0;
+    }
+
+    /**
+     * Returns the amount of ticks that have passed since [startTick], or 0 if the player is not [colliding].
+     */
+    private int getTicksSince(boolean colliding, long startTick) {
+        return colliding ? (int) (wheel.getTick() - startTick) : 0;
+    }
+
+    /**
+     * Triggers the behaviors of all entities in [hits] and of all entities the player stopped colliding with.
+     */
+    private void checkForCollisions(Context context) {
+        // Determine all current collisions
+        hitSet.clear();
+        collidingTypes.clear();
+        var collidingEntities = 0;
+        for (var index = 0; index < hits.size(); index++) {
+            var entityId = hits.getInt(index);
+            var behavior = context.getBehavior(entityId);
+            var firstHit = hitSet.add(entityId);
+
+            // Determine this entity's behavior
+            var definition = context.getDefinition(behavior);
+            if (definition == null) continue;
+
+            // Try to trigger the entry
+            if ((!definition.triggerEnterLeaveOnSwitch() && !collidingWithTypes.containsKey(behavior)) ||
+                (definition.triggerEnterLeaveOnSwitch() && !collidingWithEntities.containsKey(entityId))) {
+                if (definition.onEnter() != null) {
+                    context.onTrigger(behavior, ServerboundQibTriggeredPacket.Type.ENTER, entityId);
+                    execute(context, entityId, behavior, definition.onEnter());
+                }
+            }
+
+            // Always trigger the while inside logic
+            if (definition.whileInside() != null) {
+                context.onTrigger(behavior, ServerboundQibTriggeredPacket.Type.INSIDE, entityId);
+                execute(context, entityId, behavior, definition.whileInside());
+            }
+            if (firstHit) collidingEntities++;
+            collidingTypes.add(behavior);
+            collidingWithTypes.putIfAbsent(behavior, wheel.getTick());
+            collidingWithEntities.putIfAbsent(entityId, wheel.getTick());
+            collidingBehaviors.put(entityId, behavior);
+        }
+
+        // Only keep the types you are still colliding with, all current types were just
+        // added so if the sizes match there is nothing to remove. This avoids creating
+        // an iterator on ticks where nothing changes.
+        if (collidingWithTypes.size() != collidingTypes.size()) {
+            collidingWithTypes.keySet().retainAll(collidingTypes);
+        }
+        if (collidingWithEntities.size() == collidingEntities) return;
+
+        var iterator = collidingWithEntities.keySet().iterator();
+        while (iterator.hasNext()) {
+            // If you're still colliding with this entity we ignore it
+            var entityId = iterator.nextInt();
+            if (hitSet.contains(entityId)) continue;
+
+            // Remove them from the iterator
+            iterator.remove();
+
+            // Remove from triggered jump when you leave it
+            triggeredJump.remove(entityId);
+
+            // Determine this entity's behavior
+            var behavior = collidingBehaviors.remove(entityId);
+            var definition = context.getDefinition(behavior);
+            if (definition == null) continue;
+
+            // Execute the behavior if we always do or if you've left this type
+            if ((!definition.triggerEnterLeaveOnSwitch() && !collidingWithTypes.containsKey(behavior)) ||
+                (definition.triggerEnterLeaveOnSwitch() && !collidingWithEntities.containsKey(entityId))) {
+                if (definition.onLeave() != null) {
+                    context.onTrigger(behavior, ServerboundQibTriggeredPacket.Type.LEAVE, entityId);
+                    execute(context, entityId, behavior, definition.onLeave());
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes [program] triggered by the entity with [entityId] which has [behavior].
+     */
+    private void execute(Context context, int entityId, int behavior, QibProgram program) {
+        var instructions = program.instructions();
+        for (var index = 0; index < instructions.length; index++) {
+            executedEffects++;
+            switch (instructions[index]) {
+                case QibProgram.Conditional conditional -> {
+                    // Skip the nested effect if it does not match
+                    if (context.test(conditional.condition()) != conditional.value()) {
+                        index += conditional.skip();
+                    }
+                }
+                case QibProgram.Stay stay -> {
+                    var timeSpent = stay.global() ? getTicksSince(collidingWithTypes.containsKey(behavior), collidingWithTypes.get(behavior)) :
+                        getTicksSince(collidingWithEntities.containsKey(entityId), collidingWithEntities.get(entityId));
+
+                    // Skip the nested effect if we haven't been inside long enough
+                    if (timeSpent < stay.ticks()) {
+                        index += stay.skip();
+                    }
+                }
+                case QibProgram.Wait wait -> wheel.schedule(wait.ticks(), new ScheduledEffect(entityId, behavior, wait.program()));
+                default -> context.apply(instructions[index]);
+            }
+        }
+    }
+}
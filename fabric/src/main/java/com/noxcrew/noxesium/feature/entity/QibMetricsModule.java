@@ -0,0 +1,324 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mojang.brigadier.context.CommandContext;
+import com.noxcrew.noxesium.NoxesiumMod;
+import com.noxcrew.noxesium.NoxesiumModule;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.Util;
+import net.minecraft.network.chat.Component;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects performance metrics of the qib system over a rolling window of ticks.
+ * The metrics can be shown on the HUD and dumped to a file with the
+ * `/noxesium_qib_metrics` command. Besides the rolling window the time spent on
+ * queries is tracked per chunk so expensive parts of a map can be found.
+ * <p>
+ * Metrics are only collected while the overlay is shown or after recording was
+ * started with `/noxesium_qib_metrics record` until the next dump.
+ */
+public class QibMetricsModule implements NoxesiumModule {
+
+    /**
+     * The amount of ticks kept in each rolling window.
+     */
+    private static final int WINDOW = 200;
+
+    /**
+     * The amount of rebuilds kept in the rolling window of rebuilds.
+     */
+    private static final int REBUILD_WINDOW = 32;
+
+    /**
+     * The maximum amount of chunks included in a dump.
+     */
+    private static final int MAX_DUMPED_CHUNKS = 100;
+
+    /**
+     * The maximum amount of chunks tracked at once, once reached the chunk in which
+     * the least time was spent is forgotten to make room for a new one.
+     */
+    private static final int MAX_TRACKED_CHUNKS = 1024;
+
+    private final RollingHistogram queryTime = new RollingHistogram("Query time", true, WINDOW);
+    private final RollingHistogram visitedNodes = new RollingHistogram("Nodes visited", false, WINDOW);
+    private final RollingHistogram candidates = new RollingHistogram("Candidates", false, WINDOW);
+    private final RollingHistogram hits = new RollingHistogram("Hits", false, WINDOW);
+    private final RollingHistogram dynamicEntities = new RollingHistogram("Dynamic entities", false, WINDOW);
+    private final RollingHistogram scheduledEffects = new RollingHistogram("Scheduled effects", false, WINDOW);
+    private final RollingHistogram effectsExecuted = new RollingHistogram("Effects executed", false, WINDOW);
+    private final RollingHistogram packetsSent = new RollingHistogram("Packets sent", false, WINDOW);
+    private final RollingHistogram rebuildTime = new RollingHistogram("Rebuild time", true, REBUILD_WINDOW);
+    private final RollingHistogram rebuildSize = new RollingHistogram("Rebuild size", false, REBUILD_WINDOW);
+    private final List<RollingHistogram> histograms = List.of(
+        queryTime, visitedNodes, candidates, hits, dynamicEntities,
+        scheduledEffects, effectsExecuted, packetsSent, rebuildTime, rebuildSize
+    );
+
+    /**
+     * The totals of all ticks spent in a single chunk.
+     */
+    private static final class ChunkMetrics {
+        private int ticks;
+        private long queryNanos;
+        private long maxQueryNanos;
+        private long candidates;
+        private long hits;
+    }
+
+    private final Long2ObjectMap<ChunkMetrics> chunks = new Long2ObjectOpenHashMap<>();
+    private final SpatialQueryStats stats = new SpatialQueryStats();
+    private boolean recording = false;
+
+    @Override
+    public void onStartup() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, context) -> dispatcher.register(
+            ClientCommandManager.literal("noxesium_qib_metrics")
+                .then(ClientCommandManager.literal("record").executes((command) -> {
+                    clear();
+                    recording = true;
+                    command.getSource().sendFeedback(Component.literal("§eRecording qib metrics until the next dump"));
+                    return 1;
+                }))
+                .then(ClientCommandManager.literal("json").executes((command) -> dump(command, false)))
+                .then(ClientCommandManager.literal("csv").executes((command) -> dump(command, true)))
+                .then(ClientCommandManager.literal("reset").executes((command) -> {
+                    clear();
+                    command.getSource().sendFeedback(Component.literal("§eCleared all qib metrics"));
+                    return 1;
+                }))
+        ));
+    }
+
+    @Override
+    public void onQuitServer() {
+        clear();
+        recording = false;
+    }
+
+    /**
+     * Returns whether metrics should currently be recorded, which is the case while
+     * the overlay is shown or a dump is pending.
+     */
+    public boolean isRecording() {
+        return recording || NoxesiumMod.getInstance().getConfig().showQibMetricsOverlay;
+    }
+
+    /**
+     * Returns all histograms in the order they should be shown in.
+     */
+    public List<RollingHistogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Records the metrics of a single tick in which the player was at the given
+     * [x] and [z] coordinates.
+     */
+    public void recordTick(long queryNanos, int hitCount, int effectCount, int packetCount, double x, double z) {
+        var engine = NoxesiumMod.getInstance().getModule(QibBehaviorModule.class).getEngine();
+        stats.reset();
+        SpatialInteractionEntityTree.drainStats(stats);
+        engine.getCandidateCache().drainStats(stats);
+
+        queryTime.record(queryNanos);
+        visitedNodes.record(stats.visited);
+        candidates.record(stats.candidates);
+        hits.record(hitCount);
+        dynamicEntities.record(SpatialInteractionEntityTree.getDynamicSize());
+        scheduledEffects.record(engine.getScheduledEffects());
+        effectsExecuted.record(effectCount);
+        packetsSent.record(packetCount);
+
+        var key = ChunkPos.asLong(Mth.floor(x) >> 4, Mth.floor(z) >> 4);
+        var chunk = chunks.get(key);
+        if (chunk == null) {
+            if (chunks.size() >= MAX_TRACKED_CHUNKS) {
+                removeCheapestChunk();
+            }
+            chunk = new ChunkMetrics();
+            chunks.put(key, chunk);
+        }
+        chunk.ticks++;
+        chunk.queryNanos += queryNanos;
+        chunk.maxQueryNanos = Math.max(chunk.maxQueryNanos, queryNanos);
+        chunk.candidates += stats.candidates;
+        chunk.hits += hitCount;
+    }
+
+    /**
+     * Discards the statistics of a tick that is not recorded so they are not
+     * included in the next tick that is.
+     */
+    public void skipTick() {
+        SpatialInteractionEntityTree.drainStats(stats);
+        NoxesiumMod.getInstance().getModule(QibBehaviorModule.class).getEngine().getCandidateCache().drainStats(stats);
+        stats.reset();
+    }
+
+    /**
+     * Forgets about the chunk in which the least time was spent on queries.
+     */
+    private void removeCheapestChunk() {
+        var cheapest = 0L;
+        var cheapestNanos = Long.MAX_VALUE;
+        for (var entry : Long2ObjectMaps.fastIterable(chunks)) {
+            if (entry.getValue().queryNanos < cheapestNanos) {
+                cheapest = entry.getLongKey();
+                cheapestNanos = entry.getValue().queryNanos;
+            }
+        }
+        chunks.remove(cheapest);
+    }
+
+    /**
+     * Records a rebuild of the spatial tree with [size] entities that took [nanos].
+     */
+    public void recordRebuild(long nanos, int size) {
+        rebuildTime.record(nanos);
+        rebuildSize.record(size);
+    }
+
+    /**
+     * Removes all collected metrics.
+     */
+    public void clear() {
+        for (var histogram : histograms) {
+            histogram.clear();
+        }
+        chunks.clear();
+        skipTick();
+    }
+
+    /**
+     * Writes all metrics to a file in the debug folder as CSV if [csv] is set or JSON otherwise.
+     */
+    private int dump(CommandContext<FabricClientCommandSource> command, boolean csv) {
+        var folder = FabricLoader.getInstance().getGameDir().resolve("debug");
+        var name = "noxesium-qib-metrics-" + Util.getFilenameFormattedDateTime();
+        try {
+            Files.createDirectories(folder);
+            if (csv) {
+                writeCsv(folder.resolve(name + ".csv"), folder.resolve(name + "-chunks.csv"));
+            } else {
+                writeJson(folder.resolve(name + ".json"));
+            }
+            recording = false;
+            command.getSource().sendFeedback(Component.literal("§eWrote qib metrics to §f" + folder.resolve(name + (csv ? ".csv" : ".json"))));
+            return 1;
+        } catch (IOException x) {
+            NoxesiumMod.getInstance().getLogger().error("Caught exception while writing qib metrics", x);
+            command.getSource().sendError(Component.literal("Failed to write qib metrics, see the log for details"));
+            return 0;
+        }
+    }
+
+    /**
+     * Writes all metrics to [path] as JSON.
+     */
+    private void writeJson(Path path) throws IOException {
+        var root = new JsonObject();
+        root.addProperty("window", WINDOW);
+
+        var metrics = new JsonObject();
+        for (var histogram : histograms) {
+            var metric = new JsonObject();
+            metric.addProperty("unit", histogram.isNanos() ? "ns" : "count");
+            metric.addProperty("samples", histogram.size());
+            metric.addProperty("average", histogram.getAverage());
+            metric.addProperty("p50", histogram.getPercentile(0.5));
+            metric.addProperty("p95", histogram.getPercentile(0.95));
+            metric.addProperty("p99", histogram.getPercentile(0.99));
+            metric.addProperty("max", histogram.getMax());
+            var values = new JsonArray();
+            for (var value : histogram.getSamples()) {
+                values.add(value);
+            }
+            metric.add("values", values);
+            metrics.add(getKey(histogram), metric);
+        }
+        root.add("metrics", metrics);
+
+        var chunkArray = new JsonArray();
+        for (var entry : getMostExpensiveChunks()) {
+            var chunkMetrics = entry.getValue();
+            var chunk = new JsonObject();
+            chunk.addProperty("x", ChunkPos.getX(entry.getLongKey()));
+            chunk.addProperty("z", ChunkPos.getZ(entry.getLongKey()));
+            chunk.addProperty("ticks", chunkMetrics.ticks);
+            chunk.addProperty("query_nanos", chunkMetrics.queryNanos);
+            chunk.addProperty("max_query_nanos", chunkMetrics.maxQueryNanos);
+            chunk.addProperty("candidates", chunkMetrics.candidates);
+            chunk.addProperty("hits", chunkMetrics.hits);
+            chunkArray.add(chunk);
+        }
+        root.add("chunks", chunkArray);
+
+        Files.writeString(path, new GsonBuilder().setPrettyPrinting().create().toJson(root));
+    }
+
+    /**
+     * Writes a summary of all metrics to [path] and the metrics per chunk to [chunksPath] as CSV.
+     */
+    private void writeCsv(Path path, Path chunksPath) throws IOException {
+        var metrics = new StringBuilder("metric,unit,samples,average,p50,p95,p99,max\n");
+        for (var histogram : histograms) {
+            metrics.append(getKey(histogram)).append(',')
+                .append(histogram.isNanos() ? "ns" : "count").append(',')
+                .append(histogram.size()).append(',')
+                .append(String.format(Locale.ROOT, "%.2f", histogram.getAverage())).append(',')
+                .append(histogram.getPercentile(0.5)).append(',')
+                .append(histogram.getPercentile(0.95)).append(',')
+                .append(histogram.getPercentile(0.99)).append(',')
+                .append(histogram.getMax()).append('\n');
+        }
+        Files.writeString(path, metrics);
+
+        var chunkLines = new StringBuilder("x,z,ticks,query_nanos,max_query_nanos,candidates,hits\n");
+        for (var entry : getMostExpensiveChunks()) {
+            var chunk = entry.getValue();
+            chunkLines.append(ChunkPos.getX(entry.getLongKey())).append(',')
+                .append(ChunkPos.getZ(entry.getLongKey())).append(',')
+                .append(chunk.ticks).append(',')
+                .append(chunk.queryNanos).append(',')
+                .append(chunk.maxQueryNanos).append(',')
+                .append(chunk.candidates).append(',')
+                .append(chunk.hits).append('\n');
+        }
+        Files.writeString(chunksPath, chunkLines);
+    }
+
+    /**
+     * Returns the chunks in which the most time was spent on queries.
+     */
+    private List<Long2ObjectMap.Entry<ChunkMetrics>> getMostExpensiveChunks() {
+        var entries = new ArrayList<>(chunks.long2ObjectEntrySet());
+        entries.sort(Comparator.comparingLong((Long2ObjectMap.Entry<ChunkMetrics> entry) -> entry.getValue().queryNanos).reversed());
+        return entries.subList(0, Math.min(entries.size(), MAX_DUMPED_CHUNKS));
+    }
+
+    /**
+     * Returns the key used for [histogram] in dumps.
+     */
+    private static String getKey(RollingHistogram histogram) {
+        return histogram.getName().toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+}
@@ -0,0 +1,196 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibCondition;
+import com.noxcrew.noxesium.api.qib.QibEffect;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.sounds.SoundEvent;
+import net.minecraft.world.effect.MobEffect;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A [QibEffect] compiled into a flat list of instructions. All registry lookups
+ * are resolved once when the program is compiled, nested lists of effects are
+ * inlined and effects that only run conditionally are skipped over by jumping
+ * ahead in the list.
+ */
+public record QibProgram(Instruction[] instructions) {
+
+    /**
+     * A single instruction in a compiled qib program.
+     */
+    public sealed interface Instruction {
+    }
+
+    /**
+     * Skips the next [skip] instructions if [condition] does not equal [value].
+     */
+    public record Conditional(QibCondition condition, boolean value, int skip) implements Instruction {
+    }
+
+    /**
+     * Skips the next [skip] instructions if the player has not been inside for [ticks].
+     */
+    public record Stay(int ticks, boolean global, int skip) implements Instruction {
+    }
+
+    /**
+     * Runs [program] after [ticks] have passed.
+     */
+    public record Wait(int ticks, QibProgram program) implements Instruction {
+    }
+
+    /**
+     * Plays [sound].
+     */
+    public record PlaySound(SoundEvent sound, float volume, float pitch) implements Instruction {
+    }
+
+    /**
+     * Gives a client-side potion [effect].
+     */
+    public record GivePotionEffect(
+        @Nullable Holder<MobEffect> effect,
+        int duration,
+        int amplifier,
+        boolean ambient,
+        boolean visible,
+        boolean showIcon
+    ) implements Instruction {
+    }
+
+    /**
+     * Removes a client-side potion [effect].
+     */
+    public record RemovePotionEffect(@Nullable Holder<MobEffect> effect) implements Instruction {
+    }
+
+    /**
+     * Moves the player by [movement].
+     */
+    public record Move(Vec3 movement) implements Instruction {
+    }
+
+    /**
+     * Adds the given velocity.
+     */
+    public record AddVelocity(double x, double y, double z) implements Instruction {
+    }
+
+    /**
+     * Sets the velocity to the given value.
+     */
+    public record SetVelocity(double x, double y, double z) implements Instruction {
+    }
+
+    /**
+     * Sets the velocity based on a yaw and pitch in radians where at least one
+     * of them is relative to the player's rotation.
+     */
+    public record SetVelocityYawPitch(
+        double yaw,
+        boolean yawRelative,
+        double pitch,
+        boolean pitchRelative,
+        double strength,
+        double limit
+    ) implements Instruction {
+    }
+
+    /**
+     * Compiles [effect] into a program.
+     */
+    public static QibProgram compile(QibEffect effect) {
+        var instructions = new ArrayList<Instruction>();
+        compile(effect, instructions);
+        return new QibProgram(instructions.toArray(Instruction[]::new));
+    }
+
+    /**
+     * Compiles [effect] if it is not `null`.
+     */
+    @Nullable
+    public static QibProgram compileNullable(@Nullable QibEffect effect) {
+        return effect == null ? null : compile(effect);
+    }
+
+    /**
+     * Appends the instructions for [effect] to [output].
+     */
+    private static void compile(QibEffect effect, List<Instruction> output) {
+        switch (effect) {
+            case QibEffect.Multiple multiple -> {
+                for (var nested : multiple.effects()) {
+                    compile(nested, output);
+                }
+            }
+            case QibEffect.Stay stay -> {
+                var index = output.size();
+                output.add(null);
+                compile(stay.effect(), output);
+                output.set(index, new Stay(stay.ticks(), stay.global(), output.size() - index - 1));
+            }
+            case QibEffect.Wait wait -> output.add(new Wait(wait.ticks(), compile(wait.effect())));
+            case QibEffect.Conditional conditional -> {
+                var index = output.size();
+                output.add(null);
+                compile(conditional.effect(), output);
+                output.set(index, new Conditional(conditional.condition(), conditional.value(), output.size() - index - 1));
+            }
+            case QibEffect.PlaySound playSound -> output.add(new PlaySound(
+                SoundEvent.createVariableRangeEvent(ResourceLocation.fromNamespaceAndPath(playSound.namespace(), playSound.path())),
+                playSound.volume(),
+                playSound.pitch()
+            ));
+            case QibEffect.GivePotionEffect giveEffect -> output.add(new GivePotionEffect(
+                getMobEffect(giveEffect.namespace(), giveEffect.path()),
+                giveEffect.duration(),
+                giveEffect.amplifier(),
+                giveEffect.ambient(),
+                giveEffect.visible(),
+                giveEffect.showIcon()
+            ));
+            case QibEffect.RemovePotionEffect removeEffect -> output.add(new RemovePotionEffect(getMobEffect(removeEffect.namespace(), removeEffect.path())));
+            case QibEffect.Move move -> output.add(new Move(new Vec3(move.x(), move.y(), move.z())));
+            case QibEffect.AddVelocity addVelocity -> output.add(new AddVelocity(addVelocity.x(), addVelocity.y(), addVelocity.z()));
+            case QibEffect.SetVelocity setVelocity -> output.add(new SetVelocity(setVelocity.x(), setVelocity.y(), setVelocity.z()));
+            case QibEffect.SetVelocityYawPitch setVelocityYawPitch -> {
+                var yawRad = Math.toRadians(setVelocityYawPitch.yaw());
+                var pitchRad = Math.toRadians(setVelocityYawPitch.pitch());
+
+                // If neither angle depends on the player we can determine the velocity right away
+                if (!setVelocityYawPitch.yawRelative() && !setVelocityYawPitch.pitchRelative()) {
+                    var limit = setVelocityYawPitch.limit();
+                    var strength = setVelocityYawPitch.strength();
+                    output.add(new SetVelocity(
+                        Math.clamp(-Math.cos(pitchRad) * Math.sin(yawRad) * strength, -limit, limit),
+                        Math.clamp(-Math.sin(pitchRad) * strength, -limit, limit),
+                        Math.clamp(Math.cos(pitchRad) * Math.cos(yawRad) * strength, -limit, limit)
+                    ));
+                } else {
+                    output.add(new SetVelocityYawPitch(
+                        yawRad,
+                        setVelocityYawPitch.yawRelative(),
+                        pitchRad,
+                        setVelocityYawPitch.pitchRelative(),
+                        setVelocityYawPitch.strength(),
+                        setVelocityYawPitch.limit()
+                    ));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the mob effect with the given id.
+     */
+    @Nullable
+    private static Holder<MobEffect> getMobEffect(String namespace, String path) {
+        return BuiltInRegistries.MOB_EFFECT.get(ResourceLocation.fromNamespaceAndPath(namespace, path)).orElse(null);
+    }
+}
@@ -0,0 +1,170 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibDefinition;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores recorded traces of a player moving through a map of interaction
+ * entities so they can be replayed against a [QibEngine] without a running
+ * client. A trace stores the qib definitions, the box and behavior of every
+ * interaction entity and the box, velocity and state of the player on every
+ * tick, together with a checksum of all behaviors triggered while recording.
+ * <p>
+ * Traces are recorded in-game with `/noxesium_qib_replay`, see [QibReplayModule].
+ * They are replayed by the `qibReplay` Gradle task and the tests, and their
+ * layouts are used to benchmark the types of [SpatialIndex] through `jmh`.
+ */
+public class QibReplay {
+
+    /**
+     * The version of the format traces are written in.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The flags storing the state of the player on a single tick.
+     */
+    public static final byte ON_GROUND = 1;
+    public static final byte IN_WATER = 1 << 1;
+    public static final byte IN_WATER_OR_RAIN = 1 << 2;
+    public static final byte GLIDING = 1 << 3;
+    public static final byte RIPTIDING = 1 << 4;
+    public static final byte JUMPED = 1 << 5;
+
+    /**
+     * A recorded trace. The behavior of the entity at each index of [layout] is
+     * stored in [behaviors], which is `null` for entities without one. The player
+     * ended up at [boxes] on each tick while moving at [velocities] with the state
+     * in [flags]. [checksum] is the checksum of all behaviors triggered while recording.
+     */
+    public record Trace(
+        Map<String, QibDefinition> definitions,
+        SpatialSnapshot layout,
+        String[] behaviors,
+        AABB[] boxes,
+        Vec3[] velocities,
+        byte[] flags,
+        long checksum
+    ) {
+
+        /**
+         * Returns the amount of ticks in this trace.
+         */
+        public int size() {
+            return boxes.length;
+        }
+    }
+
+    /**
+     * Writes [trace] to [path].
+     */
+    public static void write(Trace trace, Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(VERSION);
+            output.writeLong(trace.checksum());
+
+            output.writeInt(trace.definitions().size());
+            for (var entry : trace.definitions().entrySet()) {
+                output.writeUTF(entry.getKey());
+                var json = QibDefinition.QIB_GSON.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(json.length);
+                output.write(json);
+            }
+
+            var layout = trace.layout();
+            var packed = layout.getPackedBounds();
+            output.writeInt(layout.size());
+            for (var index = 0; index < layout.size(); index++) {
+                output.writeInt(layout.getId(index));
+                output.writeUTF(trace.behaviors()[index] == null ? "" : trace.behaviors()[index]);
+                for (var offset = index * 6; offset < index * 6 + 6; offset++) {
+                    output.writeDouble(packed[offset]);
+                }
+            }
+
+            output.writeInt(trace.size());
+            for (var tick = 0; tick < trace.size(); tick++) {
+                var box = trace.boxes()[tick];
+                var velocity = trace.velocities()[tick];
+                output.writeDouble(box.minX);
+                output.writeDouble(box.minY);
+                output.writeDouble(box.minZ);
+                output.writeDouble(box.maxX);
+                output.writeDouble(box.maxY);
+                output.writeDouble(box.maxZ);
+                output.writeDouble(velocity.x);
+                output.writeDouble(velocity.y);
+                output.writeDouble(velocity.z);
+                output.writeByte(trace.flags()[tick]);
+            }
+        }
+    }
+
+    /**
+     * Reads a trace previously written to [path].
+     */
+    public static Trace read(Path path) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            var version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported qib trace version " + version + " in " + path);
+            }
+            var checksum = input.readLong();
+
+            var definitionCount = input.readInt();
+            var definitions = new HashMap<String, QibDefinition>(definitionCount);
+            for (var index = 0; index < definitionCount; index++) {
+                var name = input.readUTF();
+                var json = new byte[input.readInt()];
+                input.readFully(json);
+                definitions.put(name, QibDefinition.QIB_GSON.fromJson(new String(json, StandardCharsets.UTF_8), QibDefinition.class));
+            }
+
+            var size = input.readInt();
+            var ids = new int[size];
+            var behaviors = new String[size];
+            var packed = new double[size * 6];
+            for (var index = 0; index < size; index++) {
+                ids[index] = input.readInt();
+                var behavior = input.readUTF();
+                behaviors[index] = behavior.isEmpty() ? null : behavior;
+                for (var offset = index * 6; offset < index * 6 + 6; offset++) {
+                    packed[offset] = input.readDouble();
+                }
+            }
+
+            var ticks = input.readInt();
+            var boxes = new AABB[ticks];
+            var velocities = new Vec3[ticks];
+            var flags = new byte[ticks];
+            for (var tick = 0; tick < ticks; tick++) {
+                boxes[tick] = new AABB(input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble(), input.readDouble());
+                velocities[tick] = new Vec3(input.readDouble(), input.readDouble(), input.readDouble());
+                flags[tick] = input.readByte();
+            }
+            return new Trace(definitions, new SpatialSnapshot(0L, ids, packed), behaviors, boxes, velocities, flags, checksum);
+        }
+    }
+
+    /**
+     * Adds a trigger of [behavior] by the entity with [entityId] to [checksum].
+     */
+    public static long updateChecksum(long checksum, String behavior, ServerboundQibTriggeredPacket.Type type, int entityId) {
+        var value = ((long) behavior.hashCode() << 32) ^ ((long) type.ordinal() << 24) ^ entityId;
+        return checksum * 1_000_003L + value;
+    }
+}
@@ -0,0 +1,196 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.mojang.brigadier.context.CommandContext;
+import com.noxcrew.noxesium.NoxesiumMod;
+import com.noxcrew.noxesium.NoxesiumModule;
+import com.noxcrew.noxesium.api.qib.QibDefinition;
+import com.noxcrew.noxesium.feature.rule.ServerRules;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandManager;
+import net.fabricmc.fabric.api.client.command.v2.ClientCommandRegistrationCallback;
+import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.Util;
+import net.minecraft.client.player.LocalPlayer;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records traces of the local player moving through interaction entities in the
+ * format of [QibReplay], controlled through the `/noxesium_qib_replay` command.
+ * The layout of interaction entities is taken when a recording starts, entities
+ * that move afterwards are replayed at the position they were at back then.
+ * Traces are replayed headlessly by the `qibReplay` Gradle task.
+ */
+public class QibReplayModule implements NoxesiumModule {
+
+    /**
+     * The maximum amount of ticks in a single recording, equal to 30 minutes.
+     */
+    private static final int MAX_TICKS = 20 * 60 * 30;
+
+    /**
+     * The current recording, if any.
+     */
+    private static final class Recording {
+        private final Map<String, QibDefinition> definitions;
+        private final SpatialSnapshot layout;
+        private final String[] behaviors;
+        private final ObjectArrayList<AABB> boxes = new ObjectArrayList<>();
+        private final ObjectArrayList<Vec3> velocities = new ObjectArrayList<>();
+        private final ByteArrayList flags = new ByteArrayList();
+        private boolean jumped;
+        private long checksum;
+
+        private Recording(Map<String, QibDefinition> definitions, SpatialSnapshot layout, String[] behaviors) {
+            this.definitions = definitions;
+            this.layout = layout;
+            this.behaviors = behaviors;
+        }
+    }
+
+    @Nullable
+    private Recording recording;
+
+    @Override
+    public void onStartup() {
+        ClientCommandRegistrationCallback.EVENT.register((dispatcher, context) -> dispatcher.register(
+            ClientCommandManager.literal("noxesium_qib_replay")
+                .then(ClientCommandManager.literal("record").executes(this::startRecording))
+                .then(ClientCommandManager.literal("stop").executes(this::stopRecording))
+        ));
+    }
+
+    @Override
+    public void onQuitServer() {
+        // Save whatever was recorded before leaving
+        if (recording != null) {
+            save(recording);
+            recording = null;
+        }
+    }
+
+    /**
+     * Records the state of [player] at the start of a qib tick.
+     */
+    public void onTick(LocalPlayer player) {
+        if (recording == null) return;
+
+        var flags = 0;
+        if (player.onGround()) flags |= QibReplay.ON_GROUND;
+        if (player.isInWater()) flags |= QibReplay.IN_WATER;
+        if (player.isInWaterOrRain()) flags |= QibReplay.IN_WATER_OR_RAIN;
+        if (player.isFallFlying()) flags |= QibReplay.GLIDING;
+        if (player.isAutoSpinAttack()) flags |= QibReplay.RIPTIDING;
+        if (recording.jumped) flags |= QibReplay.JUMPED;
+        recording.jumped = false;
+
+        recording.boxes.add(player.getBoundingBox());
+        recording.velocities.add(player.getDeltaMovement());
+        recording.flags.add((byte) flags);
+
+        // Stop automatically so a forgotten recording does not take up all memory
+        if (recording.boxes.size() >= MAX_TICKS) {
+            save(recording);
+            recording = null;
+        }
+    }
+
+    /**
+     * Records that the player jumped, which is replayed before the next tick.
+     */
+    public void onJump() {
+        if (recording == null) return;
+        recording.jumped = true;
+    }
+
+    /**
+     * Records that the player triggered the given type of behavior.
+     */
+    public void onTrigger(int behavior, ServerboundQibTriggeredPacket.Type type, int entityId) {
+        if (recording == null) return;
+        recording.checksum = QibReplay.updateChecksum(recording.checksum, ServerRules.QIB_BEHAVIORS.getName(behavior), type, entityId);
+    }
+
+    /**
+     * Starts a new recording from the current layout of interaction entities.
+     */
+    private int startRecording(CommandContext<FabricClientCommandSource> command) {
+        if (recording != null) {
+            command.getSource().sendError(Component.literal("Already recording a qib trace, stop it first"));
+            return 0;
+        }
+
+        SpatialInteractionEntityTree.publishSnapshot();
+        var layout = SpatialInteractionEntityTree.getSnapshot();
+        var world = command.getSource().getWorld();
+        var behaviors = new String[layout.size()];
+        for (var index = 0; index < layout.size(); index++) {
+            var entity = world.getEntity(layout.getId(index));
+            var behavior = entity == null ? -1 : entity.noxesium$getQibBehaviorId();
+            behaviors[index] = ServerRules.QIB_BEHAVIORS.getDefinition(behavior) == null ? null : ServerRules.QIB_BEHAVIORS.getName(behavior);
+        }
+
+        recording = new Recording(new HashMap<>(ServerRules.QIB_BEHAVIORS.getValue()), layout, behaviors);
+        command.getSource().sendFeedback(Component.literal("§eStarted recording a qib trace with §f" + layout.size() + "§e entities"));
+        return 1;
+    }
+
+    /**
+     * Stops the current recording and writes it to a file.
+     */
+    private int stopRecording(CommandContext<FabricClientCommandSource> command) {
+        if (recording == null) {
+            command.getSource().sendError(Component.literal("Not recording a qib trace"));
+            return 0;
+        }
+
+        var path = save(recording);
+        recording = null;
+        if (path == null) {
+            command.getSource().sendError(Component.literal("Failed to write qib trace, see the log for details"));
+            return 0;
+        }
+        command.getSource().sendFeedback(Component.literal("§eWrote qib trace to §f" + path));
+        return 1;
+    }
+
+    /**
+     * Writes [recording] to a new file, returns the file or `null` if it could not be written.
+     */
+    @Nullable
+    private Path save(Recording recording) {
+        var path = getFolder().resolve("trace-" + Util.getFilenameFormattedDateTime() + ".bin");
+        var trace = new QibReplay.Trace(
+            recording.definitions,
+            recording.layout,
+            recording.behaviors,
+            recording.boxes.toArray(AABB[]::new),
+            recording.velocities.toArray(Vec3[]::new),
+            recording.flags.toByteArray(),
+            recording.checksum
+        );
+        try {
+            QibReplay.write(trace, path);
+            return path;
+        } catch (Exception x) {
+            NoxesiumMod.getInstance().getLogger().error("Caught exception while writing qib trace", x);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the folder traces are stored in.
+     */
+    private static Path getFolder() {
+        return FabricLoader.getInstance().getGameDir().resolve("debug").resolve("noxesium-qib-traces");
+    }
+}
@@ -0,0 +1,117 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel that schedules values to be run after a given amount
+ * of ticks. Each value is stored in the slot of the tick it should run at, so
+ * scheduling a value and advancing the wheel only touches the values in a single
+ * slot and ticks without any scheduled values do no work at all.
+ * <p>
+ * The wheel also serves as the clock for qib timers, the current tick can be
+ * compared against a tick stored earlier to determine how much time has passed.
+ */
+public class QibTimingWheel<T> {
+
+    /**
+     * The amount of slots in the wheel, values scheduled further ahead than this
+     * are kept in their slot for multiple rotations.
+     */
+    private static final int SLOTS = 64;
+    private static final int MASK = SLOTS - 1;
+
+    private final LongArrayList[] ticks = new LongArrayList[SLOTS];
+    @SuppressWarnings("unchecked")
+    private final List<T>[] values = new List[SLOTS];
+    private final List<T> due = new ArrayList<>();
+    private long tick = 0L;
+    private int size = 0;
+
+    public QibTimingWheel() {
+        for (var slot = 0; slot < SLOTS; slot++) {
+            ticks[slot] = new LongArrayList();
+            values[slot] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the current tick of this wheel.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the amount of values currently scheduled.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules [value] to run after [delay] ticks. Values are always run on
+     * a later tick, so a delay below one is treated as one.
+     */
+    public void schedule(int delay, T value) {
+        var target = tick + Math.max(delay, 1);
+        var slot = (int) (target & MASK);
+        ticks[slot].add(target);
+        values[slot].add(value);
+        size++;
+    }
+
+    /**
+     * Advances the wheel by one tick and passes all values that are due to [consumer].
+     */
+    public void advance(Consumer<T> consumer) {
+        tick++;
+        if (size == 0) return;
+
+        var slot = (int) (tick & MASK);
+        var slotTicks = ticks[slot];
+        if (slotTicks.isEmpty()) return;
+
+        // Move all values that are due out of the slot before running them so
+        // values scheduled while running them can safely be added to any slot
+        var slotValues = values[slot];
+        var kept = 0;
+        for (var index = 0; index < slotTicks.size(); index++) {
+            var target = slotTicks.getLong(index);
+            var value = slotValues.get(index);
+            if (target <= tick) {
+                due.add(value);
+            } else {
+                slotTicks.set(kept, target);
+                slotValues.set(kept, value);
+                kept++;
+            }
+        }
+        slotTicks.size(kept);
+        slotValues.subList(kept, slotValues.size()).clear();
+        size -= due.size();
+
+        try {
+            for (var value : due) {
+                consumer.accept(value);
+            }
+        } finally {
+            due.clear();
+        }
+    }
+
+    /**
+     * Removes all scheduled values.
+     */
+    public void clear() {
+        if (size == 0) return;
+        for (var slot = 0; slot < SLOTS; slot++) {
+            ticks[slot].clear();
+            values[slot].clear();
+        }
+        size = 0;
+    }
+}
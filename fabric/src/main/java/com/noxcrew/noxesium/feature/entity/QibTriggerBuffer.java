@@ -0,0 +1,117 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.NoxesiumMod;
+import com.noxcrew.noxesium.api.protocol.NoxesiumFeature;
+import com.noxcrew.noxesium.feature.rule.ServerRules;
+import com.noxcrew.noxesium.network.NoxesiumPackets;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredBatchPacket;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+
+import java.util.ArrayList;
+
+/**
+ * Collects all qib interactions triggered during a tick so they can be sent
+ * to the server together. Servers that support [NoxesiumFeature.BATCHED_QIB_TRIGGERS]
+ * receive a single packet per tick, other servers receive one packet per trigger.
+ */
+public class QibTriggerBuffer {
+
+    private static final ServerboundQibTriggeredPacket.Type[] TYPES = ServerboundQibTriggeredPacket.Type.values();
+
+    private final Long2IntOpenHashMap indices = new Long2IntOpenHashMap();
+    private final IntArrayList behaviors = new IntArrayList();
+    private final IntArrayList types = new IntArrayList();
+    private final IntArrayList entityIds = new IntArrayList();
+    private final IntArrayList counts = new IntArrayList();
+
+    public QibTriggerBuffer() {
+        indices.defaultReturnValue(-1);
+    }
+
+    /**
+     * Marks down that the behavior with id [behavior] was triggered for [entityId].
+     */
+    public void add(int behavior, ServerboundQibTriggeredPacket.Type type, int entityId) {
+        var key = ((long) entityId << 32) | ((((long) behavior << 2) | type.ordinal()) & 0xFFFFFFFFL);
+        var index = indices.get(key);
+        if (index != -1) {
+            counts.set(index, counts.getInt(index) + 1);
+            return;
+        }
+
+        indices.put(key, behaviors.size());
+        behaviors.add(behavior);
+        types.add(type.ordinal());
+        entityIds.add(entityId);
+        counts.add(1);
+    }
+
+    /**
+     * Sends all collected triggers to the server, returns the amount of packets sent.
+     */
+    public int flush() {
+        if (behaviors.isEmpty()) return 0;
+
+        try {
+            if (canSendBatch()) {
+                sendBatch();
+                return 1;
+            }
+
+            var sent = 0;
+            for (var index = 0; index < behaviors.size(); index++) {
+                var packet = new ServerboundQibTriggeredPacket(ServerRules.QIB_BEHAVIORS.getName(behaviors.getInt(index)), TYPES[types.getInt(index)], entityIds.getInt(index));
+                for (var repeat = 0; repeat < counts.getInt(index); repeat++) {
+                    packet.send();
+                    sent++;
+                }
+            }
+            return sent;
+        } finally {
+            clear();
+        }
+    }
+
+    /**
+     * Removes all collected triggers without sending them.
+     */
+    public void clear() {
+        indices.clear();
+        behaviors.clear();
+        types.clear();
+        entityIds.clear();
+        counts.clear();
+    }
+
+    /**
+     * Returns whether the server supports receiving batched triggers.
+     */
+    private boolean canSendBatch() {
+        if (NoxesiumMod.getInstance().getMaxProtocolVersion() < NoxesiumFeature.BATCHED_QIB_TRIGGERS.getMinProtocolVersion()) return false;
+        var type = NoxesiumPackets.SERVER_QIB_TRIGGERED_BATCH;
+        return ClientPlayNetworking.canSend(type.type) && NoxesiumPackets.canSend(type);
+    }
+
+    /**
+     * Sends all collected triggers in a single packet.
+     */
+    private void sendBatch() {
+        // Only send the name of each behavior once
+        var names = new ArrayList<String>();
+        var nameIndices = new Int2IntOpenHashMap();
+        var entries = new ArrayList<ServerboundQibTriggeredBatchPacket.Entry>(behaviors.size());
+        for (var index = 0; index < behaviors.size(); index++) {
+            var behavior = behaviors.getInt(index);
+            var nameIndex = nameIndices.computeIfAbsent(behavior, (id) -> {
+                names.add(ServerRules.QIB_BEHAVIORS.getName(id));
+                return names.size() - 1;
+            });
+            entries.add(new ServerboundQibTriggeredBatchPacket.Entry(nameIndex, TYPES[types.getInt(index)], entityIds.getInt(index), counts.getInt(index)));
+        }
+        new ServerboundQibTriggeredBatchPacket(names, entries).send();
+    }
+}
@@ -0,0 +1,124 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last few samples of a metric so its distribution over a recent
+ * window can be inspected. Recording a sample never allocates, sorting only
+ * happens when percentiles are requested.
+ */
+public class RollingHistogram {
+
+    private final String name;
+    private final boolean nanos;
+    private final long[] samples;
+    private final long[] sorted;
+    private int next = 0;
+    private int size = 0;
+    private boolean dirty = false;
+
+    /**
+     * Creates a new histogram called [name] keeping the last [window] samples.
+     * If [nanos] is set the samples are durations in nanoseconds.
+     */
+    public RollingHistogram(String name, boolean nanos, int window) {
+        this.name = name;
+        this.nanos = nanos;
+        this.samples = new long[window];
+        this.sorted = new long[window];
+    }
+
+    /**
+     * Returns the name of this histogram.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether the samples in this histogram are durations in nanoseconds.
+     */
+    public boolean isNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns the amount of samples currently in the window.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds [value] to the window, replacing the oldest sample if it is full.
+     */
+    public void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        dirty = true;
+    }
+
+    /**
+     * Returns the samples in the window from oldest to newest.
+     */
+    public long[] getSamples() {
+        var result = new long[size];
+        var start = size < samples.length ? 0 : next;
+        for (var index = 0; index < size; index++) {
+            result[index] = samples[(start + index) % samples.length];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the average of all samples in the window.
+     */
+    public double getAverage() {
+        if (size == 0) return 0.0;
+        var total = 0L;
+        for (var index = 0; index < size; index++) {
+            total += samples[index];
+        }
+        return (double) total / size;
+    }
+
+    /**
+     * Returns the smallest sample such that [fraction] of all samples are at most it.
+     */
+    public long getPercentile(double fraction) {
+        if (size == 0) return 0L;
+        if (dirty) {
+            System.arraycopy(samples, 0, sorted, 0, size);
+            Arrays.sort(sorted, 0, size);
+            dirty = false;
+        }
+        var index = (int) Math.ceil(fraction * size) - 1;
+        return sorted[Math.clamp(index, 0, size - 1)];
+    }
+
+    /**
+     * Returns the largest sample in the window.
+     */
+    public long getMax() {
+        return getPercentile(1.0);
+    }
+
+    /**
+     * Formats [value] for display in the unit of this histogram.
+     */
+    public String format(double value) {
+        if (!nanos) return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.1f", value);
+        if (value >= 1_000_000.0) return String.format("%.2fms", value / 1_000_000.0);
+        return String.format("%.1fµs", value / 1_000.0);
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void clear() {
+        next = 0;
+        size = 0;
+        dirty = false;
+    }
+}
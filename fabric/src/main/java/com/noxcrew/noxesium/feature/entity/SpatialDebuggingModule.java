@@ -1,31 +1,93 @@
 package com.noxcrew.noxesium.feature.entity;
 
+import com.mojang.blaze3d.buffers.BufferUsage;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
-import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.ByteBufferBuilder;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.PoseStack;
-import com.mojang.blaze3d.vertex.Tesselator;
+import com.mojang.blaze3d.vertex.VertexBuffer;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.NoxesiumModule;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
 import net.minecraft.SharedConstants;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.CoreShaders;
 import net.minecraft.client.renderer.ShapeRenderer;
 import net.minecraft.util.profiling.Profiler;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL32;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 /**
  * Helps in debugging the spatial interaction tree.
+ * <p>
+ * The outlines of all entities in the tree are uploaded into a single buffer
+ * which is only rebuilt when a new snapshot of the tree is published, so the
+ * view can be drawn with a single draw call regardless of the amount of entities.
  */
 public class SpatialDebuggingModule implements NoxesiumModule {
 
+    /**
+     * The amount of vertices used to draw the outline of a single box.
+     */
+    private static final int VERTICES_PER_BOX = 24;
+
+    /**
+     * The amount of ticks for which added, moved and removed entities are highlighted.
+     */
+    private static final int HIGHLIGHT_TICKS = 20;
+
+    private static final Color STATIC_COLOR = new Color(255, 214, 31);
+    private static final Color DYNAMIC_COLOR = new Color(31, 196, 255);
+    private static final Color PENDING_COLOR = new Color(85, 255, 85);
+    private static final Color REMOVED_COLOR = new Color(255, 64, 64);
+
+    /**
+     * An entity that was recently removed from the tree and was last at [box].
+     */
+    private record RemovedEntity(AABB box, long until) {
+    }
+
+    // The cached buffer with the outlines of all entities and the snapshot it was built from
+    @Nullable
+    private VertexBuffer buffer;
+    @Nullable
+    private SpatialSnapshot lastSnapshot;
+    private Vec3 origin = Vec3.ZERO;
+    private boolean dirty = false;
+
+    // All entities that changed recently and the tick at which they should stop being highlighted
+    private final Int2LongMap pending = new Int2LongOpenHashMap();
+    private final Int2ObjectMap<RemovedEntity> removed = new Int2ObjectOpenHashMap<>();
+    private long nextExpiry = Long.MAX_VALUE;
+    private long ticks = 0L;
+
     @Override
     public void onStartup() {
+        ClientTickEvents.END_CLIENT_TICK.register((ignored) -> {
+            // Publish a new snapshot of the tree for the debug views to show
+            if (NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging) {
+                SpatialInteractionEntityTree.publishSnapshot();
+                ticks++;
+            } else if (lastSnapshot != null) {
+                reset();
+            }
+        });
+
         WorldRenderEvents.AFTER_TRANSLUCENT.register(ctx -> {
             // If Fabulous mode is used we want to render earlier!
             if (ctx.advancedTranslucency()) {
@@ -41,15 +103,53 @@ public class SpatialDebuggingModule implements NoxesiumModule {
         });
     }
 
+    @Override
+    public void onQuitServer() {
+        reset();
+    }
+
+    /**
+     * Frees the cached buffer and forgets about all highlighted entities.
+     */
+    private void reset() {
+        closeBuffer();
+        lastSnapshot = null;
+        pending.clear();
+        removed.clear();
+        nextExpiry = Long.MAX_VALUE;
+        dirty = false;
+    }
+
+    /**
+     * Draws the cached boxes of all entities in the tree.
+     */
     private void onRenderHook() {
         if (!NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging) return;
 
         // Don't show this view when rendering hitboxes!
         if (Minecraft.getInstance().getEntityRenderDispatcher().shouldRenderHitBoxes()) return;
 
-        var models = SpatialInteractionEntityTree.getModelContents();
-
         Profiler.get().push("noxesium-debug");
+        var camera = Minecraft.getInstance().gameRenderer.getMainCamera().getPosition();
+        var snapshot = SpatialInteractionEntityTree.getSnapshot();
+        if (snapshot != lastSnapshot) {
+            compareSnapshots(lastSnapshot, snapshot);
+            lastSnapshot = snapshot;
+            dirty = true;
+        }
+        if (ticks >= nextExpiry) {
+            expireHighlights();
+            dirty = true;
+        }
+        if (dirty) {
+            dirty = false;
+            rebuildBuffer(snapshot, camera);
+        }
+        if (buffer == null) {
+            Profiler.get().pop();
+            return;
+        }
+
         RenderSystem.disableCull();
         RenderSystem.enableBlend();
         RenderSystem.enableDepthTest();
@@ -59,37 +159,141 @@ public class SpatialDebuggingModule implements NoxesiumModule {
         final var oldShader = RenderSystem.getShader();
         RenderSystem.setShader(CoreShaders.RENDERTYPE_LINES);
         RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
+        RenderSystem.lineWidth(2.0f);
+        RenderSystem.depthFunc(GL32.GL_ALWAYS);
+
+        // The buffer is stored relative to the camera position at the time it was built
+        var modelView = new Matrix4f(RenderSystem.getModelViewMatrix()).translate(
+            (float) (origin.x - camera.x),
+            (float) (origin.y - camera.y),
+            (float) (origin.z - camera.z)
+        );
+        buffer.bind();
+        buffer.drawWithShader(modelView, RenderSystem.getProjectionMatrix(), RenderSystem.getShader());
+        VertexBuffer.unbind();
+
+        RenderSystem.depthFunc(GL32.GL_LEQUAL);
+        RenderSystem.setShader(oldShader);
+        RenderSystem.disableBlend();
+        RenderSystem.enableCull();
+
+        Profiler.get().pop();
+    }
 
-        var vec3 = Minecraft.getInstance().gameRenderer.getMainCamera().getPosition();
-        var poseStack = new PoseStack();
-        poseStack.translate(-vec3.x, -vec3.y, -vec3.z);
+    /**
+     * Highlights all entities that were added, moved or removed between [previous] and [current].
+     */
+    private void compareSnapshots(@Nullable SpatialSnapshot previous, SpatialSnapshot current) {
+        // Don't highlight everything when the view is first opened
+        if (previous == null) return;
+
+        var until = ticks + HIGHLIGHT_TICKS;
+        var previousBounds = previous.getPackedBounds();
+        var currentBounds = current.getPackedBounds();
+        for (var index = 0; index < current.size(); index++) {
+            var id = current.getId(index);
+            var previousIndex = previous.indexOf(id);
+            if (previousIndex == -1 || !Arrays.equals(previousBounds, previousIndex * 6, previousIndex * 6 + 6, currentBounds, index * 6, index * 6 + 6)) {
+                pending.put(id, until);
+                removed.remove(id);
+                nextExpiry = Math.min(nextExpiry, until);
+            }
+        }
+        for (var index = 0; index < previous.size(); index++) {
+            var id = previous.getId(index);
+            if (!current.contains(id)) {
+                pending.remove(id);
+                removed.put(id, new RemovedEntity(previous.getBox(index), until));
+                nextExpiry = Math.min(nextExpiry, until);
+            }
+        }
+    }
 
-        var color = new Color(255, 214, 31);
+    /**
+     * Removes all highlights that have been shown for long enough.
+     */
+    private void expireHighlights() {
+        nextExpiry = Long.MAX_VALUE;
+        for (var iterator = Int2LongMaps.fastIterator(pending); iterator.hasNext(); ) {
+            var until = iterator.next().getLongValue();
+            if (until <= ticks) {
+                iterator.remove();
+            } else {
+                nextExpiry = Math.min(nextExpiry, until);
+            }
+        }
+        for (var iterator = removed.values().iterator(); iterator.hasNext(); ) {
+            var until = iterator.next().until();
+            if (until <= ticks) {
+                iterator.remove();
+            } else {
+                nextExpiry = Math.min(nextExpiry, until);
+            }
+        }
+    }
 
-        for (var model : models) {
-            RenderSystem.lineWidth(2.0f);
-            RenderSystem.depthFunc(GL32.GL_ALWAYS);
+    /**
+     * Uploads the boxes of all entities in [snapshot] and all recently removed
+     * entities into the cached buffer, relative to [camera].
+     */
+    private void rebuildBuffer(SpatialSnapshot snapshot, Vec3 camera) {
+        var boxes = snapshot.size() + removed.size();
+        if (boxes == 0) {
+            closeBuffer();
+            return;
+        }
 
-            // Start the buffer after setting up the depth settings
-            var buffer = Tesselator.getInstance().begin(VertexFormat.Mode.LINES, DefaultVertexFormat.POSITION_COLOR_NORMAL);
+        origin = camera;
+        var format = DefaultVertexFormat.POSITION_COLOR_NORMAL;
+        try (var memory = new ByteBufferBuilder(boxes * VERTICES_PER_BOX * format.getVertexSize())) {
+            var builder = new BufferBuilder(memory, VertexFormat.Mode.LINES, format);
+            var poseStack = new PoseStack();
             try {
-                ShapeRenderer.renderLineBox(poseStack, buffer, model, color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, 1.0F);
+                for (var index = 0; index < snapshot.size(); index++) {
+                    var id = snapshot.getId(index);
+                    var color = pending.containsKey(id) ? PENDING_COLOR : SpatialInteractionEntityTree.isDynamic(id) ? DYNAMIC_COLOR : STATIC_COLOR;
+                    renderBox(poseStack, builder, snapshot.getBox(index), color);
+                }
+                for (var entity : removed.values()) {
+                    renderBox(poseStack, builder, entity.box(), REMOVED_COLOR);
+                }
             } catch (Exception x) {
                 // Ignore exceptions from in here
                 if (SharedConstants.IS_RUNNING_IN_IDE) throw x;
-            } finally {
-                var meshdata = buffer.build();
-                if (meshdata != null) {
-                    BufferUploader.drawWithShader(meshdata);
-                }
             }
+
+            var meshdata = builder.build();
+            if (meshdata == null) {
+                closeBuffer();
+                return;
+            }
+            if (buffer == null) {
+                buffer = new VertexBuffer(BufferUsage.DYNAMIC_WRITE);
+            }
+            buffer.bind();
+            buffer.upload(meshdata);
+            VertexBuffer.unbind();
         }
+    }
 
-        RenderSystem.depthFunc(GL32.GL_LEQUAL);
-        RenderSystem.setShader(oldShader);
-        RenderSystem.disableBlend();
-        RenderSystem.enableCull();
+    /**
+     * Adds the outline of [box] relative to the origin of the buffer to [builder].
+     */
+    private void renderBox(PoseStack poseStack, BufferBuilder builder, AABB box, Color color) {
+        ShapeRenderer.renderLineBox(poseStack, builder,
+            box.minX - origin.x, box.minY - origin.y, box.minZ - origin.z,
+            box.maxX - origin.x, box.maxY - origin.y, box.maxZ - origin.z,
+            color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, 1.0F
+        );
+    }
 
-        Profiler.get().pop();
+    /**
+     * Closes the cached buffer.
+     */
+    private void closeBuffer() {
+        if (buffer != null) {
+            buffer.close();
+            buffer = null;
+        }
     }
 }
@@ -0,0 +1,103 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import it.unimi.dsi.fastutil.doubles.DoubleCollection;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import net.minecraft.world.phys.AABB;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A spatial index of axis-aligned boxes referenced by integer ids. Each value
+ * holds a copy of the exact box it was last given so queries never have to
+ * look at the original objects.
+ */
+public interface SpatialIndex {
+
+    /**
+     * Builds an index of the given [type] containing all entities in [snapshot].
+     */
+    static SpatialIndex build(QibSpatialIndexType type, SpatialSnapshot snapshot) {
+        return switch (type) {
+            case TREE -> DynamicAABBTree.build(snapshot);
+            case GRID -> UniformGridIndex.build(snapshot);
+        };
+    }
+
+    /**
+     * Returns the amount of values stored in this index.
+     */
+    int size();
+
+    /**
+     * Returns whether a value with the given [id] is stored in this index.
+     */
+    boolean contains(int id);
+
+    /**
+     * Returns an immutable copy of the exact boxes of all values in this index
+     * marked with the given [generation].
+     */
+    SpatialSnapshot snapshot(long generation);
+
+    /**
+     * Copies the stored box of the value with [id] into [target] starting at
+     * [offset], returns whether the value is in this index.
+     */
+    boolean copyBox(int id, double[] target, int offset);
+
+    /**
+     * Copies the current state of the value with [id] to [target], removing
+     * it from [target] if it is not in this index.
+     */
+    void copyTo(int id, SpatialIndex target);
+
+    /**
+     * Inserts or moves the value with the given [id] to [box], returns
+     * whether the value was newly inserted.
+     */
+    default boolean update(int id, AABB box) {
+        return update(id, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+    }
+
+    /**
+     * Inserts or moves the value with the given [id] to the given box, returns
+     * whether the value was newly inserted.
+     */
+    boolean update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ);
+
+    /**
+     * Removes the value with the given [id] from this index.
+     */
+    boolean remove(int id);
+
+    /**
+     * Removes all values from this index.
+     */
+    void clear();
+
+    /**
+     * Adds the work done by all queries since the last call to [stats] and
+     * resets the counters of this index.
+     */
+    void drainStats(SpatialQueryStats stats);
+
+    /**
+     * Adds the ids of all values whose stored box clips [box] to [output].
+     */
+    void find(AABB box, IntCollection output);
+
+    /**
+     * Adds the ids of all values whose stored box is clipped at any point by a box
+     * that moved by the given offset and ended up at [box] to [output]. Values are
+     * added in the order in which the moving box first touches them.
+     */
+    default void sweep(AABB box, double dx, double dy, double dz, IntCollection output) {
+        sweep(box, dx, dy, dz, output, null);
+    }
+
+    /**
+     * Performs the same query as [sweep] and also adds the moment between 0 and 1
+     * at which the moving box first touches each value to [times] if it is given.
+     */
+    void sweep(AABB box, double dx, double dy, double dz, IntCollection output, @Nullable DoubleCollection times);
+}
@@ -1,175 +1,242 @@
 package com.noxcrew.noxesium.feature.entity;
 
 import com.noxcrew.noxesium.NoxesiumMod;
-import net.minecraft.client.Minecraft;
-import net.minecraft.network.chat.Component;
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.Interaction;
 import net.minecraft.world.phys.AABB;
 import org.jetbrains.annotations.Nullable;
-import org.khelekore.prtree.PRTree;
-import org.khelekore.prtree.SimpleMBR;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Stores a spatial tree with the locations of all interaction entities.
+ * The tree is updated in place whenever an interaction entity moves so
+ * it never has to be rebuilt. The tree only stores entity ids and a copy
+ * of their bounding box at the time of the last update, entities are
+ * only resolved once they are found by a query.
+ * <p>
+ * The tree itself is only accessed from the client thread. Other readers use
+ * immutable snapshots which are published as a whole together with the
+ * generation of the tree they were taken at. After bursts of new entities
+ * the tree is rebuilt from such a snapshot off-thread, see [SpatialRebuildScheduler].
+ * <p>
+ * Entities that move on most ticks are kept apart from the others, see
+ * [LayeredSpatialIndex]. The data structure used to store the remaining entities
+ * is chosen through [NoxesiumConfig.getQibSpatialIndex], by default a
+ * [DynamicAABBTree] is used.
  */
 public class SpatialInteractionEntityTree {
 
-    private static final int DEFAULT_BRANCHING_FACTOR = 30;
+    private static final LayeredSpatialIndex model = new LayeredSpatialIndex(new DynamicAABBTree());
+    private static final AtomicReference<SpatialSnapshot> snapshot = new AtomicReference<>(SpatialSnapshot.EMPTY);
 
-    private static final Map<Integer, Entity> pendingEntities = new ConcurrentHashMap<>();
-    private static final Set<Integer> removedEntities = ConcurrentHashMap.newKeySet();
-    private static final AtomicBoolean rebuilding = new AtomicBoolean();
-    private static final AtomicBoolean needsRebuilding = new AtomicBoolean();
+    /**
+     * The generation at which each entity was last changed, only tracked for
+     * entities that changed after the current snapshot was taken.
+     */
+    private static final Int2LongMap changes = new Int2LongOpenHashMap();
+
+    /**
+     * The current generation of the tree, increased on every change.
+     */
+    private static volatile long generation = 0L;
+
+    /**
+     * The snapshot a rebuild is currently running from, and all entities changed since it was taken.
+     */
+    @Nullable
+    private static SpatialSnapshot rebuildBase;
+    private static final IntSet rebuildChanges = new IntOpenHashSet();
+
+    /**
+     * Returns the current generation of the tree.
+     */
+    public static long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the most recently published snapshot of the tree. Readers should
+     * fetch the snapshot once and use the same instance for all their work.
+     */
+    public static SpatialSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publishes a new snapshot of the tree if it has changed since the last one.
+     * Must be called on the client thread.
+     */
+    public static void publishSnapshot() {
+        var currentGeneration = generation;
+        if (snapshot.get().getGeneration() == currentGeneration) return;
+        snapshot.set(model.snapshot(currentGeneration));
+        changes.clear();
+    }
+
+    /**
+     * Returns whether the current index can be rebuilt, only trees become less
+     * efficient when entities are inserted one by one.
+     */
+    public static boolean canRebuild() {
+        return model.getStaticLayer() instanceof DynamicAABBTree;
+    }
+
+    /**
+     * Returns the type of index currently used to store the static entities.
+     */
+    public static QibSpatialIndexType getIndexType() {
+        return model.getStaticLayer() instanceof UniformGridIndex ? QibSpatialIndexType.GRID : QibSpatialIndexType.TREE;
+    }
+
+    /**
+     * Moves all entities into a new index if the configured type of index has
+     * changed. Any ongoing rebuild is discarded. Must be called on the client thread.
+     * <p>
+     * Called on start-up, when joining a server, whenever the configuration is
+     * saved and whenever the server changes its preferred type of index.
+     */
+    public static void selectIndex() {
+        var type = NoxesiumMod.getInstance().getConfig().getQibSpatialIndex();
+        if (type == getIndexType()) return;
+
+        model.setStaticLayer(SpatialIndex.build(type, model.getStaticLayer().snapshot(generation)));
+        rebuildBase = null;
+        rebuildChanges.clear();
+    }
+
+    /**
+     * Starts a rebuild of the static layer of the tree, returns the snapshot to
+     * build the new layer from. Must be called on the client thread.
+     */
+    public static SpatialSnapshot beginRebuild() {
+        var base = model.getStaticLayer().snapshot(generation);
+        rebuildBase = base;
+        rebuildChanges.clear();
+        return base;
+    }
+
+    /**
+     * Replaces the static layer of the tree with [rebuilt] which was built from
+     * [base]. All changes made since [base] was taken are applied to the new
+     * layer first. Returns `false` if the tree was cleared in the meantime and
+     * the rebuilt layer was discarded. Must be called on the client thread.
+     */
+    public static boolean finishRebuild(SpatialSnapshot base, SpatialIndex rebuilt) {
+        if (rebuildBase != base) return false;
+        rebuildBase = null;
+
+        for (var iterator = rebuildChanges.iterator(); iterator.hasNext(); ) {
+            model.copyStaticTo(iterator.nextInt(), rebuilt);
+        }
+        rebuildChanges.clear();
+        model.setStaticLayer(rebuilt);
+        return true;
+    }
+
+    /**
+     * Returns the index storing all entities. The index must only be queried, all
+     * changes have to go through this class so snapshots and rebuilds stay valid.
+     */
+    public static LayeredSpatialIndex getIndex() {
+        return model;
+    }
+
+    /**
+     * Returns the amount of entities in the tree.
+     */
+    public static int size() {
+        return model.size();
+    }
 
-    private static HashSet<Integer> staticEntities = new HashSet<>();
-    private static HashSet<AABB> modelContents = new HashSet<>();
-    private static PRTree<Entity> staticModel = new PRTree<>(new EntityMBRConverter(), DEFAULT_BRANCHING_FACTOR);
+    /**
+     * Returns the amount of entities in the dynamic layer of the tree.
+     */
+    public static int getDynamicSize() {
+        return model.getDynamicSize();
+    }
 
-    static {
-        staticModel.load(Set.of());
+    /**
+     * Returns whether the entity with [id] is in the dynamic layer of the tree.
+     */
+    public static boolean isDynamic(int id) {
+        return model.isDynamic(id);
     }
 
     /**
-     * Returns the contents of the model, if debugging is active.
+     * Moves entities that stopped moving back into the static layer of the tree.
+     * Must be called on the client thread once per tick.
      */
-    public static Set<AABB> getModelContents() {
-        return modelContents;
+    public static void tick() {
+        model.tick(SpatialInteractionEntityTree::markChanged);
     }
 
     /**
-     * Returns the state of [entity] in this tree.
+     * Returns the state of [entity] in this tree relative to the current snapshot.
      */
     @Nullable
     public static String getSpatialTreeState(Entity entity) {
-        if (pendingEntities.containsKey(entity.getId())) {
-            return "pending";
-        }
-        if (removedEntities.contains(entity.getId())) {
-            return "removed";
+        var id = entity.getId();
+        var current = snapshot.get();
+        if (changes.get(id) > current.getGeneration()) {
+            return model.contains(id) ? "pending" : "removed";
         }
-        if (staticEntities.contains(entity.getId())) {
-            return "static";
+        if (current.contains(id)) {
+            return model.isDynamic(id) ? "dynamic" : "static";
         }
         return null;
     }
 
     /**
-     * Rebuilds the model if applicable.
-     */
-    public static void rebuild() {
-        if (rebuilding.get()) return;
-        if (!needsRebuilding.get()) return;
-
-        rebuilding.set(true);
-        try {
-            var world = Minecraft.getInstance().level;
-            if (world == null) return;
-
-            var converter = new EntityMBRConverter();
-            var newModel = new PRTree<>(converter, DEFAULT_BRANCHING_FACTOR);
-
-            var oldStaticEntities = staticEntities.size();
-            var newStaticEntities = new HashSet<>(staticEntities);
-            var addedEntities = new HashSet<>(pendingEntities.keySet());
-            var removingEntities = new HashSet<>(removedEntities);
-            removingEntities.removeAll(addedEntities);
-            needsRebuilding.set(false);
-
-            newStaticEntities.addAll(addedEntities);
-            newStaticEntities.removeAll(removingEntities);
-
-            // Determine all actual entities that match the entity ids
-            var foundEntities = new HashSet<Entity>();
-            var iterator = newStaticEntities.iterator();
-            while (iterator.hasNext()) {
-                var id = iterator.next();
-                var entity = world.getEntity(id);
-                if (entity == null) {
-                    iterator.remove();
-                } else {
-                    foundEntities.add(entity);
-                }
-            }
-            newModel.load(foundEntities);
-
-            staticModel = newModel;
-            staticEntities = newStaticEntities;
-            pendingEntities.keySet().removeAll(addedEntities);
-            removedEntities.removeAll(addedEntities);
-            removedEntities.removeAll(removingEntities);
-
-            if (NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging) {
-                if (Minecraft.getInstance().player != null) {
-                    Minecraft.getInstance().getChatListener().handleSystemMessage(
-                            Component.literal("§eRebuilt spatial model, before: §f[" + oldStaticEntities + ", " + addedEntities.size() + ", " + removingEntities.size() + "]§e, after: §f[" + staticEntities.size() + ", " + pendingEntities.size() + ", " + removedEntities.size() + "]"),
-                            false
-                    );
-                }
-
-                var newContents = new HashSet<AABB>();
-                for (var entity : newStaticEntities) {
-                    var fetched = world.getEntity(entity);
-                    if (fetched == null) continue;
-                    newContents.add(fetched.getBoundingBox());
-                }
-                modelContents = newContents;
-            }
-        } finally {
-            rebuilding.set(false);
-        }
+     * Adds the work done by all queries since the last call to [stats].
+     */
+    public static void drainStats(SpatialQueryStats stats) {
+        model.drainStats(stats);
     }
 
     /**
-     * Returns all entities that clip [hitbox].
+     * Adds the ids of all entities that clip [hitbox] to [output].
      */
-    public static HashSet<Entity> findEntities(AABB hitbox) {
-        double[] values = {hitbox.minX, hitbox.maxX, hitbox.minY, hitbox.maxY, hitbox.minZ, hitbox.maxZ};
-        var mbr = new SimpleMBR(values);
-        var collisions = new HashSet<Entity>();
-
-        // Go through the model but ignoring removed entities
-        if (removedEntities.isEmpty()) {
-            for (var entity : staticModel.find(mbr)) {
-                collisions.add(entity);
-            }
-        } else {
-            for (var entity : staticModel.find(mbr)) {
-                if (removedEntities.contains(entity.getId())) continue;
-                collisions.add(entity);
-            }
-        }
-
-        // Go through all pending entities that are not yet
-        // in the model
-        for (var entity : pendingEntities.values()) {
-            if (entity.getBoundingBox().intersects(hitbox)) {
-                collisions.add(entity);
-            }
-        }
+    public static void findEntities(AABB hitbox, IntCollection output) {
+        model.find(hitbox, output);
+    }
 
-        return collisions;
+    /**
+     * Adds the ids of all entities clipped by [hitbox] while it moved by the given
+     * offset to end up at its current position to [output], ordered by the moment
+     * at which they were first touched.
+     */
+    public static void findEntities(AABB hitbox, double dx, double dy, double dz, IntCollection output) {
+        model.sweep(hitbox, dx, dy, dz, output);
     }
 
     /**
-     * Updates the current position of [entity] to [aabb].
+     * Updates the current position of [entity] to its current bounding box.
      */
     public static void update(Interaction entity) {
+        update(entity, entity.getBoundingBox());
+    }
+
+    /**
+     * Updates the current position of [entity] to [boundingBox].
+     */
+    public static void update(Interaction entity, AABB boundingBox) {
         if (!entity.noxesium$isInWorld()) return;
         if (entity.isRemoved()) {
             remove(entity);
             return;
         }
 
-        removedEntities.add(entity.getId());
-        pendingEntities.put(entity.getId(), entity);
-        needsRebuilding.set(true);
+        if (model.update(entity.getId(), boundingBox)) {
+            NoxesiumMod.getInstance().getModule(SpatialRebuildScheduler.class).onInsert();
+        }
+        markChanged(entity.getId());
     }
 
     /**
@@ -177,17 +244,35 @@ public class SpatialInteractionEntityTree {
      */
     public static void remove(Interaction entity) {
         if (!entity.noxesium$isInWorld()) return;
-        pendingEntities.remove(entity.getId());
-        removedEntities.add(entity.getId());
-        needsRebuilding.set(true);
+        if (model.remove(entity.getId())) {
+            markChanged(entity.getId());
+        }
     }
 
     /**
      * Clears all stored information.
      */
     public static void clear() {
-        pendingEntities.clear();
-        removedEntities.addAll(staticEntities);
-        needsRebuilding.set(true);
+        model.clear();
+        changes.clear();
+        rebuildBase = null;
+        rebuildChanges.clear();
+        generation++;
+        snapshot.set(new SpatialSnapshot(generation, new int[0], new double[0]));
+    }
+
+    /**
+     * Increases the generation and marks down that [id] was changed in it.
+     */
+    private static void markChanged(int id) {
+        generation++;
+        if (rebuildBase != null) {
+            rebuildChanges.add(id);
+        }
+
+        // Changes are only needed to show the state of entities while debugging
+        if (NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging) {
+            changes.put(id, generation);
+        }
     }
 }
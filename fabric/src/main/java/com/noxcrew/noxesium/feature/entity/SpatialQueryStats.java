@@ -0,0 +1,25 @@
+package com.noxcrew.noxesium.feature.entity;
+
+/**
+ * Counts the work done by the queries of a [SpatialIndex].
+ */
+public final class SpatialQueryStats {
+
+    /**
+     * The amount of tree nodes or grid cells looked at.
+     */
+    public int visited;
+
+    /**
+     * The amount of stored boxes that were tested against the query.
+     */
+    public int candidates;
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        visited = 0;
+        candidates = 0;
+    }
+}
@@ -0,0 +1,219 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.NoxesiumMod;
+import com.noxcrew.noxesium.NoxesiumModule;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Component;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules rebuilds of the spatial interaction entity tree. Moving entities are
+ * handled by the tree itself but inserting a large burst of entities one by one,
+ * as happens when chunks load in, results in a less efficient tree. Once enough
+ * entities have been inserted we wait for the burst to settle down and rebuild
+ * the tree in one go on a background thread. A burst that never settles down
+ * only delays the rebuild up to [MAX_DELAY_MILLIS].
+ * <p>
+ * Nothing is scheduled while no entities are being added, and the background
+ * thread is stopped whenever the client leaves a server. This module also ticks
+ * the tree so it can move entities between its layers.
+ */
+public class SpatialRebuildScheduler implements NoxesiumModule {
+
+    /**
+     * The amount of inserted entities after which a rebuild is scheduled.
+     */
+    private static final int REBUILD_THRESHOLD = 32;
+
+    /**
+     * The amount of inserted entities after which a rebuild is started immediately.
+     */
+    private static final int IMMEDIATE_REBUILD_THRESHOLD = 1024;
+
+    /**
+     * The time to wait after the last insertion before starting a rebuild.
+     */
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    /**
+     * The maximum time a rebuild is pushed back by continued insertions.
+     */
+    private static final long MAX_DELAY_MILLIS = 500;
+
+    @Nullable
+    private ScheduledExecutorService executor;
+    @Nullable
+    private ScheduledFuture<?> scheduledRebuild;
+    private long firstScheduled = 0L;
+    private int insertions = 0;
+    private boolean rebuilding = false;
+
+    private int rebuildCount = 0;
+    private int lastRebuildSize = 0;
+    private long lastRebuildNanos = 0L;
+
+    @Override
+    public void onStartup() {
+        ClientTickEvents.END_CLIENT_TICK.register((ignored) -> SpatialInteractionEntityTree.tick());
+
+        // Use the configured type of index from the start
+        SpatialInteractionEntityTree.selectIndex();
+    }
+
+    @Override
+    public void onJoinServer() {
+        // Make sure every server starts out with the configured type of index
+        SpatialInteractionEntityTree.selectIndex();
+    }
+
+    @Override
+    public void onQuitServer() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        scheduledRebuild = null;
+        insertions = 0;
+        rebuilding = false;
+    }
+
+    /**
+     * Returns the amount of rebuilds performed since start-up.
+     */
+    public int getRebuildCount() {
+        return rebuildCount;
+    }
+
+    /**
+     * Returns the amount of entities in the last rebuilt tree.
+     */
+    public int getLastRebuildSize() {
+        return lastRebuildSize;
+    }
+
+    /**
+     * Returns the time in nanoseconds between starting the last rebuild and the
+     * new tree being used.
+     */
+    public long getLastRebuildNanos() {
+        return lastRebuildNanos;
+    }
+
+    /**
+     * Called on the client thread whenever a new entity is inserted into the tree.
+     */
+    public void onInsert() {
+        insertions++;
+        scheduleRebuild();
+    }
+
+    /**
+     * Schedules a rebuild if enough entities have been inserted.
+     */
+    private void scheduleRebuild() {
+        if (rebuilding || insertions < REBUILD_THRESHOLD) return;
+        if (!SpatialInteractionEntityTree.canRebuild()) {
+            insertions = 0;
+            return;
+        }
+
+        // If a very large amount of entities was added we rebuild right away
+        if (insertions >= IMMEDIATE_REBUILD_THRESHOLD) {
+            if (scheduledRebuild != null) {
+                scheduledRebuild.cancel(false);
+                scheduledRebuild = null;
+            }
+            startRebuild();
+            return;
+        }
+
+        // Otherwise we push the rebuild back while the burst continues, but only until
+        // the first scheduled rebuild has waited for the maximum delay.
+        var now = System.nanoTime();
+        if (scheduledRebuild != null) {
+            if (now - firstScheduled + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE_MILLIS) > TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS)) return;
+            scheduledRebuild.cancel(false);
+        } else {
+            firstScheduled = now;
+        }
+
+        try {
+            scheduledRebuild = getExecutor().schedule(() -> Minecraft.getInstance().execute(this::startRebuild), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException x) {
+            NoxesiumMod.getInstance().getLogger().warn("Could not schedule spatial tree rebuild", x);
+            scheduledRebuild = null;
+            insertions = 0;
+        }
+    }
+
+    /**
+     * Returns the executor to run rebuilds on, creating it if necessary.
+     */
+    private ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                var thread = new Thread(runnable, "Noxesium Spatial Container Rebuild Thread");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Takes a snapshot of the tree and builds a new tree from it off-thread.
+     */
+    private void startRebuild() {
+        scheduledRebuild = null;
+        if (rebuilding || insertions < REBUILD_THRESHOLD || !SpatialInteractionEntityTree.canRebuild()) return;
+        rebuilding = true;
+        insertions = 0;
+
+        var started = System.nanoTime();
+        var base = SpatialInteractionEntityTree.beginRebuild();
+        var executor = getExecutor();
+        try {
+            executor.execute(() -> {
+                var rebuilt = DynamicAABBTree.build(base);
+                Minecraft.getInstance().execute(() -> finishRebuild(executor, base, rebuilt, started));
+            });
+        } catch (RejectedExecutionException x) {
+            NoxesiumMod.getInstance().getLogger().warn("Could not start spatial tree rebuild", x);
+            rebuilding = false;
+        }
+    }
+
+    /**
+     * Swaps in a tree that was rebuilt from [base] on [executor].
+     */
+    private void finishRebuild(ScheduledExecutorService executor, SpatialSnapshot base, DynamicAABBTree rebuilt, long started) {
+        // Ignore rebuilds from before the last time we left a server
+        if (executor != this.executor) return;
+        rebuilding = false;
+        if (!SpatialInteractionEntityTree.finishRebuild(base, rebuilt)) return;
+
+        rebuildCount++;
+        lastRebuildSize = SpatialInteractionEntityTree.size();
+        lastRebuildNanos = System.nanoTime() - started;
+        NoxesiumMod.getInstance().getModule(QibMetricsModule.class).recordRebuild(lastRebuildNanos, lastRebuildSize);
+
+        if (NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging) {
+            if (Minecraft.getInstance().player != null) {
+                Minecraft.getInstance().getChatListener().handleSystemMessage(
+                    Component.literal("§eRebuilt spatial model with §f" + lastRebuildSize + "§e entities in §f" + String.format("%.2f", lastRebuildNanos / 1_000_000.0) + "ms"),
+                    false
+                );
+            }
+        }
+
+        // Check if another burst started while we were rebuilding
+        scheduleRebuild();
+    }
+}
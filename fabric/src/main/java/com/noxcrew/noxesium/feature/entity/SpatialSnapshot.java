@@ -0,0 +1,89 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import net.minecraft.world.phys.AABB;
+
+/**
+ * An immutable copy of the contents of the spatial interaction entity tree
+ * at a given generation. Snapshots are published as a whole so readers never
+ * observe a partially applied change.
+ */
+public final class SpatialSnapshot {
+
+    /**
+     * A snapshot without any entities.
+     */
+    public static final SpatialSnapshot EMPTY = new SpatialSnapshot(0L, new int[0], new double[0]);
+
+    private final long generation;
+    private final int[] ids;
+    private final double[] bounds;
+    private final Int2IntMap indices;
+
+    /**
+     * Creates a new snapshot, [bounds] stores six values for each id in [ids] packed
+     * as [minX, minY, minZ, maxX, maxY, maxZ]. Both arrays are owned by the snapshot
+     * after this call.
+     */
+    public SpatialSnapshot(long generation, int[] ids, double[] bounds) {
+        this.generation = generation;
+        this.ids = ids;
+        this.bounds = bounds;
+        this.indices = new Int2IntOpenHashMap(ids.length);
+        indices.defaultReturnValue(-1);
+        for (var index = 0; index < ids.length; index++) {
+            indices.put(ids[index], index);
+        }
+    }
+
+    /**
+     * Returns the generation of the tree this snapshot was taken at.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the amount of entities in this snapshot.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns whether this snapshot contains the entity with [id].
+     */
+    public boolean contains(int id) {
+        return indices.containsKey(id);
+    }
+
+    /**
+     * Returns the index of the entity with [id], or -1 if it is not in this snapshot.
+     */
+    public int indexOf(int id) {
+        return indices.get(id);
+    }
+
+    /**
+     * Returns the id of the entity at [index].
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Returns the packed boxes of all entities, this array must not be modified.
+     */
+    double[] getPackedBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the box of the entity at [index].
+     */
+    public AABB getBox(int index) {
+        var offset = index * 6;
+        return new AABB(bounds[offset], bounds[offset + 1], bounds[offset + 2], bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+    }
+}
@@ -0,0 +1,135 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.doubles.DoubleCollection;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.world.phys.AABB;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state for a single swept box query. Every candidate box is grown by the
+ * half extents of the moving box and the center of the moving box is cast along
+ * its movement through them. Hits are collected ordered by their time of impact.
+ * <p>
+ * Instances are re-used between queries and must only be used by one thread.
+ */
+final class SpatialSweep {
+
+    /**
+     * The time of impact returned for a sweep that misses a box.
+     */
+    static final double MISS = Double.POSITIVE_INFINITY;
+
+    // Holds the center, half extents and movement per axis
+    private final double[] state = new double[9];
+    private int[] hitIds = new int[16];
+    private double[] hitTimes = new double[16];
+    private int hits = 0;
+
+    /**
+     * Starts a new sweep of a box that moved by the given offset to end up at [box].
+     */
+    void begin(AABB box, double dx, double dy, double dz) {
+        state[0] = (box.minX + box.maxX) / 2.0 - dx;
+        state[1] = (box.minY + box.maxY) / 2.0 - dy;
+        state[2] = (box.minZ + box.maxZ) / 2.0 - dz;
+        state[3] = (box.maxX - box.minX) / 2.0;
+        state[4] = (box.maxY - box.minY) / 2.0;
+        state[5] = (box.maxZ - box.minZ) / 2.0;
+        state[6] = dx;
+        state[7] = dy;
+        state[8] = dz;
+        hits = 0;
+    }
+
+    /**
+     * Returns the first moment between 0 and 1 at which the current sweep touches
+     * the box stored at [offset] in [array], or [MISS] if it never does.
+     */
+    double time(double[] array, int offset) {
+        var enter = 0.0;
+        var exit = 1.0;
+        for (var axis = 0; axis < 3; axis++) {
+            var center = state[axis];
+            var extent = state[axis + 3];
+            var movement = state[axis + 6];
+            var min = array[offset + axis] - extent;
+            var max = array[offset + axis + 3] + extent;
+
+            if (movement == 0.0) {
+                // Without movement on this axis we have to be inside the entire time
+                if (center <= min || center >= max) return MISS;
+            } else {
+                var near = (min - center) / movement;
+                var far = (max - center) / movement;
+                if (near > far) {
+                    var swap = near;
+                    near = far;
+                    far = swap;
+                }
+                enter = Math.max(enter, near);
+                exit = Math.min(exit, far);
+                if (enter > exit) return MISS;
+            }
+        }
+        return enter;
+    }
+
+    /**
+     * Records that the value with [id] was hit at [time].
+     */
+    void hit(int id, double time) {
+        if (hits == hitIds.length) {
+            hitIds = Arrays.copyOf(hitIds, hits * 2);
+            hitTimes = Arrays.copyOf(hitTimes, hits * 2);
+        }
+
+        // Insert the hit sorted by time of impact, there are only ever a few hits
+        var index = hits++;
+        while (index > 0 && hitTimes[index - 1] > time) {
+            hitIds[index] = hitIds[index - 1];
+            hitTimes[index] = hitTimes[index - 1];
+            index--;
+        }
+        hitIds[index] = id;
+        hitTimes[index] = time;
+    }
+
+    /**
+     * Merges two lists of hits which are both ordered by time into [output], and
+     * their times into [times] if given.
+     */
+    static void merge(IntList firstHits, DoubleList firstTimes, IntList secondHits, DoubleList secondTimes, IntCollection output, @Nullable DoubleCollection times) {
+        var first = 0;
+        var second = 0;
+        while (first < firstHits.size() || second < secondHits.size()) {
+            var fromFirst = second == secondHits.size() ||
+                (first < firstHits.size() && firstTimes.getDouble(first) <= secondTimes.getDouble(second));
+            if (fromFirst) {
+                output.add(firstHits.getInt(first));
+                if (times != null) times.add(firstTimes.getDouble(first));
+                first++;
+            } else {
+                output.add(secondHits.getInt(second));
+                if (times != null) times.add(secondTimes.getDouble(second));
+                second++;
+            }
+        }
+    }
+
+    /**
+     * Adds the ids of all hits to [output] in order, and their times to [times] if given.
+     */
+    void drainTo(IntCollection output, @Nullable DoubleCollection times) {
+        for (var index = 0; index < hits; index++) {
+            output.add(hitIds[index]);
+            if (times != null) {
+                times.add(hitTimes[index]);
+            }
+        }
+        hits = 0;
+    }
+}
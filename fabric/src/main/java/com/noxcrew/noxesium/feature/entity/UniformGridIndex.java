@@ -0,0 +1,431 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.doubles.DoubleCollection;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.Mth;
+import net.minecraft.world.phys.AABB;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index that divides the world into uniform cubic cells and stores
+ * the ids of all values in each cell they clip. Updating a value only touches
+ * the cells it enters or leaves and a query only looks at the cells it clips,
+ * which makes this faster than a tree when values are small and spread out.
+ * <p>
+ * Values that would clip too many cells are kept in a separate list which is
+ * checked by every query instead.
+ */
+public class UniformGridIndex implements SpatialIndex {
+
+    /**
+     * The default size of a single cell in blocks.
+     */
+    public static final double DEFAULT_CELL_SIZE = 4.0;
+
+    /**
+     * The maximum amount of cells a single value is added to.
+     */
+    private static final int MAX_CELLS_PER_VALUE = 512;
+
+    /**
+     * The amount of doubles used to store a single box.
+     */
+    private static final int STRIDE = 6;
+
+    private static final int NULL = -1;
+
+    // Cell coordinates are packed into a long using 26 bits for x and z and 12 bits for y
+    private static final int HORIZONTAL_LIMIT = (1 << 25) - 1;
+    private static final int VERTICAL_LIMIT = (1 << 11) - 1;
+
+    private final double inverseCellSize;
+    private final Int2IntMap slots = new Int2IntOpenHashMap();
+    private final Long2ObjectMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final IntArrayList oversized = new IntArrayList();
+    private final IntArrayList candidates = new IntArrayList();
+    private final SpatialSweep sweep = new SpatialSweep();
+
+    // Slot storage, boxes are packed as [minX, minY, minZ, maxX, maxY, maxZ] and
+    // cell ranges as [minX, minY, minZ, maxX, maxY, maxZ] in cell coordinates
+    private double[] bounds;
+    private int[] cellRanges;
+    private int[] ids;
+    private int[] marks;
+    private int[] freeSlots;
+
+    private int capacity;
+    private int freeCount = 0;
+    private int nextSlot = 0;
+    private int stamp = 0;
+    private int visited = 0;
+    private int candidateCount = 0;
+
+    public UniformGridIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public UniformGridIndex(double cellSize) {
+        this.inverseCellSize = 1.0 / cellSize;
+        slots.defaultReturnValue(NULL);
+        allocate(16);
+    }
+
+    @Override
+    public int size() {
+        return slots.size();
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return slots.containsKey(id);
+    }
+
+    @Override
+    public SpatialSnapshot snapshot(long generation) {
+        var snapshotIds = new int[slots.size()];
+        var packed = new double[snapshotIds.length * STRIDE];
+        var index = 0;
+        for (var entry : Int2IntMaps.fastIterable(slots)) {
+            snapshotIds[index] = entry.getIntKey();
+            System.arraycopy(bounds, entry.getIntValue() * STRIDE, packed, index * STRIDE, STRIDE);
+            index++;
+        }
+        return new SpatialSnapshot(generation, snapshotIds, packed);
+    }
+
+    /**
+     * Builds a grid with the default cell size containing all entities in [snapshot].
+     */
+    public static UniformGridIndex build(SpatialSnapshot snapshot) {
+        var grid = new UniformGridIndex();
+        var size = snapshot.size();
+        if (size == 0) return grid;
+
+        grid.allocate(Math.max(16, size));
+        var packed = snapshot.getPackedBounds();
+        for (var index = 0; index < size; index++) {
+            var offset = index * STRIDE;
+            grid.update(snapshot.getId(index),
+                packed[offset], packed[offset + 1], packed[offset + 2],
+                packed[offset + 3], packed[offset + 4], packed[offset + 5]
+            );
+        }
+        return grid;
+    }
+
+    @Override
+    public boolean copyBox(int id, double[] target, int offset) {
+        var slot = slots.get(id);
+        if (slot == NULL) return false;
+        System.arraycopy(bounds, slot * STRIDE, target, offset, STRIDE);
+        return true;
+    }
+
+    @Override
+    public void copyTo(int id, SpatialIndex target) {
+        var slot = slots.get(id);
+        if (slot == NULL) {
+            target.remove(id);
+            return;
+        }
+
+        var offset = slot * STRIDE;
+        target.update(id,
+            bounds[offset], bounds[offset + 1], bounds[offset + 2],
+            bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]
+        );
+    }
+
+    @Override
+    public boolean update(int id, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var slot = slots.get(id);
+        var inserted = slot == NULL;
+        if (inserted) {
+            slot = allocateSlot();
+            ids[slot] = id;
+            slots.put(id, slot);
+        }
+
+        var offset = slot * STRIDE;
+        bounds[offset] = minX;
+        bounds[offset + 1] = minY;
+        bounds[offset + 2] = minZ;
+        bounds[offset + 3] = maxX;
+        bounds[offset + 4] = maxY;
+        bounds[offset + 5] = maxZ;
+
+        var cellMinX = horizontalCell(minX);
+        var cellMinY = verticalCell(minY);
+        var cellMinZ = horizontalCell(minZ);
+        var cellMaxX = horizontalCell(maxX);
+        var cellMaxY = verticalCell(maxY);
+        var cellMaxZ = horizontalCell(maxZ);
+
+        // If the value stays within the same cells we only had to update its box
+        if (!inserted) {
+            if (cellRanges[offset] == cellMinX && cellRanges[offset + 1] == cellMinY && cellRanges[offset + 2] == cellMinZ &&
+                cellRanges[offset + 3] == cellMaxX && cellRanges[offset + 4] == cellMaxY && cellRanges[offset + 5] == cellMaxZ) {
+                return false;
+            }
+            unlink(slot);
+        }
+
+        cellRanges[offset] = cellMinX;
+        cellRanges[offset + 1] = cellMinY;
+        cellRanges[offset + 2] = cellMinZ;
+        cellRanges[offset + 3] = cellMaxX;
+        cellRanges[offset + 4] = cellMaxY;
+        cellRanges[offset + 5] = cellMaxZ;
+        link(slot);
+        return inserted;
+    }
+
+    @Override
+    public boolean remove(int id) {
+        var slot = slots.remove(id);
+        if (slot == NULL) return false;
+        unlink(slot);
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        slots.clear();
+        cells.clear();
+        oversized.clear();
+        freeCount = 0;
+        nextSlot = 0;
+    }
+
+    @Override
+    public void drainStats(SpatialQueryStats stats) {
+        stats.visited += visited;
+        stats.candidates += candidateCount;
+        visited = 0;
+        candidateCount = 0;
+    }
+
+    @Override
+    public void find(AABB box, IntCollection output) {
+        if (slots.isEmpty()) return;
+
+        var minX = box.minX;
+        var minY = box.minY;
+        var minZ = box.minZ;
+        var maxX = box.maxX;
+        var maxY = box.maxY;
+        var maxZ = box.maxZ;
+
+        collectCandidates(minX, minY, minZ, maxX, maxY, maxZ);
+        for (var index = 0; index < candidates.size(); index++) {
+            var slot = candidates.getInt(index);
+            var offset = slot * STRIDE;
+            if (bounds[offset] < maxX && bounds[offset + 3] > minX &&
+                bounds[offset + 1] < maxY && bounds[offset + 4] > minY &&
+                bounds[offset + 2] < maxZ && bounds[offset + 5] > minZ) {
+                output.add(ids[slot]);
+            }
+        }
+    }
+
+    @Override
+    public void sweep(AABB box, double dx, double dy, double dz, IntCollection output, @Nullable DoubleCollection times) {
+        if (slots.isEmpty()) return;
+
+        // Only look at the cells clipped by the area covered by the entire movement
+        collectCandidates(
+            Math.min(box.minX, box.minX - dx),
+            Math.min(box.minY, box.minY - dy),
+            Math.min(box.minZ, box.minZ - dz),
+            Math.max(box.maxX, box.maxX - dx),
+            Math.max(box.maxY, box.maxY - dy),
+            Math.max(box.maxZ, box.maxZ - dz)
+        );
+
+        sweep.begin(box, dx, dy, dz);
+        for (var index = 0; index < candidates.size(); index++) {
+            var slot = candidates.getInt(index);
+            var time = sweep.time(bounds, slot * STRIDE);
+            if (time != SpatialSweep.MISS) {
+                sweep.hit(ids[slot], time);
+            }
+        }
+        sweep.drainTo(output, times);
+    }
+
+    /**
+     * Fills [candidates] with every slot stored in a cell clipped by the given box,
+     * including all oversized values. Each slot is only added once.
+     */
+    private void collectCandidates(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        candidates.clear();
+        var current = nextStamp();
+
+        var cellMinX = horizontalCell(minX);
+        var cellMinY = verticalCell(minY);
+        var cellMinZ = horizontalCell(minZ);
+        var cellMaxX = horizontalCell(maxX);
+        var cellMaxY = verticalCell(maxY);
+        var cellMaxZ = horizontalCell(maxZ);
+        var volume = ((long) cellMaxX - cellMinX + 1) * ((long) cellMaxY - cellMinY + 1) * ((long) cellMaxZ - cellMinZ + 1);
+
+        if (volume > cells.size()) {
+            // If the box covers more cells than are in use we go through the used cells instead
+            for (var entry : Long2ObjectMaps.fastIterable(cells)) {
+                var key = entry.getLongKey();
+                var x = (int) (key >> 38);
+                var y = (int) (key << 52 >> 52);
+                var z = (int) (key << 26 >> 38);
+                visited++;
+                if (x < cellMinX || x > cellMaxX || y < cellMinY || y > cellMaxY || z < cellMinZ || z > cellMaxZ) continue;
+                addCandidates(entry.getValue(), current);
+            }
+        } else {
+            for (var x = cellMinX; x <= cellMaxX; x++) {
+                for (var y = cellMinY; y <= cellMaxY; y++) {
+                    for (var z = cellMinZ; z <= cellMaxZ; z++) {
+                        visited++;
+                        var cell = cells.get(key(x, y, z));
+                        if (cell == null) continue;
+                        addCandidates(cell, current);
+                    }
+                }
+            }
+        }
+        addCandidates(oversized, current);
+        candidateCount += candidates.size();
+    }
+
+    /**
+     * Adds all slots in [cell] that have not been marked with [current] yet to [candidates].
+     */
+    private void addCandidates(IntArrayList cell, int current) {
+        for (var index = 0; index < cell.size(); index++) {
+            var slot = cell.getInt(index);
+            if (marks[slot] == current) continue;
+            marks[slot] = current;
+            candidates.add(slot);
+        }
+    }
+
+    /**
+     * Adds [slot] to all cells in its cell range.
+     */
+    private void link(int slot) {
+        var offset = slot * STRIDE;
+        if (isOversized(offset)) {
+            oversized.add(slot);
+            return;
+        }
+
+        for (var x = cellRanges[offset]; x <= cellRanges[offset + 3]; x++) {
+            for (var y = cellRanges[offset + 1]; y <= cellRanges[offset + 4]; y++) {
+                for (var z = cellRanges[offset + 2]; z <= cellRanges[offset + 5]; z++) {
+                    cells.computeIfAbsent(key(x, y, z), (ignored) -> new IntArrayList(4)).add(slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes [slot] from all cells in its cell range.
+     */
+    private void unlink(int slot) {
+        var offset = slot * STRIDE;
+        if (isOversized(offset)) {
+            oversized.rem(slot);
+            return;
+        }
+
+        for (var x = cellRanges[offset]; x <= cellRanges[offset + 3]; x++) {
+            for (var y = cellRanges[offset + 1]; y <= cellRanges[offset + 4]; y++) {
+                for (var z = cellRanges[offset + 2]; z <= cellRanges[offset + 5]; z++) {
+                    var key = key(x, y, z);
+                    var cell = cells.get(key);
+                    if (cell == null) continue;
+                    cell.rem(slot);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the cell range at [offset] covers too many cells to store the value in each of them.
+     */
+    private boolean isOversized(int offset) {
+        var x = (long) cellRanges[offset + 3] - cellRanges[offset] + 1;
+        var y = (long) cellRanges[offset + 4] - cellRanges[offset + 1] + 1;
+        var z = (long) cellRanges[offset + 5] - cellRanges[offset + 2] + 1;
+        return x * y * z > MAX_CELLS_PER_VALUE;
+    }
+
+    /**
+     * Returns a new stamp to mark visited slots with during a query.
+     */
+    private int nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Returns the horizontal cell coordinate of [value].
+     */
+    private int horizontalCell(double value) {
+        return Mth.clamp(Mth.floor(value * inverseCellSize), -HORIZONTAL_LIMIT, HORIZONTAL_LIMIT);
+    }
+
+    /**
+     * Returns the vertical cell coordinate of [value].
+     */
+    private int verticalCell(double value) {
+        return Mth.clamp(Mth.floor(value * inverseCellSize), -VERTICAL_LIMIT, VERTICAL_LIMIT);
+    }
+
+    /**
+     * Returns the key of the cell at the given cell coordinates.
+     */
+    private static long key(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /**
+     * Returns an unused slot, growing the storage if necessary.
+     */
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == capacity) {
+            allocate(capacity * 2);
+        }
+        return nextSlot++;
+    }
+
+    /**
+     * Grows the slot storage to [newCapacity].
+     */
+    private void allocate(int newCapacity) {
+        bounds = bounds == null ? new double[newCapacity * STRIDE] : Arrays.copyOf(bounds, newCapacity * STRIDE);
+        cellRanges = cellRanges == null ? new int[newCapacity * STRIDE] : Arrays.copyOf(cellRanges, newCapacity * STRIDE);
+        ids = ids == null ? new int[newCapacity] : Arrays.copyOf(ids, newCapacity);
+        marks = marks == null ? new int[newCapacity] : Arrays.copyOf(marks, newCapacity);
+        freeSlots = freeSlots == null ? new int[newCapacity] : Arrays.copyOf(freeSlots, newCapacity);
+        capacity = newCapacity;
+    }
+}
@@ -3,6 +3,8 @@ package com.noxcrew.noxesium.feature.rule;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.api.protocol.rule.ServerRuleIndices;
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import com.noxcrew.noxesium.feature.entity.SpatialInteractionEntityTree;
 import com.noxcrew.noxesium.feature.rule.impl.BooleanServerRule;
 import com.noxcrew.noxesium.feature.rule.impl.CameraLockedRule;
 import com.noxcrew.noxesium.feature.rule.impl.EnableMusicRule;
@@ -115,6 +117,16 @@ public class ServerRules {
      */
     public static ClientServerRule<Integer> RIPTIDE_COYOTE_TIME = register(new IntegerServerRule(ServerRuleIndices.RIPTIDE_COYOTE_TIME, 5));
 
+    /**
+     * Sets the type of spatial index used to find colliding qibs.
+     */
+    public static OptionalEnumServerRule<QibSpatialIndexType> QIB_SPATIAL_INDEX = register(new OptionalEnumServerRule<>(ServerRuleIndices.QIB_SPATIAL_INDEX, QibSpatialIndexType.class, Optional.empty(), () -> {
+        // The initial value is set while the rule is still being created
+        if (ServerRules.QIB_SPATIAL_INDEX != null) {
+            SpatialInteractionEntityTree.selectIndex();
+        }
+    }));
+
     /**
      * Registers a new server rule.
      */
@@ -1,18 +1,31 @@
 package com.noxcrew.noxesium.feature.rule.impl;
 
 import com.noxcrew.noxesium.api.qib.QibDefinition;
+import com.noxcrew.noxesium.feature.entity.CompiledQibDefinition;
 import com.noxcrew.noxesium.feature.rule.ClientServerRule;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.minecraft.network.RegistryFriendlyByteBuf;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * A standard server rule that stores a mapping of qib behaviors.
+ * <p>
+ * Behavior names are interned to dense integer ids which stay the same for
+ * as long as the client runs, so entities can resolve their behavior once
+ * and any per-behavior state can be stored in arrays indexed by these ids.
  */
 public class QibBehaviorServerRule extends ClientServerRule<Map<String, QibDefinition>> {
 
     private final Map<String, QibDefinition> defaultValue;
+    private final Object2IntMap<String> ids = new Object2IntOpenHashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private CompiledQibDefinition[] definitions = new CompiledQibDefinition[0];
 
     public QibBehaviorServerRule(int index) {
         this(index, Map.of());
@@ -20,6 +33,7 @@ public class QibBehaviorServerRule extends ClientServerRule<Map<String, QibDefin
 
     public QibBehaviorServerRule(int index, Map<String, QibDefinition> defaultValue) {
         super(index);
+        ids.defaultReturnValue(-1);
         this.defaultValue = defaultValue;
         setValue(defaultValue);
     }
@@ -29,6 +43,55 @@ public class QibBehaviorServerRule extends ClientServerRule<Map<String, QibDefin
         return defaultValue;
     }
 
+    /**
+     * Returns whether any qib behaviors are defined.
+     */
+    public boolean isEmpty() {
+        return getValue().isEmpty();
+    }
+
+    /**
+     * Returns the id of the behavior called [name], assigning a new id if this
+     * name has not been seen before. Must be called on the client thread.
+     */
+    public int intern(String name) {
+        var id = ids.getInt(name);
+        if (id == -1) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the name of the behavior with the given [id].
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Returns the compiled definition of the behavior with the given [id], or
+     * `null` if the server has not defined it.
+     */
+    @Nullable
+    public CompiledQibDefinition getDefinition(int id) {
+        var current = definitions;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    @Override
+    protected void onValueChanged(Map<String, QibDefinition> oldValue, Map<String, QibDefinition> newValue) {
+        // Compile the definitions once so they are cheap to execute on every trigger
+        for (var key : newValue.keySet()) {
+            intern(key);
+        }
+        var newDefinitions = new CompiledQibDefinition[names.size()];
+        newValue.forEach((key, definition) -> newDefinitions[ids.getInt(key)] = CompiledQibDefinition.compile(definition));
+        definitions = newDefinitions;
+    }
+
     @Override
     public Map<String, QibDefinition> read(RegistryFriendlyByteBuf buffer) {
         var amount = buffer.readVarInt();
@@ -10,8 +10,7 @@ import com.mojang.authlib.properties.Property;
 import com.mojang.blaze3d.platform.NativeImage;
 import com.noxcrew.noxesium.NoxesiumModule;
 import com.noxcrew.noxesium.api.protocol.ProtocolVersion;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import com.noxcrew.noxesium.mixin.feature.component.ext.FontManagerExt;
 import com.noxcrew.noxesium.mixin.feature.component.ext.MinecraftExt;
 import com.noxcrew.noxesium.mixin.feature.component.ext.SkinManagerExt;
@@ -163,7 +162,7 @@ public class SkullFontModule implements NoxesiumModule {
                                 nativeImage = NativeImage.read(inputStream);
                             }
                             imageFuture.complete(processImage(nativeImage, properties.grayscale()));
-                            ElementManager.getAllWrappers().forEach(ElementWrapper::requestRedraw);
+                            ElementInvalidation.all("skullTextureLoaded");
                         } catch (IOException x) {
                             x.printStackTrace();
                         }
@@ -178,7 +177,7 @@ public class SkullFontModule implements NoxesiumModule {
                                     nativeImage = NativeImage.read(inputStream);
                                 }
                                 imageFuture.complete(processImage(nativeImage, properties.grayscale()));
-                                ElementManager.getAllWrappers().forEach(ElementWrapper::requestRedraw);
+                                ElementInvalidation.all("skullTextureLoaded");
                             } catch (IOException x) {
                                 x.printStackTrace();
                             }
@@ -1,20 +1,24 @@
 package com.noxcrew.noxesium.feature.ui;
 
+import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ScoreboardWrapper;
 import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.ResourceManager;
 
 /**
- * Listens to Minecraft reloading the resources and clears cached scoreboard information as the
- * contents of the resource pack may have changed.
+ * Listens to Minecraft reloading the resources and clears cached scoreboard information and baked
+ * text as the contents of the resource pack may have changed.
  */
 public class NoxesiumReloadListener implements SimpleSynchronousResourceReloadListener {
 
     @Override
     public void onResourceManagerReload(ResourceManager resourceManager) {
-        ElementManager.getAllWrappers().forEach(ElementWrapper::requestRedraw);
+        ElementInvalidation.all("resourceReload");
+        ElementManager.getInstance(ChatWrapper.class).clearLineMeshes();
+        ElementManager.getInstance(ScoreboardWrapper.class).clearRowMeshes();
     }
 
     @Override
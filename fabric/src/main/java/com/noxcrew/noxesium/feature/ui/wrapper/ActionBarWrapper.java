@@ -9,12 +9,12 @@ import net.minecraft.util.Mth;
 public class ActionBarWrapper extends ElementWrapper {
 
     public ActionBarWrapper() {
-        registerVariable("alpha", (minecraft, deltaTracker) -> {
+        markAnimated(registerIntVariable("alpha", (minecraft, deltaTracker) -> {
             var gui = minecraft.gui;
             var guiExt = (GuiExt) gui;
             var remainingTicks = (float) guiExt.getOverlayMessageTime() - deltaTracker.getGameTimeDeltaPartialTick(false);
             var alpha = (int) (remainingTicks * 255.0F / 20.0F);
             return Mth.clamp(alpha, 0, 255);
-        });
+        }));
     }
 }
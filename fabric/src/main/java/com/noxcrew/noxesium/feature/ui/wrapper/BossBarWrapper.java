@@ -1,23 +1,21 @@
 package com.noxcrew.noxesium.feature.ui.wrapper;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Wraps around a boss bar and updates it whenever the progress value of any bar changes.
  */
 public class BossBarWrapper extends ElementWrapper {
 
     public BossBarWrapper() {
-        registerVariable("progress", (minecraft, partialTicks) -> {
+        // Summarise the progress of all bars in a single hash so we don't need to copy them
+        markAnimated(registerLongVariable("progress", (minecraft, partialTicks) -> {
             var overlay = minecraft.gui.getBossOverlay();
-            if (overlay.events.isEmpty()) return Map.of();
-
-            var progress = new HashMap<>();
-            for (var entry : overlay.events.entrySet()) {
-                progress.put(entry.getKey(), entry.getValue().getProgress());
+            var hash = (long) overlay.events.size();
+            for (var event : overlay.events.values()) {
+                hash = ElementVariables.hash(hash, event.getId().getMostSignificantBits());
+                hash = ElementVariables.hash(hash, event.getId().getLeastSignificantBits());
+                hash = ElementVariables.hash(hash, Float.floatToIntBits(event.getProgress()));
             }
-            return progress;
-        });
+            return hash;
+        }));
     }
 }
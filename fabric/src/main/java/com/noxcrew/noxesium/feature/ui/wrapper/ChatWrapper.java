@@ -2,38 +2,86 @@ package com.noxcrew.noxesium.feature.ui.wrapper;
 
 import com.noxcrew.noxesium.mixin.ui.render.ext.ChatComponentExt;
 import com.noxcrew.noxesium.mixin.ui.render.ext.GuiExt;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.client.GuiMessage;
+import net.minecraft.client.gui.Font;
+import net.minecraft.util.FormattedCharSequence;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Wraps around the chat and updates it whenever the fade effect updates.
+ * <p>
+ * The text of each line is baked into a [TextMesh] the first time it is drawn, so a new message
+ * only bakes its own lines and fading lines are drawn by changing the opacity of their mesh.
+ * Meshes are keyed on the formatted text of each [GuiMessage.Line], which is created once
+ * whenever the chat is laid out so it uniquely identifies the contents and styling of a line.
  */
 public class ChatWrapper extends ElementWrapper {
 
+    private final Reference2ObjectOpenHashMap<FormattedCharSequence, TextMesh> lineMeshes = new Reference2ObjectOpenHashMap<>();
+
     public ChatWrapper() {
-        // Re-evaluate which lines are fading out every tick
-        registerVariable("fading", (minecraft, partialTicks) -> {
+        // Redraw as soon as the opacity of any fading line changes, summarised as a hash of their indices and opacity
+        markAnimated(registerLongVariable("fading", (minecraft, partialTicks) -> {
             var chatOverlay = minecraft.gui.getChat();
             var chatExt = (ChatComponentExt) chatOverlay;
             var guiExt = (GuiExt) minecraft.gui;
             var focused = chatExt.invokeIsChatFocused();
-            var messages = new ArrayList<>(chatExt.getTrimmedMessages());
-            if (messages.isEmpty()) return List.of();
-
-            var fading = new ArrayList<>();
-
-            var index = 0;
-            for (var line : messages) {
-                index++;
+            var messages = chatExt.getTrimmedMessages();
+            if (messages.isEmpty()) return 0L;
 
-                var ticksSinceMessageSend = guiExt.getTickCount() - line.addedTime();
+            var hash = 0L;
+            for (var index = 0; index < messages.size(); index++) {
+                var ticksSinceMessageSend = guiExt.getTickCount() - messages.get(index).addedTime();
                 var timeFactor = focused ? 1.0 : ChatComponentExt.invokeGetTimeFactor(ticksSinceMessageSend);
                 if (timeFactor < 1.0) {
-                    fading.add(index - 1);
+                    hash = ElementVariables.hash(hash, index + 1);
+                    hash = ElementVariables.hash(hash, (int) (255.0 * timeFactor));
                 }
             }
-            return fading;
-        });
+            return hash;
+        }));
+
+        // Update the amount of queued messages shown in the chat screen as messages leave the queue
+        registerLongVariable("queue", (minecraft, partialTicks) -> minecraft.getChatListener().queueSize());
+    }
+
+    /**
+     * Returns the baked mesh for the formatted [text] of a chat line, baking it if necessary.
+     * Returns `null` if the line cannot be baked and should be drawn normally instead.
+     */
+    @Nullable
+    public TextMesh getLineMesh(Font font, FormattedCharSequence text, boolean dropShadow) {
+        var mesh = lineMeshes.get(text);
+        if (mesh != null ? !mesh.matches(font, dropShadow) : !lineMeshes.containsKey(text)) {
+            // Lines that cannot be baked are stored as null so we don't try again every frame
+            mesh = TextMesh.bake(font, text, dropShadow);
+            lineMeshes.put(text, mesh);
+        }
+        return mesh;
+    }
+
+    /**
+     * Removes the meshes of all lines that are no longer part of [lines].
+     */
+    public void pruneLineMeshes(List<GuiMessage.Line> lines) {
+        // Only prune once a decent amount of lines have been removed from chat
+        if (lineMeshes.size() <= lines.size() * 2 + 16) return;
+
+        var current = new ReferenceOpenHashSet<FormattedCharSequence>(lines.size());
+        for (var line : lines) {
+            current.add(line.content());
+        }
+        lineMeshes.keySet().retainAll(current);
+    }
+
+    /**
+     * Removes the meshes of all lines, used when the glyphs they point to may have changed.
+     */
+    public void clearLineMeshes() {
+        lineMeshes.clear();
     }
 }
@@ -0,0 +1,170 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.mojang.blaze3d.pipeline.RenderTarget;
+import com.mojang.blaze3d.pipeline.TextureTarget;
+import com.mojang.blaze3d.platform.Window;
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Packs the cached frames of all UI elements into a single shared render target. Each
+ * element reserves a region sized to the area it draws in, so the atlas starts out the
+ * size of the window and only grows if the elements don't fit into it together.
+ * <p>
+ * Regions are placed by an [ElementAtlasPacker]. Freed space cannot be re-used
+ * directly, instead the atlas is cleared once it runs out of space and every element
+ * reserves a new region on its next redraw. The atlas is also cleared when it is
+ * resized, in both cases the [getGeneration] changes to invalidate old regions.
+ * <p>
+ * The atlas has no depth buffer, all wrapped elements are drawn in order and do not
+ * rely on depth testing.
+ */
+public class ElementAtlas {
+
+    /**
+     * A region of the atlas reserved by a single element, in pixels from the bottom left.
+     */
+    public record Region(int x, int y, int width, int height, int generation) {
+
+        /**
+         * Returns whether this region is still part of the atlas.
+         */
+        public boolean isValid() {
+            return generation == packer.getGeneration();
+        }
+    }
+
+    private static RenderTarget target;
+    private static int windowWidth;
+    private static int windowHeight;
+    private static final ElementAtlasPacker packer = new ElementAtlasPacker();
+
+    // The region currently being drawn into and its offset from the window
+    @Nullable
+    private static Region writing;
+    private static int offsetX;
+    private static int offsetY;
+
+    /**
+     * Ensures the atlas fits a window of the size of [window], clearing it if it has to be resized.
+     */
+    public static void resize(Window window) {
+        RenderSystem.assertOnRenderThread();
+        var width = window.getWidth();
+        var height = window.getHeight();
+        if (target != null && windowWidth == width && windowHeight == height) return;
+        ElementCompositor.flush();
+
+        windowWidth = width;
+        windowHeight = height;
+        if (target == null) {
+            target = new TextureTarget(width, height, false);
+        } else {
+            target.resize(width, height);
+        }
+        packer.resize(width, height);
+    }
+
+    /**
+     * Returns the current generation of the atlas, which changes whenever all regions are freed.
+     */
+    public static int getGeneration() {
+        return packer.getGeneration();
+    }
+
+    /**
+     * Returns the render target of the atlas.
+     */
+    public static RenderTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * Reserves a region of at least [width] by [height] pixels, returns `null` if the
+     * atlas cannot fit it. This may clear or grow the atlas, invalidating all other regions.
+     */
+    @Nullable
+    public static Region allocate(int width, int height) {
+        width = Math.min(ElementAtlasPacker.roundUp(width), target.width);
+        height = Math.min(ElementAtlasPacker.roundUp(height), windowHeight);
+
+        var region = packer.allocate(width, height);
+        if (region != null) return region;
+
+        // Clear out all regions that are no longer in use
+        if (packer.hasFreed()) {
+            packer.clear();
+            region = packer.allocate(width, height);
+            if (region != null) return region;
+        }
+
+        // Grow the atlas so more elements fit, within the texture size limits
+        var newHeight = Math.min(target.height * 2, RenderSystem.maxSupportedTextureSize());
+        if (newHeight <= target.height) return null;
+        ElementCompositor.flush();
+        target.resize(target.width, newHeight);
+        packer.resize(target.width, newHeight);
+        return packer.allocate(width, height);
+    }
+
+    /**
+     * Frees [region], its space is re-used the next time the atlas is cleared.
+     */
+    public static void free(Region region) {
+        packer.free(region);
+    }
+
+    /**
+     * Starts drawing into [region] where the given area of the window, in pixels from
+     * the bottom left, is moved to the region.
+     */
+    public static void bindWrite(Region region, int x, int y) {
+        // Queued frames may be in the area we are about to draw over
+        ElementCompositor.flush();
+        target.bindWrite(false);
+
+        // Move the viewport so the area of the window lines up with the region, and
+        // ensure nothing is drawn outside the region.
+        offsetX = region.x() - x;
+        offsetY = region.y() - y;
+        RenderSystem.viewport(offsetX, offsetY, windowWidth, windowHeight);
+        RenderSystem.enableScissor(region.x(), region.y(), region.width(), region.height());
+        RenderSystem.clearColor(0, 0, 0, 0);
+        RenderSystem.clear(GL11.GL_COLOR_BUFFER_BIT);
+        writing = region;
+    }
+
+    /**
+     * Stops drawing into the atlas.
+     */
+    public static void unbindWrite() {
+        writing = null;
+        RenderSystem.disableScissor();
+        target.unbindWrite();
+    }
+
+    /**
+     * Applies a scissor box set while drawing into the atlas, moving it along with the
+     * viewport and limiting it to the region. Returns whether the scissor box was applied.
+     */
+    public static boolean applyScissor(int x, int y, int width, int height) {
+        if (writing == null) return false;
+        var minX = Math.max(writing.x(), x + offsetX);
+        var minY = Math.max(writing.y(), y + offsetY);
+        var maxX = Math.min(writing.x() + writing.width(), x + width + offsetX);
+        var maxY = Math.min(writing.y() + writing.height(), y + height + offsetY);
+        GL11.glScissor(minX, minY, Math.max(0, maxX - minX), Math.max(0, maxY - minY));
+        return true;
+    }
+
+    /**
+     * Resets the scissor box to the region when drawing into the atlas, as the region
+     * should always remain scissored. Returns whether the scissor box was reset.
+     */
+    public static boolean resetScissor() {
+        if (writing == null) return false;
+        GL11.glScissor(writing.x(), writing.y(), writing.width(), writing.height());
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decides where regions of the [ElementAtlas] are placed. Regions are packed onto
+ * shelves from the bottom up, each region goes on the shelf that fits it with the
+ * least wasted height or on a new shelf if none fit.
+ * <p>
+ * Freed space cannot be re-used directly, instead all regions are freed at once by
+ * [clear] which changes the [getGeneration] to invalidate old regions.
+ */
+public class ElementAtlasPacker {
+
+    /**
+     * The granularity of region sizes, rounding up leaves some space for elements
+     * to grow without needing a new region.
+     */
+    private static final int GRANULARITY = 16;
+
+    private int width;
+    private int height;
+    private int generation;
+    private int freed;
+
+    // The y, height and used width of each shelf
+    private final IntArrayList shelves = new IntArrayList();
+    private int usedHeight;
+
+    /**
+     * Sets the size of the atlas to [width] by [height] pixels and frees all regions.
+     */
+    public void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        clear();
+    }
+
+    /**
+     * Returns the width of the atlas.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the atlas.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the current generation, which changes whenever all regions are freed.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns whether any region of the current generation has been freed.
+     */
+    public boolean hasFreed() {
+        return freed > 0;
+    }
+
+    /**
+     * Tries to reserve a region of [width] by [height] pixels on an existing or new
+     * shelf, returns `null` if the atlas has no space left for it.
+     */
+    @Nullable
+    public ElementAtlas.Region allocate(int width, int height) {
+        // Find the shelf that fits the region with the least wasted height
+        var best = -1;
+        for (var index = 0; index < shelves.size(); index += 3) {
+            var shelfHeight = shelves.getInt(index + 1);
+            if (shelfHeight < height || shelves.getInt(index + 2) + width > this.width) continue;
+            if (best == -1 || shelfHeight < shelves.getInt(best + 1)) {
+                best = index;
+            }
+        }
+
+        // Start a new shelf if none fit
+        if (best == -1) {
+            if (width > this.width || usedHeight + height > this.height) return null;
+            best = shelves.size();
+            shelves.add(usedHeight);
+            shelves.add(height);
+            shelves.add(0);
+            usedHeight += height;
+        }
+
+        var x = shelves.getInt(best + 2);
+        shelves.set(best + 2, x + width);
+        return new ElementAtlas.Region(x, shelves.getInt(best), width, height, generation);
+    }
+
+    /**
+     * Frees [region], its space is re-used the next time the atlas is cleared.
+     */
+    public void free(ElementAtlas.Region region) {
+        if (region.generation() != generation) return;
+        freed += region.width() * region.height();
+    }
+
+    /**
+     * Frees all regions.
+     */
+    public void clear() {
+        generation++;
+        freed = 0;
+        shelves.clear();
+        usedHeight = 0;
+    }
+
+    /**
+     * Rounds [value] up to the granularity of regions.
+     */
+    public static int roundUp(int value) {
+        return Math.max(GRANULARITY, (value + GRANULARITY - 1) / GRANULARITY * GRANULARITY);
+    }
+}
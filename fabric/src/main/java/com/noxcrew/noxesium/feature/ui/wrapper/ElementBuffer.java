@@ -1,23 +1,12 @@
 package com.noxcrew.noxesium.feature.ui.wrapper;
 
-import com.mojang.blaze3d.buffers.BufferUsage;
-import com.mojang.blaze3d.pipeline.RenderTarget;
-import com.mojang.blaze3d.pipeline.TextureTarget;
-import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.platform.Window;
 import com.mojang.blaze3d.systems.RenderSystem;
-import com.mojang.blaze3d.vertex.BufferBuilder;
-import com.mojang.blaze3d.vertex.ByteBufferBuilder;
-import com.mojang.blaze3d.vertex.DefaultVertexFormat;
-import com.mojang.blaze3d.vertex.VertexBuffer;
-import com.mojang.blaze3d.vertex.VertexFormat;
-import net.minecraft.client.renderer.CoreShaders;
-import net.minecraft.client.renderer.GameRenderer;
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.Mth;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-import static net.minecraft.client.Minecraft.ON_OSX;
 
 /**
  * Holds all information about a buffered piece of UI.
@@ -28,126 +17,134 @@ import static net.minecraft.client.Minecraft.ON_OSX;
  * we determine when to redraw. Instead of being based on a fixed framerate
  * per element we instead tackle the problem directly and cache everything that
  * we know cannot change unless we cleared the cache.
+ * <p>
+ * The contents of the buffer are stored in a region of the shared [ElementAtlas]
+ * that covers the area of the window the element was last drawn in.
  */
 public class ElementBuffer implements Closeable {
 
-    private RenderTarget target;
-    private VertexBuffer buffer;
-    private double screenWidth;
-    private double screenHeight;
+    @Nullable
+    private ElementAtlas.Region region;
+    private boolean empty;
 
-    private final AtomicBoolean configuring = new AtomicBoolean(false);
+    // The area of the window covered by this buffer, in pixels from the bottom left
+    private int x;
+    private int y;
+    private int width;
+    private int height;
 
     /**
      * Indicates that the buffer is valid.
      */
     public boolean isValid() {
-        return buffer != null;
+        return empty || (region != null && region.isValid());
     }
 
     /**
-     * Resizes this buffer to the given width and height.
+     * Reserves space in the atlas for a frame with the bounds of [frame], or for the whole
+     * window if [frame] could not be fingerprinted. Returns whether space could be reserved.
      */
-    public boolean resize(Window window) {
+    public boolean allocate(Window window, ElementFingerprint frame) {
         RenderSystem.assertOnRenderThread();
 
-        var width = window.getWidth();
-        var height = window.getHeight();
+        // Nothing has to be stored if nothing was drawn
+        if (frame.isEmpty() && frame.getValue() != ElementFingerprint.UNKNOWN) {
+            close();
+            empty = true;
+            return true;
+        }
+        empty = false;
+
+        var area = getArea(window, frame);
+        x = area[0];
+        y = area[1];
+        width = area[2];
+        height = area[3];
 
-        // Do the screen size calculation manually so we can use doubles which
-        // give necessary precision.
-        var guiScale = (float) window.getGuiScale();
-        var screenWidth = ((float) width) / guiScale;
-        var screenHeight = ((float) height) / guiScale;
-
-        if (target == null || target.width != width || target.height != height || this.screenWidth != screenWidth || this.screenHeight != screenHeight) {
-            if (configuring.compareAndSet(false, true)) {
-                try {
-                    // Close the old buffer
-                    if (buffer != null) {
-                        buffer.close();
-                        buffer = null;
-                    }
-
-                    // Create a single texture that stretches the entirety of the buffer
-                    var buffer = new VertexBuffer(BufferUsage.STATIC_WRITE);
-                    buffer.bind();
-
-                    var builder = new BufferBuilder(new ByteBufferBuilder(4 * 6), VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
-                    builder.addVertex(0.0f, screenHeight, 0.0f).setUv(0.0f, 0.0f);
-                    builder.addVertex(screenWidth, screenHeight, 0.0f).setUv(1.0f, 0.0f);
-                    builder.addVertex(screenWidth, 0.0f, 0.0f).setUv(1.0f, 1.0f);
-                    builder.addVertex(0.0f, 0.0f, 0.0f).setUv(0.0f, 1.0f);
-                    buffer.upload(builder.build());
-
-                    if (target == null) {
-                        target = new TextureTarget(width, height, true);
-                    } else {
-                        target.resize(width, height);
-                    }
-
-                    // Assign the buffer instance last!
-                    this.screenWidth = screenWidth;
-                    this.screenHeight = screenHeight;
-                    this.buffer = buffer;
-                } finally {
-                    configuring.set(false);
-                }
-            }
+        // Re-use the existing region if it's still large enough
+        if (region != null && region.isValid() && region.width() >= width && region.height() >= height) {
             return true;
         }
-        return false;
+        close();
+        region = ElementAtlas.allocate(width, height);
+        return region != null;
+    }
+
+    /**
+     * Returns whether this buffer covers the area in which [frame] was drawn.
+     */
+    public boolean covers(Window window, ElementFingerprint frame) {
+        if (empty) return frame.isEmpty() && frame.getValue() != ElementFingerprint.UNKNOWN;
+        if (frame.isEmpty()) return true;
+
+        var area = getArea(window, frame);
+        return area[0] >= x && area[1] >= y && area[0] + area[2] <= x + width && area[1] + area[3] <= y + height;
     }
 
     /**
-     * Returns the render target of this buffer.
+     * Starts drawing into this buffer.
      */
-    public RenderTarget getTarget() {
-        return target;
+    public void bindWrite() {
+        ElementAtlas.bindWrite(region, x, y);
     }
 
     /**
-     * Returns the texture id of this buffer.
+     * Stops drawing into this buffer.
      */
-    public int getTextureId() {
-        return target.getColorTextureId();
+    public void unbindWrite() {
+        ElementAtlas.unbindWrite();
+        Minecraft.getInstance().getMainRenderTarget().bindWrite(true);
     }
 
     /**
-     * Draws this buffer to the screen.
+     * Draws this buffer to the screen, only covering the area the element drew in.
      */
     public void draw() {
-        // Set the texture and draw the buffer using the render texture
-        // We can safely disable and re-enable the depth test because we know
-        // the depth test is on through all UI rendering. We want to nicely
-        // set the blending state back to what it was though to avoid causing
-        // issues with other components.
-        RenderSystem.disableDepthTest();
-        RenderSystem.depthMask(false);
-        ElementWrapper.withBlend(() -> {
-            RenderSystem.enableBlend();
-            RenderSystem.blendFunc(GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA);
-        }, () -> {
-            RenderSystem.setShader(CoreShaders.POSITION_TEX);
-            RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
-            RenderSystem.setShaderTexture(0, getTextureId());
-            buffer.bind();
-            buffer.drawWithShader(RenderSystem.getModelViewMatrix(), RenderSystem.getProjectionMatrix(), RenderSystem.getShader());
-        });
-        RenderSystem.depthMask(true);
-        RenderSystem.enableDepthTest();
-        RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
+        if (empty || region == null) return;
+
+        var window = Minecraft.getInstance().getWindow();
+        var atlas = ElementAtlas.getTarget();
+        var guiScale = (float) window.getGuiScale();
+
+        // Determine the area of the screen to draw on in GUI coordinates, and the
+        // area of the atlas holding the frame which we flip as the atlas is bottom up.
+        ElementCompositor.add(
+            x / guiScale,
+            (window.getHeight() - y - height) / guiScale,
+            (x + width) / guiScale,
+            (window.getHeight() - y) / guiScale,
+            (float) region.x() / atlas.width,
+            (float) region.y() / atlas.height,
+            (float) (region.x() + width) / atlas.width,
+            (float) (region.y() + height) / atlas.height
+        );
+    }
+
+    /**
+     * Returns the area of the window covered by [frame] in pixels from the bottom left,
+     * as x, y, width and height. The area is grown by a pixel on each side to account for
+     * rounding during rasterisation.
+     */
+    private static int[] getArea(Window window, ElementFingerprint frame) {
+        var windowWidth = window.getWidth();
+        var windowHeight = window.getHeight();
+        if (frame.getValue() == ElementFingerprint.UNKNOWN) {
+            return new int[] { 0, 0, windowWidth, windowHeight };
+        }
+
+        var guiScale = window.getGuiScale();
+        var minX = Mth.clamp(Mth.floor(frame.getMinX() * guiScale) - 1, 0, windowWidth);
+        var maxX = Mth.clamp(Mth.ceil(frame.getMaxX() * guiScale) + 1, 0, windowWidth);
+        var minY = Mth.clamp(windowHeight - Mth.ceil(frame.getMaxY() * guiScale) - 1, 0, windowHeight);
+        var maxY = Mth.clamp(windowHeight - Mth.floor(frame.getMinY() * guiScale) + 1, 0, windowHeight);
+        return new int[] { minX, minY, maxX - minX, maxY - minY };
     }
 
     @Override
     public void close() {
-        if (buffer != null) {
-            buffer.close();
-            buffer = null;
-        }
-        if (target != null) {
-            target.destroyBuffers();
-            target = null;
+        if (region != null) {
+            ElementAtlas.free(region);
+            region = null;
         }
     }
 }
@@ -0,0 +1,98 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.Tesselator;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import net.minecraft.client.renderer.CoreShaders;
+
+/**
+ * Composites the buffered frames of UI elements onto the screen. Each element only
+ * covers the area it actually drew in, and as all frames live in the [ElementAtlas]
+ * the frames of consecutive elements are merged into a single draw call.
+ * <p>
+ * Frames are queued until anything else is drawn through the buffer source, until the
+ * atlas is drawn into, or until the GUI has finished rendering. This keeps the order
+ * of elements intact as long as everything in between is drawn through the buffer
+ * source, which is the case for all vanilla UI.
+ */
+public class ElementCompositor {
+
+    // The screen area and atlas area of each queued frame
+    private static final FloatArrayList quads = new FloatArrayList();
+    private static boolean flushing = false;
+
+    /**
+     * Queues a frame covering the given area of the screen in GUI coordinates, taken from
+     * the given area of the atlas in texture coordinates.
+     */
+    public static void add(float minX, float minY, float maxX, float maxY, float minU, float minV, float maxU, float maxV) {
+        quads.add(minX);
+        quads.add(minY);
+        quads.add(maxX);
+        quads.add(maxY);
+        quads.add(minU);
+        quads.add(minV);
+        quads.add(maxU);
+        quads.add(maxV);
+    }
+
+    /**
+     * Draws all queued frames to the screen.
+     */
+    public static void flush() {
+        if (quads.isEmpty() || flushing) return;
+        flushing = true;
+
+        // Flushes can happen right after the shader color was changed for the next draw
+        var color = RenderSystem.getShaderColor();
+        var red = color[0];
+        var green = color[1];
+        var blue = color[2];
+        var alpha = color[3];
+        try {
+            // Set the texture and draw the buffer using the render texture
+            // We can safely disable and re-enable the depth test because we know
+            // the depth test is on through all UI rendering. We want to nicely
+            // set the blending state back to what it was though to avoid causing
+            // issues with other components.
+            RenderSystem.disableDepthTest();
+            RenderSystem.depthMask(false);
+            ElementWrapper.withBlend(() -> {
+                RenderSystem.enableBlend();
+                RenderSystem.blendFunc(GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ONE_MINUS_SRC_ALPHA);
+            }, () -> {
+                RenderSystem.setShader(CoreShaders.POSITION_TEX);
+                RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
+                RenderSystem.setShaderTexture(0, ElementAtlas.getTarget().getColorTextureId());
+
+                // The atlas is bottom up so the top of each frame has the highest v
+                var builder = Tesselator.getInstance().begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
+                for (var index = 0; index < quads.size(); index += 8) {
+                    var minX = quads.getFloat(index);
+                    var minY = quads.getFloat(index + 1);
+                    var maxX = quads.getFloat(index + 2);
+                    var maxY = quads.getFloat(index + 3);
+                    var minU = quads.getFloat(index + 4);
+                    var minV = quads.getFloat(index + 5);
+                    var maxU = quads.getFloat(index + 6);
+                    var maxV = quads.getFloat(index + 7);
+                    builder.addVertex(minX, maxY, 0.0f).setUv(minU, minV);
+                    builder.addVertex(maxX, maxY, 0.0f).setUv(maxU, minV);
+                    builder.addVertex(maxX, minY, 0.0f).setUv(maxU, maxV);
+                    builder.addVertex(minX, minY, 0.0f).setUv(minU, maxV);
+                }
+                BufferUploader.drawWithShader(builder.buildOrThrow());
+            });
+            RenderSystem.depthMask(true);
+            RenderSystem.enableDepthTest();
+            RenderSystem.setShaderColor(red, green, blue, alpha);
+        } finally {
+            quads.clear();
+            flushing = false;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes a fingerprint of everything a UI element submits for drawing in a frame,
+ * which allows comparing two frames without rasterising either of them.
+ * <p>
+ * While a capture is active all calls to [MultiBufferSource.BufferSource#getBuffer] are
+ * redirected to this fingerprint, which hashes the render type, shader color and every
+ * vertex attribute in submission order. Positions are hashed after the pose has been
+ * applied so moving an element also changes its fingerprint. If a delegate is given the
+ * vertices are passed on to it as well, which lets us hash a frame while drawing it.
+ * The bounds of all submitted vertices are tracked as well, in GUI coordinates.
+ * <p>
+ * Render types are compared by identity as vanilla memoizes them per texture, a render
+ * type that is re-created every frame only causes the element to be redrawn. Changes
+ * to the contents of a texture are not noticed, these need a [ElementWrapper#requestRedraw].
+ * <p>
+ * Anything drawn directly through the buffer uploader bypasses the buffer source entirely,
+ * such draws are reported through [markUncacheable] and make the fingerprint unusable. The
+ * element is then drawn directly every frame instead of being cached.
+ */
+public class ElementFingerprint {
+
+    /**
+     * The fingerprint returned if a frame could not be fingerprinted.
+     */
+    public static final long UNKNOWN = 0L;
+
+    @Nullable
+    private static ElementFingerprint active;
+    private static int flushing = 0;
+
+    @Nullable
+    private final MultiBufferSource.BufferSource delegate;
+    private final Sink sink = new Sink(null);
+    private long hash;
+    private boolean uncacheable;
+    private float minX = Float.POSITIVE_INFINITY;
+    private float minY = Float.POSITIVE_INFINITY;
+    private float maxX = Float.NEGATIVE_INFINITY;
+    private float maxY = Float.NEGATIVE_INFINITY;
+
+    private ElementFingerprint(@Nullable MultiBufferSource.BufferSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the currently active fingerprint, if any.
+     */
+    @Nullable
+    public static ElementFingerprint getActive() {
+        return active;
+    }
+
+    /**
+     * Returns the fingerprint that direct draws should be reported to, this ignores
+     * draws made by the buffer source itself while it is being flushed.
+     */
+    @Nullable
+    public static ElementFingerprint getActiveForDirectDraws() {
+        return flushing > 0 ? null : active;
+    }
+
+    /**
+     * Marks that the buffer source has started drawing its buffered vertices.
+     */
+    public static void startFlush() {
+        flushing++;
+    }
+
+    /**
+     * Marks that the buffer source has finished drawing its buffered vertices.
+     */
+    public static void finishFlush() {
+        flushing--;
+    }
+
+    /**
+     * Runs [runnable] without drawing anything and returns the fingerprint
+     * of everything it submitted.
+     */
+    public static ElementFingerprint capture(Runnable runnable) {
+        return run(null, runnable);
+    }
+
+    /**
+     * Runs [runnable] while passing everything it submits on to [delegate]
+     * and returns the fingerprint of everything it submitted.
+     */
+    public static ElementFingerprint draw(MultiBufferSource.BufferSource delegate, Runnable runnable) {
+        return run(delegate, runnable);
+    }
+
+    /**
+     * Runs [runnable] with a new fingerprint being active.
+     */
+    private static ElementFingerprint run(@Nullable MultiBufferSource.BufferSource delegate, Runnable runnable) {
+        RenderSystem.assertOnRenderThread();
+        var previous = active;
+        var fingerprint = new ElementFingerprint(delegate);
+        active = fingerprint;
+        try {
+            runnable.run();
+        } finally {
+            active = previous;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the value of this fingerprint, or [UNKNOWN] if the frame could not be fingerprinted.
+     */
+    public long getValue() {
+        if (uncacheable) return UNKNOWN;
+
+        // Never return the unknown value for an actual fingerprint
+        var result = mix(hash);
+        return result == UNKNOWN ? 1L : result;
+    }
+
+    /**
+     * Returns whether no vertices were submitted.
+     */
+    public boolean isEmpty() {
+        return minX > maxX;
+    }
+
+    /**
+     * Returns the smallest x coordinate of any submitted vertex.
+     */
+    public float getMinX() {
+        return minX;
+    }
+
+    /**
+     * Returns the smallest y coordinate of any submitted vertex.
+     */
+    public float getMinY() {
+        return minY;
+    }
+
+    /**
+     * Returns the largest x coordinate of any submitted vertex.
+     */
+    public float getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Returns the largest y coordinate of any submitted vertex.
+     */
+    public float getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Returns whether this fingerprint only hashes and does not draw anything.
+     */
+    public boolean isCapturing() {
+        return delegate == null;
+    }
+
+    /**
+     * Marks that something was drawn that could not be fingerprinted.
+     */
+    public void markUncacheable() {
+        uncacheable = true;
+    }
+
+    /**
+     * Returns a vertex consumer for [renderType] that feeds into this fingerprint.
+     */
+    public VertexConsumer getBuffer(RenderType renderType) {
+        // Store the render type and the shader color as the color is applied when the
+        // buffer is drawn, the graphics flush whenever the color is changed.
+        update(System.identityHashCode(renderType));
+        for (var component : RenderSystem.getShaderColor()) {
+            update(Float.floatToRawIntBits(component));
+        }
+        if (delegate == null) return sink;
+
+        // Callers may hold on to multiple consumers at once, so each one needs its own sink.
+        // We fetch the consumer without this fingerprint being active to avoid recursing.
+        active = null;
+        try {
+            return new Sink(delegate.getBuffer(renderType));
+        } finally {
+            active = this;
+        }
+    }
+
+    /**
+     * Hashes all vertex attributes and optionally passes them on to another consumer.
+     */
+    private class Sink implements VertexConsumer {
+
+        @Nullable
+        private final VertexConsumer consumer;
+
+        private Sink(@Nullable VertexConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public VertexConsumer addVertex(float x, float y, float z) {
+            update(Float.floatToRawIntBits(x));
+            update(Float.floatToRawIntBits(y));
+            update(Float.floatToRawIntBits(z));
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            if (consumer != null) consumer.addVertex(x, y, z);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setColor(int red, int green, int blue, int alpha) {
+            update(alpha << 24 | red << 16 | green << 8 | blue);
+            if (consumer != null) consumer.setColor(red, green, blue, alpha);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv(float u, float v) {
+            update(Float.floatToRawIntBits(u));
+            update(Float.floatToRawIntBits(v));
+            if (consumer != null) consumer.setUv(u, v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv1(int u, int v) {
+            update(u);
+            update(v);
+            if (consumer != null) consumer.setUv1(u, v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv2(int u, int v) {
+            update(u);
+            update(v);
+            if (consumer != null) consumer.setUv2(u, v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setNormal(float x, float y, float z) {
+            update(Float.floatToRawIntBits(x));
+            update(Float.floatToRawIntBits(y));
+            update(Float.floatToRawIntBits(z));
+            if (consumer != null) consumer.setNormal(x, y, z);
+            return this;
+        }
+    }
+
+    /**
+     * Adds [value] to the hash, the order in which values are added matters.
+     */
+    private void update(int value) {
+        hash = (hash + value) * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 29;
+    }
+
+    /**
+     * Finalizes a hash so all bits depend on all inputs.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
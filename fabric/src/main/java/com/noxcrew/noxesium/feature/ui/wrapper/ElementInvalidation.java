@@ -0,0 +1,281 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.world.scores.DisplaySlot;
+import net.minecraft.world.scores.Objective;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The central place through which cached UI elements are invalidated. Each method is a channel
+ * for a specific kind of change, such as an objective or a team changing, and decides which
+ * elements are affected by it. Every invalidation carries a cause, usually the name of the hook
+ * it came from, which is used to keep track of how often each cause fires.
+ * <p>
+ * Invalidations are coalesced so each element is redrawn at most once per frame, no matter how
+ * many invalidations it receives. Invalidations that arrive while an element is already waiting
+ * to be redrawn are counted as coalesced. Each redraw is attributed to the cause that first
+ * invalidated the element, which can be viewed through [getCauses] to find events that defeat
+ * the cache.
+ * <p>
+ * Invalidations sent from other threads are moved to the render thread first.
+ */
+public class ElementInvalidation {
+
+    /**
+     * The statistics of a single cause of invalidations.
+     */
+    public static final class Cause {
+
+        private final String name;
+        private long events;
+        private long coalesced;
+        private long redraws;
+
+        private int eventsInWindow;
+        private int redrawsInWindow;
+        private int eventsPerSecond;
+        private int redrawsPerSecond;
+
+        private Cause(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of this cause.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns how often this cause has invalidated any element.
+         */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Returns how many invalidations from this cause were coalesced into an earlier one.
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * Returns how many redraws this cause was responsible for.
+         */
+        public long getRedraws() {
+            return redraws;
+        }
+
+        /**
+         * Returns how many invalidations this cause sent in the last second.
+         */
+        public int getEventsPerSecond() {
+            return eventsPerSecond;
+        }
+
+        /**
+         * Returns how many redraws this cause was responsible for in the last second.
+         */
+        public int getRedrawsPerSecond() {
+            return redrawsPerSecond;
+        }
+    }
+
+    /**
+     * The length of the window over which the per second statistics are gathered.
+     */
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private static final ScoreboardWrapper scoreboard = ElementManager.getInstance(ScoreboardWrapper.class);
+    private static final TabListWrapper tabList = ElementManager.getInstance(TabListWrapper.class);
+    private static final ChatWrapper chat = ElementManager.getInstance(ChatWrapper.class);
+    private static final ActionBarWrapper actionBar = ElementManager.getInstance(ActionBarWrapper.class);
+    private static final TitleWrapper title = ElementManager.getInstance(TitleWrapper.class);
+    private static final BossBarWrapper bossBar = ElementManager.getInstance(BossBarWrapper.class);
+
+    private static final Object2ObjectOpenHashMap<String, Cause> causes = new Object2ObjectOpenHashMap<>();
+    private static long windowStart;
+
+    /**
+     * Invalidates the elements showing [objective].
+     */
+    public static void objective(Objective objective, String cause) {
+        if (scoreboard.isObjectiveRelevant(objective)) {
+            invalidate(scoreboard, cause);
+        }
+        if (tabList.isObjectiveRelevant(objective)) {
+            invalidate(tabList, cause);
+        }
+    }
+
+    /**
+     * Invalidates the elements that could be showing an objective in [slot].
+     */
+    public static void displaySlot(DisplaySlot slot, String cause) {
+        // Inform the tab list whenever the tab list slot changes.
+        if (slot == DisplaySlot.LIST) {
+            invalidate(tabList, cause);
+        }
+
+        // We don't need to care about changes to the below name or list slots.
+        if (slot == DisplaySlot.BELOW_NAME || slot == DisplaySlot.LIST) return;
+
+        // We do listen to any change to a team slot as the player could be seeing one
+        // of those and notice it get overridden.
+        invalidate(scoreboard, cause);
+    }
+
+    /**
+     * Invalidates the elements showing the team called [team].
+     */
+    public static void team(String team, String cause) {
+        if (scoreboard.isTeamRelevant(team)) {
+            invalidate(scoreboard, cause);
+        }
+    }
+
+    /**
+     * Invalidates the elements showing the score holder called [player].
+     */
+    public static void player(String player, String cause) {
+        if (scoreboard.isPlayerRelevant(player)) {
+            invalidate(scoreboard, cause);
+        }
+    }
+
+    /**
+     * Invalidates the tab list as a whole.
+     */
+    public static void tabList(String cause) {
+        invalidate(tabList, cause);
+    }
+
+    /**
+     * Invalidates the row of a player in the tab list whose latency changed from
+     * [oldLatency] to [newLatency], only if the shown latency symbol changes.
+     */
+    public static void tabRowLatency(int oldLatency, int newLatency, String cause) {
+        if (tabList.getLatencyBucket(oldLatency) != tabList.getLatencyBucket(newLatency)) {
+            invalidate(tabList, cause);
+        }
+    }
+
+    /**
+     * Invalidates the chat.
+     */
+    public static void chat(String cause) {
+        invalidate(chat, cause);
+    }
+
+    /**
+     * Invalidates the action bar.
+     */
+    public static void actionBar(String cause) {
+        invalidate(actionBar, cause);
+    }
+
+    /**
+     * Invalidates the title.
+     */
+    public static void title(String cause) {
+        invalidate(title, cause);
+    }
+
+    /**
+     * Invalidates the boss bars.
+     */
+    public static void bossBar(String cause) {
+        invalidate(bossBar, cause);
+    }
+
+    /**
+     * Invalidates all elements.
+     */
+    public static void all(String cause) {
+        if (!RenderSystem.isOnRenderThread()) {
+            Minecraft.getInstance().execute(() -> all(cause));
+            return;
+        }
+        for (var wrapper : ElementManager.getAllWrappers()) {
+            invalidate(wrapper, cause);
+        }
+    }
+
+    /**
+     * Invalidates [wrapper] because of [cause].
+     */
+    public static void invalidate(ElementWrapper wrapper, String cause) {
+        if (!RenderSystem.isOnRenderThread()) {
+            Minecraft.getInstance().execute(() -> invalidate(wrapper, cause));
+            return;
+        }
+
+        var entry = getCause(cause);
+        entry.events++;
+        entry.eventsInWindow++;
+        if (!wrapper.invalidate(cause)) {
+            entry.coalesced++;
+        }
+    }
+
+    /**
+     * Records that an element was redrawn because of [cause].
+     */
+    static void onRedraw(String cause) {
+        var entry = getCause(cause);
+        entry.redraws++;
+        entry.redrawsInWindow++;
+    }
+
+    /**
+     * Returns all known causes ordered by the amount of redraws they caused in the last second.
+     */
+    public static List<Cause> getCauses() {
+        rotateWindow();
+        var result = new ArrayList<>(causes.values());
+        result.sort(Comparator.comparingInt(Cause::getRedrawsPerSecond).thenComparingInt(Cause::getEventsPerSecond).reversed());
+        return result;
+    }
+
+    /**
+     * Resets the statistics of all causes.
+     */
+    public static void reset() {
+        causes.clear();
+    }
+
+    /**
+     * Returns the statistics of [cause], creating them if necessary.
+     */
+    private static Cause getCause(String cause) {
+        rotateWindow();
+        var entry = causes.get(cause);
+        if (entry == null) {
+            entry = new Cause(cause);
+            causes.put(cause, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Moves the per second statistics to the next window once a second has passed.
+     */
+    private static void rotateWindow() {
+        var now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS) return;
+        windowStart = now;
+        for (var entry : causes.values()) {
+            entry.eventsPerSecond = entry.eventsInWindow;
+            entry.redrawsPerSecond = entry.redrawsInWindow;
+            entry.eventsInWindow = 0;
+            entry.redrawsInWindow = 0;
+        }
+    }
+}
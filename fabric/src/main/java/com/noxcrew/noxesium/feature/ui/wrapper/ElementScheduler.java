@@ -0,0 +1,86 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+/**
+ * Decides on which frames a cached UI element is updated. While the element keeps
+ * drawing identical frames it is updated less and less often, starting by skipping
+ * 1 frame, then 2, then 4, etc. An update that changes the element resets this streak.
+ * <p>
+ * Elements are updated at least once per second, and at most 20 times per second unless
+ * they are animated. Animated elements bypass the scheduler entirely so they stay frame
+ * accurate, these are redrawn on every frame on which an animated variable changes.
+ * <p>
+ * Each wrapper holds its own scheduler, the amount of skipped frames per second can be
+ * read through [getSkippedPerSecond].
+ */
+public class ElementScheduler {
+
+    /**
+     * The minimum time between updates of non-animated elements, equal to 20 times per second.
+     */
+    private static final long MIN_INTERVAL_NANOS = 50_000_000L;
+
+    /**
+     * The maximum time between updates, equal to once per second.
+     */
+    private static final long MAX_INTERVAL_NANOS = 1_000_000_000L;
+
+    private int streak;
+    private int framesToSkip;
+    private long lastUpdate;
+    private boolean hasUpdated;
+
+    private long windowStart;
+    private int skipped;
+    private int skippedPerSecond;
+
+    /**
+     * Returns whether the element should be updated on the frame starting at [now]. If not,
+     * the previous frame is drawn again without testing for changes.
+     */
+    public boolean shouldUpdate(long now) {
+        // Count skipped frames in windows of one second
+        if (now - windowStart >= MAX_INTERVAL_NANOS) {
+            skippedPerSecond = skipped;
+            skipped = 0;
+            windowStart = now;
+        }
+
+        if (!hasUpdated) return true;
+
+        var elapsed = now - lastUpdate;
+        if (elapsed >= MAX_INTERVAL_NANOS) return true;
+        if (elapsed < MIN_INTERVAL_NANOS || framesToSkip > 0) {
+            if (framesToSkip > 0) framesToSkip--;
+            skipped++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records that the element was updated at [now], where [changed] indicates
+     * whether the element looked different from its previous frame.
+     */
+    public void onUpdate(long now, boolean changed) {
+        lastUpdate = now;
+        hasUpdated = true;
+
+        // Start over from updating every frame whenever something changes
+        if (changed) {
+            streak = 0;
+            framesToSkip = 0;
+            return;
+        }
+
+        // Double the amount of skipped frames for each identical frame after the first
+        framesToSkip = 1 << Math.min(streak, 16);
+        streak++;
+    }
+
+    /**
+     * Returns the amount of frames that were skipped in the last second.
+     */
+    public int getSkippedPerSecond() {
+        return skippedPerSecond;
+    }
+}
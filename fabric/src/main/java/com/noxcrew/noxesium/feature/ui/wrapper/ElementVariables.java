@@ -0,0 +1,266 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.google.common.base.Preconditions;
+import net.minecraft.client.DeltaTracker;
+import net.minecraft.client.Minecraft;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Stores the variables of a UI element which are tested for changes every frame.
+ * <p>
+ * Each variable is registered with a function returning a primitive or an object and
+ * is referred to by the index returned when it is registered. Primitive values are
+ * stored unboxed so testing them for changes does not allocate. Every variable is
+ * evaluated exactly once per frame, the name of a variable is only used to report
+ * which variable caused a redraw.
+ */
+public class ElementVariables {
+
+    /**
+     * Returned by [evaluate] if any variable changed.
+     */
+    public static final int CHANGED = 1;
+
+    /**
+     * Returned by [evaluate] if any animated variable changed.
+     */
+    public static final int ANIMATED = 2;
+
+    /**
+     * A variable holding an int.
+     */
+    @FunctionalInterface
+    public interface IntVariable {
+        int get(Minecraft minecraft, DeltaTracker deltaTracker);
+    }
+
+    /**
+     * A variable holding a long.
+     */
+    @FunctionalInterface
+    public interface LongVariable {
+        long get(Minecraft minecraft, DeltaTracker deltaTracker);
+    }
+
+    /**
+     * A variable holding a double.
+     */
+    @FunctionalInterface
+    public interface DoubleVariable {
+        double get(Minecraft minecraft, DeltaTracker deltaTracker);
+    }
+
+    /**
+     * A variable holding a boolean.
+     */
+    @FunctionalInterface
+    public interface BooleanVariable {
+        boolean get(Minecraft minecraft, DeltaTracker deltaTracker);
+    }
+
+    /**
+     * A variable holding an object, compared using [Object#equals].
+     */
+    @FunctionalInterface
+    public interface ObjectVariable<T> {
+        T get(Minecraft minecraft, DeltaTracker deltaTracker);
+    }
+
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte OBJECT = 4;
+
+    private String[] names = new String[0];
+    private byte[] types = new byte[0];
+    private Object[] functions = new Object[0];
+    private boolean[] animated = new boolean[0];
+    private long[] primitives = new long[0];
+    private Object[] objects = new Object[0];
+    private int[] changes = new int[0];
+    private int size = 0;
+    private boolean evaluated = false;
+    private int lastChanged = -1;
+
+    /**
+     * Registers a new int variable and returns its index.
+     */
+    public int addInt(String name, IntVariable function) {
+        return add(name, INT, function);
+    }
+
+    /**
+     * Registers a new long variable and returns its index.
+     */
+    public int addLong(String name, LongVariable function) {
+        return add(name, LONG, function);
+    }
+
+    /**
+     * Registers a new double variable and returns its index.
+     */
+    public int addDouble(String name, DoubleVariable function) {
+        return add(name, DOUBLE, function);
+    }
+
+    /**
+     * Registers a new boolean variable and returns its index.
+     */
+    public int addBoolean(String name, BooleanVariable function) {
+        return add(name, BOOLEAN, function);
+    }
+
+    /**
+     * Registers a new object variable and returns its index.
+     */
+    public int addObject(String name, ObjectVariable<?> function) {
+        return add(name, OBJECT, function);
+    }
+
+    /**
+     * Marks the variable at [index] as being used for an animation.
+     */
+    public void setAnimated(int index) {
+        Preconditions.checkElementIndex(index, size);
+        animated[index] = true;
+    }
+
+    /**
+     * Evaluates all variables and returns a combination of [CHANGED] and [ANIMATED]
+     * depending on which variables changed since the last evaluation. All variables
+     * are seen as changed on the first evaluation.
+     */
+    public int evaluate(Minecraft minecraft, DeltaTracker deltaTracker) {
+        var result = 0;
+        for (var index = 0; index < size; index++) {
+            if (!test(index, minecraft, deltaTracker) && evaluated) continue;
+
+            changes[index]++;
+            lastChanged = index;
+            result |= animated[index] ? CHANGED | ANIMATED : CHANGED;
+        }
+        evaluated = true;
+        return result;
+    }
+
+    /**
+     * Evaluates the variable at [index], stores its value and returns whether it changed.
+     */
+    private boolean test(int index, Minecraft minecraft, DeltaTracker deltaTracker) {
+        var previous = primitives[index];
+        long value;
+        switch (types[index]) {
+            case INT -> value = ((IntVariable) functions[index]).get(minecraft, deltaTracker);
+            case LONG -> value = ((LongVariable) functions[index]).get(minecraft, deltaTracker);
+            case DOUBLE -> value = Double.doubleToLongBits(((DoubleVariable) functions[index]).get(minecraft, deltaTracker));
+            case BOOLEAN -> value = ((BooleanVariable) functions[index]).get(minecraft, deltaTracker) ? 1L : 0L;
+            default -> {
+                var object = ((ObjectVariable<?>) functions[index]).get(minecraft, deltaTracker);
+                if (Objects.equals(objects[index], object)) return false;
+                objects[index] = object;
+                return true;
+            }
+        }
+        primitives[index] = value;
+        return previous != value;
+    }
+
+    /**
+     * Returns the current value of the int variable at [index].
+     */
+    public int getInt(int index) {
+        return (int) primitives[index];
+    }
+
+    /**
+     * Returns the current value of the long variable at [index].
+     */
+    public long getLong(int index) {
+        return primitives[index];
+    }
+
+    /**
+     * Returns the current value of the double variable at [index].
+     */
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    /**
+     * Returns the current value of the boolean variable at [index].
+     */
+    public boolean getBoolean(int index) {
+        return primitives[index] != 0L;
+    }
+
+    /**
+     * Returns the current value of the object variable at [index] cast as T.
+     */
+    public <T> T getObject(int index) {
+        return (T) objects[index];
+    }
+
+    /**
+     * Returns the amount of variables.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the name of the variable at [index].
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns how often the variable at [index] has changed.
+     */
+    public int getChanges(int index) {
+        return changes[index];
+    }
+
+    /**
+     * Returns the index of the variable that changed most recently, or -1 if none has.
+     */
+    public int getLastChanged() {
+        return lastChanged;
+    }
+
+    /**
+     * Adds a new variable with the given type.
+     */
+    private int add(String name, byte type, Object function) {
+        for (var index = 0; index < size; index++) {
+            Preconditions.checkState(!names[index].equals(name), "Variable called " + name + " already exists");
+        }
+
+        var index = size++;
+        names = Arrays.copyOf(names, size);
+        types = Arrays.copyOf(types, size);
+        functions = Arrays.copyOf(functions, size);
+        animated = Arrays.copyOf(animated, size);
+        primitives = Arrays.copyOf(primitives, size);
+        objects = Arrays.copyOf(objects, size);
+        changes = Arrays.copyOf(changes, size);
+        names[index] = name;
+        types[index] = type;
+        functions[index] = function;
+
+        // Evaluate everything again so the new variable has a value
+        evaluated = false;
+        return index;
+    }
+
+    /**
+     * Mixes [value] into [hash], used by variables that summarise multiple values as a long.
+     */
+    public static long hash(long hash, long value) {
+        hash = (hash + value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -1,6 +1,5 @@
 package com.noxcrew.noxesium.feature.ui.wrapper;
 
-import com.google.common.base.Preconditions;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.noxcrew.noxesium.NoxesiumMod;
@@ -10,11 +9,6 @@ import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphics;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.function.BiFunction;
-
 import static net.minecraft.client.Minecraft.ON_OSX;
 
 /**
@@ -22,7 +16,8 @@ import static net.minecraft.client.Minecraft.ON_OSX;
  * if no changes are detected in it.
  * <p>
  * If [requestRedraw] is called a new frame is drawn immediately on the next frame. Alternatively
- * if some variable changes a redraw also happens immediately on the next frame.
+ * if some animated variable changes a redraw also happens immediately on the next frame. Changes to
+ * other variables are drawn the next time the [ElementScheduler] updates the element.
  * <p>
  * Beyond that UI elements are drawn at most 20 times per second, that is, a new UI frame is drawn
  * only after 50ms have passed since the start of the last draw call. This is more than reasonable
@@ -70,72 +65,134 @@ import static net.minecraft.client.Minecraft.ON_OSX;
  * <p>
  * ----
  * <p>
- * It should be noted that most of this is not yet implemented (hence why experimental optimizations are
- * currently fully un-available), the main problem is figuring out how to determine if frames have changed
- * or not. It seems to be fairly complicated, but the problem is not solvable in an actual nice way without
- * it from a conceptual level. So this'll stay disabled for a while until I solve that.
+ * Whether a frame has changed is determined by fingerprinting it with [ElementFingerprint]. Each frame the
+ * element is run once without drawing anything while every vertex it submits is hashed, if the hash matches
+ * that of the frame in the buffer the buffer is drawn instead. Otherwise, the element is drawn into the buffer
+ * and the hash of that frame is stored. This means we still pay for building the vertices of each element
+ * each frame, but the draw calls and rasterisation only happen when the contents actually change. Elements
+ * that draw without going through the buffer source cannot be fingerprinted, these are drawn directly to the
+ * screen every frame and only fingerprinted again when the scheduler updates them to see if they can be cached.
+ * <p>
+ * How often the fingerprint is taken is decided by the [ElementScheduler] of each element, which implements
+ * the frame skipping described above.
+ * <p>
+ * Any hooks that know an element has changed invalidate it through [ElementInvalidation], which coalesces
+ * invalidations into at most one redraw per frame and tracks what caused each redraw.
  */
 public abstract class ElementWrapper {
 
-    private static final boolean DISABLE_SYSTEM = true;
     public static boolean allowBlendChanges = true;
 
-    private final Map<String, BiFunction<Minecraft, DeltaTracker, Object>> variables = new HashMap<>();
-    private final Map<String, Object> values = new HashMap<>();
+    private final ElementVariables variables = new ElementVariables();
+    private final ElementScheduler scheduler = new ElementScheduler();
     private ElementBuffer buffer;
     private boolean needsRedraw = true;
+    private boolean variablesChanged = false;
+    @Nullable
+    private ElementFingerprint lastFrame;
+    private String lastRedrawCause = "initial";
 
     /**
-     * Returns the value of the variable called name cast as T.
+     * Registers a new int variable that is re-evaluated each time the element is drawn which
+     * will cause a redraw if it changes. Returns the index of the variable.
      */
-    public final <V> V getVariable(String name) {
-        // Fallback to ensure there is always some data!
-        if (!values.containsKey(name)) {
-            return (V) variables.get(name).apply(Minecraft.getInstance(), DeltaTracker.ZERO);
-        }
-        return (V) values.get(name);
+    public final int registerIntVariable(String name, ElementVariables.IntVariable function) {
+        return variables.addInt(name, function);
+    }
+
+    /**
+     * Registers a new long variable like [registerIntVariable].
+     */
+    public final int registerLongVariable(String name, ElementVariables.LongVariable function) {
+        return variables.addLong(name, function);
+    }
+
+    /**
+     * Registers a new double variable like [registerIntVariable].
+     */
+    public final int registerDoubleVariable(String name, ElementVariables.DoubleVariable function) {
+        return variables.addDouble(name, function);
     }
 
     /**
-     * Registers a new variable that is re-evaluated each time the element is drawn which will
-     * cause a cache clear if it changes.
+     * Registers a new boolean variable like [registerIntVariable].
      */
-    public final void registerVariable(String name, BiFunction<Minecraft, DeltaTracker, Object> function) {
-        Preconditions.checkState(!variables.containsKey(name), "Variable called " + name + " already exists");
-        variables.put(name, function);
+    public final int registerBooleanVariable(String name, ElementVariables.BooleanVariable function) {
+        return variables.addBoolean(name, function);
     }
 
     /**
-     * Tests if any variables have changed, and if so, requests a redraw.
+     * Registers a new object variable like [registerIntVariable], prefer primitive
+     * variables as the value of object variables cannot be stored without allocating.
+     */
+    public final int registerObjectVariable(String name, ElementVariables.ObjectVariable<?> function) {
+        return variables.addObject(name, function);
+    }
+
+    /**
+     * Marks the variable at [index] as being used for an animation. Changes to animated
+     * variables are drawn on the very next frame so animations stay frame accurate.
+     */
+    public final void markAnimated(int index) {
+        variables.setAnimated(index);
+    }
+
+    /**
+     * Returns the variables of this element.
+     */
+    public final ElementVariables getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns a description of what caused the last redraw of this element.
+     */
+    public final String getLastRedrawCause() {
+        return lastRedrawCause;
+    }
+
+    /**
+     * Tests if any variables have changed, requests a redraw if any animated variable
+     * changed and otherwise marks that the next update should redraw.
      */
     private void testVariableChanges(Minecraft minecraft, DeltaTracker deltaTracker) {
-        // Test all variables and clear the cache if any change
-        if (!variables.isEmpty()) {
-            for (var variable : variables.entrySet()) {
-                var currentValue = values.get(variable.getKey());
-                var newValue = variable.getValue().apply(minecraft, deltaTracker);
-                if (Objects.equals(currentValue, newValue) && currentValue != null) continue;
-
-                // Clear the cache and ensure all variables are determined!
-                requestRedraw();
-                for (var otherVariable : variables.entrySet()) {
-                    if (Objects.equals(variable.getKey(), otherVariable.getKey())) {
-                        values.put(variable.getKey(), newValue);
-                    } else {
-                        values.put(otherVariable.getKey(), otherVariable.getValue().apply(minecraft, deltaTracker));
-                    }
-                }
-                break;
-            }
+        var result = variables.evaluate(minecraft, deltaTracker);
+        if (result == 0) return;
+
+        var cause = variables.getName(variables.getLastChanged());
+        if ((result & ElementVariables.ANIMATED) != 0) {
+            if (!needsRedraw) lastRedrawCause = cause;
+            needsRedraw = true;
+        } else {
+            if (!variablesChanged && !needsRedraw) lastRedrawCause = cause;
+            variablesChanged = true;
         }
     }
 
+    /**
+     * Returns the scheduler that decides when this element is updated.
+     */
+    public final ElementScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * Requests that the element is redrawn the next frame, if it's not already being redrawn.
+     * Prefer sending invalidations through [ElementInvalidation] with a specific cause.
      */
     public final void requestRedraw() {
-        values.clear();
+        ElementInvalidation.invalidate(this, "requested");
+    }
+
+    /**
+     * Marks that the element should be redrawn the next frame because of [cause]. Returns
+     * `false` if the element was already going to be redrawn.
+     */
+    final boolean invalidate(String cause) {
+        if (needsRedraw) return false;
+        lastRedrawCause = cause;
         needsRedraw = true;
+        return true;
     }
 
     /**
@@ -154,7 +211,12 @@ public abstract class ElementWrapper {
      * Renders the UI element.
      */
     public final void render(GuiGraphics graphics, DeltaTracker deltaTracker) {
-        render(graphics, deltaTracker, null);
+        // Elements without an original still need to be drawn when the patches are off
+        if (NoxesiumMod.getInstance().getConfig().shouldDisableExperimentalPerformancePatches()) {
+            draw(graphics, Minecraft.getInstance(), deltaTracker, null);
+        } else {
+            render(graphics, deltaTracker, null);
+        }
     }
 
     /**
@@ -163,13 +225,6 @@ public abstract class ElementWrapper {
     public final void render(GuiGraphics graphics, DeltaTracker deltaTracker, @Nullable Runnable function) {
         var minecraft = Minecraft.getInstance();
 
-        // Allow entirely disabling the system!
-        if (DISABLE_SYSTEM) {
-            if (function != null) function.run();
-            render(graphics, minecraft, minecraft.getWindow().getGuiScaledWidth(), minecraft.getWindow().getGuiScaledHeight(), minecraft.font, deltaTracker);
-            return;
-        }
-
         // Test if any variables have changed
         testVariableChanges(minecraft, deltaTracker);
 
@@ -180,34 +235,69 @@ public abstract class ElementWrapper {
             // Draw the buffered contents of the element to the screen as a base!
             RenderSystem.assertOnRenderThread();
 
-            // Create the buffer and ensure it has the correct size
+            // Create the buffer and ensure the shared atlas has the correct size
             if (buffer == null) {
                 buffer = new ElementBuffer();
             }
+            var window = minecraft.getWindow();
+            ElementAtlas.resize(window);
 
-            // Try to re-size the buffer
-            if (buffer.resize(minecraft.getWindow())) {
+            // The buffered frame is lost if the atlas was cleared
+            if (!buffer.isValid()) {
+                if (!needsRedraw) lastRedrawCause = "atlas cleared";
                 needsRedraw = true;
             }
 
-            // Redraw into the buffers if we have to
-            if (needsRedraw && buffer.isValid()) {
-                var target = buffer.getTarget();
-                try {
-                    target.setClearColor(0, 0, 0, 0);
-                    target.clear();
-                    target.bindWrite(false);
-                    if (function != null) function.run();
-                    render(graphics, minecraft, minecraft.getWindow().getGuiScaledWidth(), minecraft.getWindow().getGuiScaledHeight(), minecraft.font, deltaTracker);
-                } finally {
-                    graphics.flush();
+            // Elements that could not be fingerprinted are drawn directly every frame, whenever
+            // the scheduler wants to update them we check if they can be cached again.
+            var now = System.nanoTime();
+            ElementFingerprint captured = null;
+            if (lastFrame != null && lastFrame.getValue() == ElementFingerprint.UNKNOWN) {
+                if (scheduler.shouldUpdate(now)) {
+                    captured = ElementFingerprint.capture(() -> draw(graphics, minecraft, deltaTracker, function));
+                }
+                if (captured == null || captured.getValue() == ElementFingerprint.UNKNOWN) {
+                    if (captured != null) scheduler.onUpdate(now, false);
                     needsRedraw = false;
-                    target.unbindWrite();
-                    minecraft.getMainRenderTarget().bindWrite(true);
+                    variablesChanged = false;
+                    draw(graphics, minecraft, deltaTracker, function);
+                    return;
+                }
+                lastRedrawCause = "cacheable";
+                needsRedraw = true;
+                scheduler.onUpdate(now, true);
+            } else if (needsRedraw) {
+                scheduler.onUpdate(now, true);
+            } else if (scheduler.shouldUpdate(now)) {
+                // Compare what the element would draw now against the buffered frame
+                if (!variablesChanged && lastFrame != null) {
+                    captured = ElementFingerprint.capture(() -> draw(graphics, minecraft, deltaTracker, function));
+                }
+                needsRedraw = captured == null || captured.getValue() != lastFrame.getValue();
+                scheduler.onUpdate(now, needsRedraw);
+                if (needsRedraw && !variablesChanged) {
+                    lastRedrawCause = captured == null ? "no buffer" : "contents";
+                }
+            }
+
+            // Redraw into the buffers if we have to, this requires knowing the area the element draws in
+            // beforehand so we fingerprint it first if we don't know.
+            if (needsRedraw) {
+                var bounds = captured != null ? captured : lastFrame;
+                if (bounds == null) {
+                    bounds = ElementFingerprint.capture(() -> draw(graphics, minecraft, deltaTracker, function));
+                }
+
+                // If the frame ended up outside the area we reserved we reserve more space and draw again
+                if (redraw(graphics, minecraft, deltaTracker, function, bounds) && !buffer.covers(window, lastFrame)) {
+                    redraw(graphics, minecraft, deltaTracker, function, lastFrame);
                 }
             }
 
-            if (buffer.isValid()) {
+            if (needsRedraw) {
+                // Draw directly to the screen if the atlas has no space for this element
+                draw(graphics, minecraft, deltaTracker, function);
+            } else {
                 buffer.draw();
             }
         } finally {
@@ -216,6 +306,41 @@ public abstract class ElementWrapper {
         }
     }
 
+    /**
+     * Draws this element into its buffer after reserving space for a frame with [bounds],
+     * returns whether the element was drawn.
+     */
+    private boolean redraw(GuiGraphics graphics, Minecraft minecraft, DeltaTracker deltaTracker, @Nullable Runnable function, ElementFingerprint bounds) {
+        if (!buffer.allocate(minecraft.getWindow(), bounds)) {
+            lastFrame = null;
+            needsRedraw = true;
+            return false;
+        }
+
+        buffer.bindWrite();
+        try {
+            lastFrame = ElementFingerprint.draw(minecraft.renderBuffers().bufferSource(), () -> draw(graphics, minecraft, deltaTracker, function));
+        } catch (Exception x) {
+            lastFrame = null;
+            throw x;
+        } finally {
+            graphics.flush();
+            buffer.unbindWrite();
+        }
+        ElementInvalidation.onRedraw(lastRedrawCause);
+        needsRedraw = false;
+        variablesChanged = false;
+        return true;
+    }
+
+    /**
+     * Draws the contents of this element.
+     */
+    private void draw(GuiGraphics graphics, Minecraft minecraft, DeltaTracker deltaTracker, @Nullable Runnable function) {
+        if (function != null) function.run();
+        render(graphics, minecraft, minecraft.getWindow().getGuiScaledWidth(), minecraft.getWindow().getGuiScaledHeight(), minecraft.font, deltaTracker);
+    }
+
     /**
      * Performs additional rendering logic for this element. Not applicable to cases where an original is being wrapped.
      */
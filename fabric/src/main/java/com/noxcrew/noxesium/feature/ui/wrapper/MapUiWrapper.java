@@ -51,12 +51,12 @@ public class MapUiWrapper extends ElementWrapper {
 
     public MapUiWrapper() {
         // Update every tick for the map contents
-        registerVariable("client tick", (minecraft, partialTicks) -> ((MinecraftExt) minecraft).getClientTickCount());
+        registerIntVariable("client tick", (minecraft, partialTicks) -> ((MinecraftExt) minecraft).getClientTickCount());
 
         // Update as the setting changes
-        registerVariable("main_hand", (minecraft, partialTicks) -> minecraft.options.mainHand());
-        registerVariable("size", (minecraft, partialTicks) -> NoxesiumMod.getInstance().getConfig().mapUiSize);
-        registerVariable("location", (minecraft, partialTicks) -> NoxesiumMod.getInstance().getConfig().mapUiLocation);
+        registerObjectVariable("main_hand", (minecraft, partialTicks) -> minecraft.options.mainHand());
+        registerDoubleVariable("size", (minecraft, partialTicks) -> NoxesiumMod.getInstance().getConfig().mapUiSize);
+        registerObjectVariable("location", (minecraft, partialTicks) -> NoxesiumMod.getInstance().getConfig().mapUiLocation);
     }
 
     @Override
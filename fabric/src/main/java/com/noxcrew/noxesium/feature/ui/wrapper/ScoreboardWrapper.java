@@ -1,22 +1,35 @@
 package com.noxcrew.noxesium.feature.ui.wrapper;
 
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.minecraft.client.DeltaTracker;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.GuiGraphics;
+import net.minecraft.network.chat.Component;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.scores.DisplaySlot;
 import net.minecraft.world.scores.Objective;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 
 /**
  * Manages the current cache of the scoreboard.
+ * <p>
+ * Besides caching the drawn sidebar as a whole, the text of each row is baked into a [TextMesh]
+ * keyed on the formatted component. The name of a row already includes the prefix and suffix of
+ * its team, so a change to one score only bakes the text of that row again while other rows and
+ * their new positions are drawn from their existing meshes. All meshes are submitted to the same
+ * render type so the rows are drawn together in one batch.
  */
 public class ScoreboardWrapper extends ElementWrapper {
 
     private ScoreboardInformation cache;
 
+    // The meshes used while drawing the sidebar and those used the previous time it was drawn
+    private Object2ObjectOpenHashMap<Component, TextMesh> rowMeshes = new Object2ObjectOpenHashMap<>();
+    private Object2ObjectOpenHashMap<Component, TextMesh> previousRowMeshes = new Object2ObjectOpenHashMap<>();
+
     /**
      * Returns whether the given player is relevant to the current cache.
      */
@@ -42,6 +55,34 @@ public class ScoreboardWrapper extends ElementWrapper {
         return cache.objective() == objective;
     }
 
+    /**
+     * Returns the baked mesh for [text] in the sidebar, re-using the mesh from the previous time
+     * the sidebar was drawn if the text is unchanged. Returns `null` if the text cannot be baked.
+     */
+    @Nullable
+    public TextMesh getRowMesh(Font font, Component text, boolean dropShadow) {
+        var mesh = rowMeshes.get(text);
+        if (mesh != null || rowMeshes.containsKey(text)) return mesh;
+
+        // Re-use the mesh from the previous draw if the row is unchanged, text that cannot
+        // be baked is stored as null so we don't try again every frame
+        mesh = previousRowMeshes.get(text);
+        var reusable = mesh != null ? mesh.matches(font, dropShadow) : previousRowMeshes.containsKey(text);
+        if (!reusable) {
+            mesh = TextMesh.bake(font, text.getVisualOrderText(), dropShadow);
+        }
+        rowMeshes.put(text, mesh);
+        return mesh;
+    }
+
+    /**
+     * Removes the meshes of all rows, used when the glyphs they point to may have changed.
+     */
+    public void clearRowMeshes() {
+        rowMeshes.clear();
+        previousRowMeshes.clear();
+    }
+
     /**
      * Creates new cached scoreboard information.
      */
@@ -81,5 +122,11 @@ public class ScoreboardWrapper extends ElementWrapper {
     protected void render(GuiGraphics graphics, Minecraft minecraft, int screenWidth, int screenHeight, Font font, DeltaTracker deltaTracker) {
         // Update the cached information, we use this to know when to invalidate the currently shown scoreboard.
         cache = createCache(minecraft.player);
+
+        // Forget the meshes of any rows that were not drawn this time
+        var drawn = rowMeshes;
+        rowMeshes = previousRowMeshes;
+        rowMeshes.clear();
+        previousRowMeshes = drawn;
     }
 }
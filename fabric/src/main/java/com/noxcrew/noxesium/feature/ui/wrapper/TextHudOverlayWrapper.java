@@ -3,7 +3,9 @@ package com.noxcrew.noxesium.feature.ui.wrapper;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.config.NoxesiumConfig;
+import com.noxcrew.noxesium.feature.entity.QibMetricsModule;
 import com.noxcrew.noxesium.feature.entity.SpatialInteractionEntityTree;
+import com.noxcrew.noxesium.feature.entity.SpatialRebuildScheduler;
 import com.noxcrew.noxesium.feature.rule.ServerRules;
 import com.noxcrew.noxesium.mixin.feature.component.ext.MinecraftExt;
 import net.fabricmc.loader.api.FabricLoader;
@@ -20,9 +22,14 @@ import java.util.ArrayList;
  */
 public class TextHudOverlayWrapper extends ElementWrapper {
 
+    /**
+     * The maximum amount of invalidation causes to show.
+     */
+    private static final int MAX_CAUSES = 8;
+
     public TextHudOverlayWrapper() {
         // Redraw the HUD every client tick which is plenty frequent yet not every frame.
-        registerVariable("client tick", (minecraft, partialTicks) -> ((MinecraftExt) minecraft).getClientTickCount());
+        registerIntVariable("client tick", (minecraft, partialTicks) -> ((MinecraftExt) minecraft).getClientTickCount());
     }
 
     /**
@@ -45,15 +52,47 @@ public class TextHudOverlayWrapper extends ElementWrapper {
             if (NoxesiumConfig.experimentalPatchesHotkey != null) {
                 text.add(Component.translatable("debug.noxesium_overlay." + (NoxesiumConfig.experimentalPatchesHotkey ? "on" : "off")));
             }
+            if (!NoxesiumMod.getInstance().getConfig().shouldDisableExperimentalPerformancePatches()) {
+                var skipped = 0;
+                for (var wrapper : ElementManager.getAllWrappers()) {
+                    skipped += wrapper.getScheduler().getSkippedPerSecond();
+                }
+                text.add(Component.translatable("debug.noxesium_overlay.skipped", skipped));
+            }
         }
         if (NoxesiumMod.getInstance().getConfig().showGameTimeOverlay) {
             text.add(Component.translatable("debug.game_time_overlay", String.format("%.5f", RenderSystem.getShaderGameTime()), (int) (RenderSystem.getShaderGameTime() * 24000)));
         }
         if (NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging && minecraft.player != null) {
-            text.add(Component.literal("§bEntities in model: §7" + SpatialInteractionEntityTree.getModelContents().size()));
+            text.add(Component.literal("§bEntities in model: §7" + SpatialInteractionEntityTree.getSnapshot().size() + " §8(" + SpatialInteractionEntityTree.getIndexType() + ", " + SpatialInteractionEntityTree.getDynamicSize() + " dynamic)"));
+            var scheduler = NoxesiumMod.getInstance().getModule(SpatialRebuildScheduler.class);
+            text.add(Component.literal("§bModel rebuilds: §7" + scheduler.getRebuildCount() + " §8(last: " + scheduler.getLastRebuildSize() + " in " + String.format("%.2f", scheduler.getLastRebuildNanos() / 1_000_000.0) + "ms)"));
             text.add(Component.literal("§bIn water: " + (minecraft.player.isInWaterOrRain() ? "§aYes" : minecraft.player.noxesium$hasTridentCoyoteTime() ? "§eGrace" : "§cNo")));
             text.add(Component.literal("§bQib behavior amount: §7" + ServerRules.QIB_BEHAVIORS.getValue().size()));
         }
+        if (NoxesiumMod.getInstance().getConfig().showQibMetricsOverlay && minecraft.player != null) {
+            for (var histogram : NoxesiumMod.getInstance().getModule(QibMetricsModule.class).getHistograms()) {
+                text.add(Component.literal("§b" + histogram.getName() + ": §7" + histogram.format(histogram.getAverage()) +
+                    " §8(p95: " + histogram.format(histogram.getPercentile(0.95)) + ", max: " + histogram.format(histogram.getMax()) + ")"));
+            }
+        }
+        if (NoxesiumMod.getInstance().getConfig().showUiInvalidationOverlay) {
+            // Show the causes that redrew or invalidated elements in the last second, most redraws first
+            var causes = ElementInvalidation.getCauses();
+            var redraws = 0;
+            var events = 0;
+            for (var cause : causes) {
+                redraws += cause.getRedrawsPerSecond();
+                events += cause.getEventsPerSecond();
+            }
+            text.add(Component.translatable("debug.noxesium_overlay.invalidations", redraws, events));
+            for (var index = 0; index < Math.min(causes.size(), MAX_CAUSES); index++) {
+                var cause = causes.get(index);
+                if (cause.getRedrawsPerSecond() == 0 && cause.getEventsPerSecond() == 0) break;
+                text.add(Component.literal("§b" + cause.getName() + ": §7" + cause.getRedrawsPerSecond() + "/s" +
+                    " §8(events: " + cause.getEventsPerSecond() + "/s, total: " + cause.getEvents() + ", coalesced: " + cause.getCoalesced() + ")"));
+            }
+        }
 
         // Draw all the lines in order
         for (int index = 0; index < text.size(); index++) {
@@ -0,0 +1,191 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.util.FormattedCharSequence;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the vertices of a piece of text as the font would draw them, so the text can be drawn
+ * again without the font having to look up and lay out every glyph. The text is baked in white
+ * at the origin, when it is drawn the vertices are moved into place and their color is multiplied
+ * by the color the text is drawn with. For white text of any opacity this is exactly what the
+ * font itself would have drawn, which is what chat uses to fade out lines.
+ * <p>
+ * The vertices are submitted to the same render types in the same order as the font does so
+ * the result is batched identically.
+ */
+public class TextMesh {
+
+    private final Font font;
+    private final boolean dropShadow;
+    private int width;
+
+    // The render type of each run of vertices and the index of the first vertex after it
+    private final List<RenderType> renderTypes = new ArrayList<>();
+    private final IntArrayList runEnds = new IntArrayList();
+
+    // The position, uv, color and light of each vertex
+    private final FloatArrayList positions = new FloatArrayList();
+    private final FloatArrayList uvs = new FloatArrayList();
+    private final IntArrayList colors = new IntArrayList();
+    private final IntArrayList lights = new IntArrayList();
+
+    private boolean uncacheable;
+    private final Vector3f position = new Vector3f();
+
+    private TextMesh(Font font, boolean dropShadow) {
+        this.font = font;
+        this.dropShadow = dropShadow;
+    }
+
+    /**
+     * Bakes [text] as drawn by [font], returns `null` if the text cannot be baked because
+     * it changes every time it is drawn.
+     */
+    @Nullable
+    public static TextMesh bake(Font font, FormattedCharSequence text, boolean dropShadow) {
+        // Obfuscated text picks random glyphs every time it is drawn
+        if (!text.accept((index, style, codePoint) -> !style.isObfuscated())) return null;
+
+        var mesh = new TextMesh(font, dropShadow);
+        mesh.width = font.drawInBatch(text, 0f, 0f, 0xFFFFFFFF, dropShadow, new Matrix4f(), mesh::getBuffer, Font.DisplayMode.NORMAL, 0, LightTexture.FULL_BRIGHT);
+        if (mesh.uncacheable) return null;
+
+        mesh.positions.trim();
+        mesh.uvs.trim();
+        mesh.colors.trim();
+        mesh.lights.trim();
+        return mesh;
+    }
+
+    /**
+     * Returns whether this mesh was baked with [font] and [dropShadow].
+     */
+    public boolean matches(Font font, boolean dropShadow) {
+        return this.font == font && this.dropShadow == dropShadow;
+    }
+
+    /**
+     * Returns whether text drawn with [color] looks the same when drawn from a mesh. Colored
+     * text is not supported as the font only applies the color to text without a color of its own.
+     */
+    public static boolean supportsColor(int color) {
+        return (color & 0xFFFFFF) == 0xFFFFFF;
+    }
+
+    /**
+     * Draws this mesh into [bufferSource] at [x], [y] transformed by [pose], multiplying the
+     * color of each vertex with [color]. Returns the same value as the font would have.
+     */
+    public int draw(MultiBufferSource bufferSource, Matrix4f pose, float x, float y, int color) {
+        // Match the font which draws barely visible text fully opaque instead
+        if ((color & 0xFC000000) == 0) {
+            color |= 0xFF000000;
+        }
+        var alpha = color >>> 24;
+        var red = (color >> 16) & 0xFF;
+        var green = (color >> 8) & 0xFF;
+        var blue = color & 0xFF;
+
+        var start = 0;
+        for (var run = 0; run < renderTypes.size(); run++) {
+            var end = runEnds.getInt(run);
+            var consumer = bufferSource.getBuffer(renderTypes.get(run));
+            for (var index = start; index < end; index++) {
+                pose.transformPosition(positions.getFloat(index * 3) + x, positions.getFloat(index * 3 + 1) + y, positions.getFloat(index * 3 + 2), position);
+                var baked = colors.getInt(index);
+                consumer.addVertex(position.x, position.y, position.z)
+                    .setColor(
+                        multiply((baked >> 16) & 0xFF, red),
+                        multiply((baked >> 8) & 0xFF, green),
+                        multiply(baked & 0xFF, blue),
+                        multiply(baked >>> 24, alpha)
+                    )
+                    .setUv(uvs.getFloat(index * 2), uvs.getFloat(index * 2 + 1))
+                    .setLight(lights.getInt(index));
+            }
+            start = end;
+        }
+        return (int) x + width;
+    }
+
+    /**
+     * Multiplies two color channels.
+     */
+    private static int multiply(int first, int second) {
+        return first * second / 255;
+    }
+
+    /**
+     * Returns the consumer that records vertices for [renderType] while baking.
+     */
+    private VertexConsumer getBuffer(RenderType renderType) {
+        // Continue the current run if the render type is the same
+        if (renderTypes.isEmpty() || renderTypes.get(renderTypes.size() - 1) != renderType) {
+            renderTypes.add(renderType);
+            runEnds.add(colors.size());
+        }
+        return recorder;
+    }
+
+    /**
+     * Records the vertices of the current run.
+     */
+    private final VertexConsumer recorder = new VertexConsumer() {
+        @Override
+        public VertexConsumer addVertex(float x, float y, float z) {
+            positions.add(x);
+            positions.add(y);
+            positions.add(z);
+            uvs.add(0f);
+            uvs.add(0f);
+            colors.add(0xFFFFFFFF);
+            lights.add(LightTexture.FULL_BRIGHT);
+            runEnds.set(runEnds.size() - 1, colors.size());
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setColor(int red, int green, int blue, int alpha) {
+            colors.set(colors.size() - 1, alpha << 24 | red << 16 | green << 8 | blue);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv(float u, float v) {
+            uvs.set(uvs.size() - 2, u);
+            uvs.set(uvs.size() - 1, v);
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv1(int u, int v) {
+            // Text never uses overlays or normals, we don't store them so we can't replay them
+            uncacheable = true;
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setUv2(int u, int v) {
+            lights.set(lights.size() - 1, (u & 0xFFFF) | (v << 16));
+            return this;
+        }
+
+        @Override
+        public VertexConsumer setNormal(float x, float y, float z) {
+            uncacheable = true;
+            return this;
+        }
+    };
+}
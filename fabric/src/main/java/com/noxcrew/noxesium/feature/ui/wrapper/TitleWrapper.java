@@ -9,7 +9,7 @@ import net.minecraft.util.Mth;
 public class TitleWrapper extends ElementWrapper {
 
     public TitleWrapper() {
-        registerVariable("alpha", (minecraft, deltaTracker) -> {
+        markAnimated(registerIntVariable("alpha", (minecraft, deltaTracker) -> {
             var gui = minecraft.gui;
             var guiExt = (GuiExt) gui;
             var alpha = 255;
@@ -25,9 +25,9 @@ public class TitleWrapper extends ElementWrapper {
             }
 
             return Mth.clamp(alpha, 0, 255);
-        });
+        }));
 
         // Ensure we re-draw if the title time goes from 0 to not 0
-        registerVariable("title visible", (minecraft, partialTicks) -> ((GuiExt) minecraft.gui).getTitleTime() >= 0);
+        registerBooleanVariable("title visible", (minecraft, partialTicks) -> ((GuiExt) minecraft.gui).getTitleTime() >= 0);
     }
 }
@@ -3,6 +3,7 @@ package com.noxcrew.noxesium.mixin.rules.entity;
 import com.noxcrew.noxesium.feature.entity.ExtraEntityData;
 import com.noxcrew.noxesium.feature.entity.ExtraEntityDataHolder;
 import com.noxcrew.noxesium.feature.rule.ClientServerRule;
+import com.noxcrew.noxesium.feature.rule.ServerRules;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.phys.AABB;
 import org.spongepowered.asm.mixin.Mixin;
@@ -21,6 +22,9 @@ public abstract class ExtraEntityDataMixin implements ExtraEntityDataHolder {
     @Unique
     private Map<Integer, Object> noxesium$extraData = null;
 
+    @Unique
+    private int noxesium$qibBehaviorId = -1;
+
     @Override
     public <T> T noxesium$getExtraData(ClientServerRule<T> rule) {
         if (noxesium$extraData != null) {
@@ -37,6 +41,11 @@ public abstract class ExtraEntityDataMixin implements ExtraEntityDataHolder {
         return noxesium$extraData != null && noxesium$extraData.containsKey(rule.getIndex());
     }
 
+    @Override
+    public int noxesium$getQibBehaviorId() {
+        return noxesium$qibBehaviorId;
+    }
+
     @Override
     public void noxesium$setExtraData(ClientServerRule<?> rule, Object value) {
         if (noxesium$extraData == null) {
@@ -48,12 +57,20 @@ public abstract class ExtraEntityDataMixin implements ExtraEntityDataHolder {
         if (rule == ExtraEntityData.QIB_WIDTH_Z) {
             this.setBoundingBox(this.makeBoundingBox());
         }
+
+        // Resolve the id of the qib behavior once so it doesn't need to be looked up on every collision
+        if (rule == ExtraEntityData.QIB_BEHAVIOR) {
+            noxesium$qibBehaviorId = ServerRules.QIB_BEHAVIORS.intern((String) value);
+        }
     }
 
     @Override
     public void noxesium$resetExtraData(ClientServerRule<?> rule) {
         if (noxesium$extraData == null) return;
         noxesium$extraData.remove(rule.getIndex());
+        if (rule == ExtraEntityData.QIB_BEHAVIOR) {
+            noxesium$qibBehaviorId = -1;
+        }
         if (noxesium$extraData.isEmpty()) {
             noxesium$extraData = null;
         }
@@ -24,7 +24,7 @@ public abstract class SpatialEntityMixin {
     public void onUpdateBoundingBox(AABB aABB, CallbackInfo ci) {
         // Ignore if we're already at the exact same position!
         if (((Object) this) instanceof Interaction interaction && !aABB.equals(getBoundingBox())) {
-            SpatialInteractionEntityTree.update(interaction);
+            SpatialInteractionEntityTree.update(interaction, aABB);
         }
     }
 
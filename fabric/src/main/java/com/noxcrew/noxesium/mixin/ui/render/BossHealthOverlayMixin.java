@@ -1,7 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.BossBarWrapper;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.gui.components.BossHealthOverlay;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,11 +12,11 @@ public abstract class BossHealthOverlayMixin {
 
     @Inject(method = "update", at = @At("TAIL"))
     private void refreshBossBarOnUpdate(CallbackInfo ci) {
-        ElementManager.getInstance(BossBarWrapper.class).requestRedraw();
+        ElementInvalidation.bossBar("refreshBossBarOnUpdate");
     }
 
     @Inject(method = "reset", at = @At("TAIL"))
     private void refreshBossBarOnReset(CallbackInfo ci) {
-        ElementManager.getInstance(BossBarWrapper.class).requestRedraw();
+        ElementInvalidation.bossBar("refreshBossBarOnReset");
     }
 }
@@ -0,0 +1,41 @@
+package com.noxcrew.noxesium.mixin.ui.render;
+
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementCompositor;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementFingerprint;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Redirects all vertices submitted while a UI element is being fingerprinted, and
+ * composites queued UI elements before anything else is drawn on top of them.
+ */
+@Mixin(MultiBufferSource.BufferSource.class)
+public abstract class BufferSourceMixin {
+
+    @Inject(method = "getBuffer", at = @At("HEAD"), cancellable = true)
+    private void fingerprintBuffer(RenderType renderType, CallbackInfoReturnable<VertexConsumer> cir) {
+        var fingerprint = ElementFingerprint.getActive();
+        if (fingerprint == null) {
+            ElementCompositor.flush();
+            return;
+        }
+        cir.setReturnValue(fingerprint.getBuffer(renderType));
+    }
+
+    @Inject(method = "endBatch(Lnet/minecraft/client/renderer/RenderType;Lcom/mojang/blaze3d/vertex/BufferBuilder;)V", at = @At("HEAD"))
+    private void startFlush(RenderType renderType, BufferBuilder builder, CallbackInfo ci) {
+        ElementFingerprint.startFlush();
+    }
+
+    @Inject(method = "endBatch(Lnet/minecraft/client/renderer/RenderType;Lcom/mojang/blaze3d/vertex/BufferBuilder;)V", at = @At("RETURN"))
+    private void finishFlush(RenderType renderType, BufferBuilder builder, CallbackInfo ci) {
+        ElementFingerprint.finishFlush();
+    }
+}
@@ -0,0 +1,40 @@
+package com.noxcrew.noxesium.mixin.ui.render;
+
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.MeshData;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementFingerprint;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Detects UI elements drawing directly instead of through the buffer source as
+ * these draws cannot be fingerprinted. Such draws are skipped while an element
+ * is only being fingerprinted as nothing should end up on the screen.
+ */
+@Mixin(BufferUploader.class)
+public abstract class BufferUploaderMixin {
+
+    @Inject(method = "drawWithShader", at = @At("HEAD"), cancellable = true)
+    private static void checkFingerprintForDrawWithShader(MeshData meshData, CallbackInfo ci) {
+        noxesium$checkFingerprint(meshData, ci);
+    }
+
+    @Inject(method = "draw", at = @At("HEAD"), cancellable = true)
+    private static void checkFingerprintForDraw(MeshData meshData, CallbackInfo ci) {
+        noxesium$checkFingerprint(meshData, ci);
+    }
+
+    @Unique
+    private static void noxesium$checkFingerprint(MeshData meshData, CallbackInfo ci) {
+        var fingerprint = ElementFingerprint.getActiveForDirectDraws();
+        if (fingerprint == null) return;
+        fingerprint.markUncacheable();
+        if (fingerprint.isCapturing()) {
+            meshData.close();
+            ci.cancel();
+        }
+    }
+}
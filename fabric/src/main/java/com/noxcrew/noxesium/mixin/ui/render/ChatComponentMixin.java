@@ -1,43 +1,78 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
+import com.noxcrew.noxesium.feature.ui.wrapper.TextMesh;
+import net.minecraft.client.GuiMessage;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
+import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.components.ChatComponent;
+import net.minecraft.util.FormattedCharSequence;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.List;
+
 @Mixin(ChatComponent.class)
 public abstract class ChatComponentMixin {
 
+    @Shadow
+    @Final
+    private List<GuiMessage.Line> trimmedMessages;
+
     @Inject(method = "scrollChat", at = @At("TAIL"))
     private void refreshChatOnScrollChat(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnScrollChat");
     }
 
     @Inject(method = "resetChatScroll", at = @At("TAIL"))
     private void refreshChatOnResetChatScroll(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnResetChatScroll");
     }
 
     @Inject(method = "refreshTrimmedMessages", at = @At("TAIL"))
     private void refreshChatOnRefreshTrimmedMessage(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnRefreshTrimmedMessage");
+        ElementManager.getInstance(ChatWrapper.class).pruneLineMeshes(trimmedMessages);
     }
 
     @Inject(method = "addMessage(Lnet/minecraft/network/chat/Component;Lnet/minecraft/network/chat/MessageSignature;Lnet/minecraft/client/GuiMessageTag;)V", at = @At("TAIL"))
     private void refreshChatOnAddMessage(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnAddMessage");
+        ElementManager.getInstance(ChatWrapper.class).pruneLineMeshes(trimmedMessages);
     }
 
     @Inject(method = "clearMessages", at = @At("TAIL"))
     private void refreshChatOnClearMessages(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnClearMessages");
+        ElementManager.getInstance(ChatWrapper.class).pruneLineMeshes(trimmedMessages);
     }
 
     @Inject(method = "restoreState", at = @At("TAIL"))
     private void refreshChatOnRestoreState(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnRestoreState");
+    }
+
+    @WrapOperation(method = "render", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gui/GuiGraphics;drawString(Lnet/minecraft/client/gui/Font;Lnet/minecraft/util/FormattedCharSequence;III)I"))
+    private int drawChatLineMesh(GuiGraphics graphics, Font font, FormattedCharSequence text, int x, int y, int color, Operation<Integer> original) {
+        if (NoxesiumMod.getInstance().getConfig().shouldDisableExperimentalPerformancePatches() || !TextMesh.supportsColor(color)) {
+            return original.call(graphics, font, text, x, y, color);
+        }
+
+        // Draw the baked line with the fade applied to its colors instead of laying out the text again
+        var mesh = ElementManager.getInstance(ChatWrapper.class).getLineMesh(font, text, true);
+        if (mesh == null) {
+            return original.call(graphics, font, text, x, y, color);
+        }
+        return mesh.draw(Minecraft.getInstance().renderBuffers().bufferSource(), graphics.pose().last().pose(), x, y, color);
     }
 }
@@ -1,7 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.multiplayer.chat.ChatListener;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,26 +12,21 @@ public abstract class ChatListenerMixin {
 
     @Inject(method = "clearQueue", at = @At("TAIL"))
     private void refreshChatOnClearQueue(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
-    }
-
-    @Inject(method = "tick", at = @At("TAIL"))
-    private void refreshChatOnTick(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnClearQueue");
     }
 
     @Inject(method = "setMessageDelay", at = @At("TAIL"))
     private void refreshChatOnSetMessageDelay(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnSetMessageDelay");
     }
 
     @Inject(method = "acceptNextDelayedMessage", at = @At("TAIL"))
     private void refreshChatOnAcceptNextDelayedMessage(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnAcceptNextDelayedMessage");
     }
 
     @Inject(method = "handleMessage", at = @At("TAIL"))
     private void refreshChatOnHandleMessage(CallbackInfo ci) {
-        ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+        ElementInvalidation.chat("refreshChatOnHandleMessage");
     }
 }
@@ -1,7 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.TabListWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.multiplayer.ClientPacketListener;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,16 +12,16 @@ public abstract class ClientPacketListenerMixin {
 
     @Inject(method = "applyPlayerInfoUpdate", at = @At(value = "INVOKE", target = "Ljava/util/Set;add(Ljava/lang/Object;)Z"))
     private void refreshTabListOnApplyPlayerInfoUpdateAdd(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnApplyPlayerInfoUpdateAdd");
     }
 
     @Inject(method = "applyPlayerInfoUpdate", at = @At(value = "INVOKE", target = "Ljava/util/Set;remove(Ljava/lang/Object;)Z"))
     private void refreshTabListOnApplyPlayerInfoUpdateRemove(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnApplyPlayerInfoUpdateRemove");
     }
 
     @Inject(method = "handlePlayerInfoRemove", at = @At(value = "INVOKE", target = "Ljava/util/Map;remove(Ljava/lang/Object;)Ljava/lang/Object;"))
     private void refreshTabListOnHandlePlayerInfoRemove(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnHandlePlayerInfoRemove");
     }
 }
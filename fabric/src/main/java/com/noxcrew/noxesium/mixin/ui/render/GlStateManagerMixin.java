@@ -1,6 +1,7 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
 import com.mojang.blaze3d.platform.GlStateManager;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementAtlas;
 import com.noxcrew.noxesium.feature.ui.wrapper.ElementWrapper;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -8,7 +9,8 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 /**
- * Overrides the blending state to enforce blending to be on for some part of the code.
+ * Overrides the blending state to enforce blending to be on for some part of the code,
+ * and moves scissor boxes along while elements are drawn into the element atlas.
  */
 @Mixin(value = GlStateManager.class, remap = false)
 public abstract class GlStateManagerMixin {
@@ -36,4 +38,16 @@ public abstract class GlStateManagerMixin {
         if (ElementWrapper.allowBlendChanges) return;
         ci.cancel();
     }
+
+    @Inject(method = "_scissorBox", at = @At("HEAD"), cancellable = true)
+    private static void moveScissorBoxIntoElementAtlas(int x, int y, int width, int height, CallbackInfo ci) {
+        if (!ElementAtlas.applyScissor(x, y, width, height)) return;
+        ci.cancel();
+    }
+
+    @Inject(method = "_disableScissorTest", at = @At("HEAD"), cancellable = true)
+    private static void keepScissorInElementAtlas(CallbackInfo ci) {
+        if (!ElementAtlas.resetScissor()) return;
+        ci.cancel();
+    }
 }
@@ -8,15 +8,19 @@ import com.noxcrew.noxesium.feature.ui.wrapper.ActionBarWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.BossBarWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.DebugWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementCompositor;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
 import com.noxcrew.noxesium.feature.ui.wrapper.MapUiWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.ScoreboardWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.TabListWrapper;
 import com.noxcrew.noxesium.feature.ui.wrapper.TextHudOverlayWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.TextMesh;
 import com.noxcrew.noxesium.feature.ui.wrapper.TitleWrapper;
 import com.noxcrew.noxesium.mixin.ui.render.ext.ChatComponentExt;
 import net.minecraft.client.DeltaTracker;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.Font;
 import net.minecraft.client.gui.Gui;
 import net.minecraft.client.gui.GuiGraphics;
 import net.minecraft.client.gui.LayeredDraw;
@@ -24,6 +28,7 @@ import net.minecraft.client.gui.components.BossHealthOverlay;
 import net.minecraft.client.gui.components.ChatComponent;
 import net.minecraft.client.gui.components.DebugScreenOverlay;
 import net.minecraft.client.gui.components.PlayerTabOverlay;
+import net.minecraft.network.chat.Component;
 import net.minecraft.world.scores.Objective;
 import net.minecraft.world.scores.Scoreboard;
 import org.spongepowered.asm.mixin.Final;
@@ -83,15 +88,37 @@ public abstract class GuiHookMixin {
         noxesium$addRenderLayer(ElementManager.getInstance(MapUiWrapper.class)::render, false, () -> NoxesiumMod.getInstance().getConfig().shouldRenderMapsInUi());
         noxesium$addRenderLayer(ElementManager.getInstance(TextHudOverlayWrapper.class)::render, true, () -> NoxesiumMod.getInstance().getConfig().showFpsOverlay ||
             NoxesiumMod.getInstance().getConfig().showGameTimeOverlay ||
-            NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging
+            NoxesiumMod.getInstance().getConfig().enableQibSystemDebugging ||
+            NoxesiumMod.getInstance().getConfig().showQibMetricsOverlay ||
+            NoxesiumMod.getInstance().getConfig().showUiInvalidationOverlay
         );
     }
 
+    @Inject(method = "render", at = @At("TAIL"))
+    public void compositeElements(GuiGraphics graphics, DeltaTracker deltaTracker, CallbackInfo ci) {
+        // Draw any elements that are still queued to be composited
+        ElementCompositor.flush();
+    }
+
     @WrapMethod(method = "renderScoreboardSidebar")
     public void renderScoreboardSidebar(GuiGraphics graphics, DeltaTracker deltaTracker, Operation<Void> original) {
         ElementManager.getInstance(ScoreboardWrapper.class).wrapOperation(graphics, deltaTracker, () -> original.call(graphics, deltaTracker));
     }
 
+    @WrapOperation(method = "displayScoreboardSidebar", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/gui/GuiGraphics;drawString(Lnet/minecraft/client/gui/Font;Lnet/minecraft/network/chat/Component;IIIZ)I"))
+    public int drawScoreboardRow(GuiGraphics graphics, Font font, Component text, int x, int y, int color, boolean dropShadow, Operation<Integer> original) {
+        if (NoxesiumMod.getInstance().getConfig().shouldDisableExperimentalPerformancePatches() || !TextMesh.supportsColor(color)) {
+            return original.call(graphics, font, text, x, y, color, dropShadow);
+        }
+
+        // Draw the title, names and scores from meshes so only rows that changed are laid out again
+        var mesh = ElementManager.getInstance(ScoreboardWrapper.class).getRowMesh(font, text, dropShadow);
+        if (mesh == null) {
+            return original.call(graphics, font, text, x, y, color, dropShadow);
+        }
+        return mesh.draw(Minecraft.getInstance().renderBuffers().bufferSource(), graphics.pose().last().pose(), x, y, color);
+    }
+
     @WrapMethod(method = "renderOverlayMessage")
     public void renderOverlayMessage(GuiGraphics graphics, DeltaTracker deltaTracker, Operation<Void> original) {
         ElementManager.getInstance(ActionBarWrapper.class).wrapOperation(graphics, deltaTracker, () -> original.call(graphics, deltaTracker));
@@ -111,7 +138,7 @@ public abstract class GuiHookMixin {
         var hover = chatComponentExt.invokeGetMessageEndIndexAt(chatComponentExt.invokeScreenToChatX(x), chatComponentExt.invokeScreenToChatY(y));
         if (hover != noxesium$lastChatHover) {
             noxesium$lastChatHover = hover;
-            chatWrapper.requestRedraw();
+            ElementInvalidation.chat("chatHover");
         }
         chatWrapper.wrapOperation(graphics, DeltaTracker.ZERO, () -> original.call(instance, graphics, tickCount, x, y, focussed));
     }
@@ -1,9 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementWrapper;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.ActionBarWrapper;
-import com.noxcrew.noxesium.feature.ui.wrapper.TitleWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.gui.Gui;
 import net.minecraft.network.chat.Component;
 import org.spongepowered.asm.mixin.Mixin;
@@ -19,36 +16,36 @@ public abstract class GuiRefreshMixin {
 
     @Inject(method = "setOverlayMessage", at = @At(value = "TAIL"))
     private void refreshActionBarOnSetOverlayMessage(Component component, boolean bl, CallbackInfo ci) {
-        ElementManager.getInstance(ActionBarWrapper.class).requestRedraw();
+        ElementInvalidation.actionBar("refreshActionBarOnSetOverlayMessage");
     }
 
     @Inject(method = "resetTitleTimes", at = @At(value = "TAIL"))
     private void refreshTitleCacheOnResetTitleTimes(CallbackInfo ci) {
-        ElementManager.getInstance(TitleWrapper.class).requestRedraw();
+        ElementInvalidation.title("refreshTitleCacheOnResetTitleTimes");
     }
 
     @Inject(method = "setTimes", at = @At(value = "TAIL"))
     private void refreshTitleCacheOnSetTimes(CallbackInfo ci) {
-        ElementManager.getInstance(TitleWrapper.class).requestRedraw();
+        ElementInvalidation.title("refreshTitleCacheOnSetTimes");
     }
 
     @Inject(method = "setSubtitle", at = @At(value = "TAIL"))
     private void refreshTitleCacheOnSetSubtitle(CallbackInfo ci) {
-        ElementManager.getInstance(TitleWrapper.class).requestRedraw();
+        ElementInvalidation.title("refreshTitleCacheOnSetSubtitle");
     }
 
     @Inject(method = "setTitle", at = @At(value = "TAIL"))
     private void refreshTitleCacheOnSetTitle(CallbackInfo ci) {
-        ElementManager.getInstance(TitleWrapper.class).requestRedraw();
+        ElementInvalidation.title("refreshTitleCacheOnSetTitle");
     }
 
     @Inject(method = "clear", at = @At(value = "TAIL"))
     private void refreshTitleCacheOnClear(CallbackInfo ci) {
-        ElementManager.getInstance(TitleWrapper.class).requestRedraw();
+        ElementInvalidation.title("refreshTitleCacheOnClear");
     }
 
     @Inject(method = "onDisconnected", at = @At(value = "TAIL"))
     private void refreshElementsOnDisconnect(CallbackInfo ci) {
-        ElementManager.getAllWrappers().forEach(ElementWrapper::requestRedraw);
+        ElementInvalidation.all("refreshElementsOnDisconnect");
     }
 }
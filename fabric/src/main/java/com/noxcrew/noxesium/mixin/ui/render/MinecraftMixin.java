@@ -3,9 +3,10 @@ package com.noxcrew.noxesium.mixin.ui.render;
 import com.llamalad7.mixinextras.injector.ModifyReturnValue;
 import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.feature.TeamGlowHotkeys;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementWrapper;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
 import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
+import com.noxcrew.noxesium.feature.ui.wrapper.ScoreboardWrapper;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.ChatScreen;
 import net.minecraft.client.gui.screens.Screen;
@@ -29,13 +30,17 @@ public abstract class MinecraftMixin {
 
     @Inject(method = "resizeDisplay", at = @At("TAIL"))
     private void refreshElements(CallbackInfo ci) {
-        ElementManager.getAllWrappers().forEach(ElementWrapper::requestRedraw);
+        ElementInvalidation.all("refreshElements");
+
+        // Font options are applied by resizing the display, which may change the glyphs of baked text
+        ElementManager.getInstance(ChatWrapper.class).clearLineMeshes();
+        ElementManager.getInstance(ScoreboardWrapper.class).clearRowMeshes();
     }
 
     @Inject(method = "setScreen", at = @At("HEAD"))
     private void refreshChat(Screen newScreen, CallbackInfo ci) {
         if (newScreen instanceof ChatScreen || this.screen instanceof ChatScreen) {
-            ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+            ElementInvalidation.chat("refreshChat");
         }
     }
 
@@ -6,8 +6,7 @@ import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.noxcrew.noxesium.NoxesiumMod;
 import com.noxcrew.noxesium.feature.rule.ServerRuleModule;
 import com.noxcrew.noxesium.feature.rule.ServerRules;
-import com.noxcrew.noxesium.feature.ui.wrapper.ChatWrapper;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.GraphicsStatus;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.OptionInstance;
@@ -35,7 +34,7 @@ public abstract class OptionInstanceMixin<T> {
             NoxesiumMod.syncGuiScale();
         }
         if (instance == options.chatLineSpacing()) {
-            ElementManager.getInstance(ChatWrapper.class).requestRedraw();
+            ElementInvalidation.chat("chatLineSpacing");
         }
         return original.call(instance);
     }
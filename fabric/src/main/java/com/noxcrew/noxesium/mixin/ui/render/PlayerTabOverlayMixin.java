@@ -1,7 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.TabListWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.gui.components.PlayerTabOverlay;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -13,21 +12,21 @@ public abstract class PlayerTabOverlayMixin {
 
     @Inject(method = "setHeader", at = @At("TAIL"))
     private void refreshTabListOnSetHeader(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnSetHeader");
     }
 
     @Inject(method = "setFooter", at = @At("TAIL"))
     private void refreshTabListOnSetFooter(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnSetFooter");
     }
 
     @Inject(method = "reset", at = @At("TAIL"))
     private void refreshTabListOnReset(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnReset");
     }
 
     @Inject(method = "setVisible", at = @At(value = "INVOKE", target = "Ljava/util/Map;clear()V"))
     private void refreshTabListOnSetVisible(CallbackInfo ci) {
-        ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+        ElementInvalidation.tabList("refreshTabListOnSetVisible");
     }
 }
@@ -1,7 +1,6 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.ScoreboardWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.world.scores.PlayerTeam;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
@@ -21,23 +20,21 @@ public abstract class PlayerTeamMixin {
 
     @Inject(method = "setPlayerPrefix", at = @At("TAIL"))
     private void refreshScoreboardCacheOnSetPlayerPrefix(CallbackInfo ci) {
-        noxesium$refreshScoreboard();
+        noxesium$refreshScoreboard("refreshScoreboardCacheOnSetPlayerPrefix");
     }
 
     @Inject(method = "setPlayerSuffix", at = @At("TAIL"))
     private void refreshScoreboardCacheOnSetPlayerSuffix(CallbackInfo ci) {
-        noxesium$refreshScoreboard();
+        noxesium$refreshScoreboard("refreshScoreboardCacheOnSetPlayerSuffix");
     }
 
     @Inject(method = "setColor", at = @At("TAIL"))
     private void refreshScoreboardCacheOnSetColor(CallbackInfo ci) {
-        noxesium$refreshScoreboard();
+        noxesium$refreshScoreboard("refreshScoreboardCacheOnSetColor");
     }
 
     @Unique
-    private void noxesium$refreshScoreboard() {
-        if (ElementManager.getInstance(ScoreboardWrapper.class).isTeamRelevant(this.getName())) {
-            ElementManager.getInstance(ScoreboardWrapper.class).requestRedraw();
-        }
+    private void noxesium$refreshScoreboard(String cause) {
+        ElementInvalidation.team(this.getName(), cause);
     }
 }
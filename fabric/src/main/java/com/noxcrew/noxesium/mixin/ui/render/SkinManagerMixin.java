@@ -1,8 +1,7 @@
 package com.noxcrew.noxesium.mixin.ui.render;
 
 import com.mojang.authlib.minecraft.MinecraftProfileTextures;
-import com.noxcrew.noxesium.feature.ui.wrapper.ElementManager;
-import com.noxcrew.noxesium.feature.ui.wrapper.TabListWrapper;
+import com.noxcrew.noxesium.feature.ui.wrapper.ElementInvalidation;
 import net.minecraft.client.resources.PlayerSkin;
 import net.minecraft.client.resources.SkinManager;
 import org.spongepowered.asm.mixin.Mixin;
@@ -23,7 +22,7 @@ public abstract class SkinManagerMixin {
     private void clearTabSkinCache(UUID uUID, MinecraftProfileTextures minecraftProfileTextures, CallbackInfoReturnable<CompletableFuture<PlayerSkin>> cir) {
         cir.getReturnValue().whenComplete((a, b) -> {
             // Whenever we finish loading a skin we make sure to update the tab list so we can show the actual skin!
-            ElementManager.getInstance(TabListWrapper.class).requestRedraw();
+            ElementInvalidation.tabList("clearTabSkinCache");
         });
     }
 }
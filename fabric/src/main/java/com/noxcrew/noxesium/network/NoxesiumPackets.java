@@ -18,6 +18,7 @@ import com.noxcrew.noxesium.network.clientbound.ClientboundSetExtraEntityDataPac
 import com.noxcrew.noxesium.network.serverbound.ServerboundClientInformationPacket;
 import com.noxcrew.noxesium.network.serverbound.ServerboundClientSettingsPacket;
 import com.noxcrew.noxesium.network.serverbound.ServerboundNoxesiumPacket;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredBatchPacket;
 import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
 import com.noxcrew.noxesium.network.serverbound.ServerboundRiptidePacket;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
@@ -55,6 +56,7 @@ public class NoxesiumPackets {
     public static final NoxesiumPayloadType<ServerboundClientInformationPacket> SERVER_CLIENT_INFO = NoxesiumPackets.server("client_info", ServerboundClientInformationPacket.STREAM_CODEC);
     public static final NoxesiumPayloadType<ServerboundClientSettingsPacket> SERVER_CLIENT_SETTINGS = NoxesiumPackets.server("client_settings", ServerboundClientSettingsPacket.STREAM_CODEC);
     public static final NoxesiumPayloadType<ServerboundQibTriggeredPacket> SERVER_QIB_TRIGGERED = NoxesiumPackets.server("qib_triggered", ServerboundQibTriggeredPacket.STREAM_CODEC);
+    public static final NoxesiumPayloadType<ServerboundQibTriggeredBatchPacket> SERVER_QIB_TRIGGERED_BATCH = NoxesiumPackets.server("qib_triggered_batch", ServerboundQibTriggeredBatchPacket.STREAM_CODEC);
     public static final NoxesiumPayloadType<ServerboundRiptidePacket> SERVER_RIPTIDE = NoxesiumPackets.server("riptide", ServerboundRiptidePacket.STREAM_CODEC);
 
     public static final NoxesiumPayloadType<ClientboundCustomSoundModifyPacket> CLIENT_CUSTOM_SOUND_MODIFY = NoxesiumPackets.client("modify_sound", ClientboundCustomSoundModifyPacket.STREAM_CODEC);
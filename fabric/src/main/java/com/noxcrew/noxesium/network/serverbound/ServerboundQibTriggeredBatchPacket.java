@@ -0,0 +1,48 @@
+package com.noxcrew.noxesium.network.serverbound;
+
+import com.noxcrew.noxesium.network.NoxesiumPackets;
+import com.noxcrew.noxesium.network.NoxesiumPayloadType;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+
+import java.util.List;
+
+/**
+ * Sent to the server to inform it about all qib interactions the client triggered
+ * in a single tick. Each behavior name is only sent once, entries refer to them by
+ * their index in [behaviors]. Identical triggers are merged into a single entry.
+ */
+public record ServerboundQibTriggeredBatchPacket(List<String> behaviors, List<Entry> entries) implements ServerboundNoxesiumPacket {
+    public static final StreamCodec<RegistryFriendlyByteBuf, ServerboundQibTriggeredBatchPacket> STREAM_CODEC = CustomPacketPayload.codec(ServerboundQibTriggeredBatchPacket::write, ServerboundQibTriggeredBatchPacket::new);
+
+    /**
+     * A qib interaction with the behavior at index [behavior] in [behaviors] that
+     * was triggered [count] times.
+     */
+    public record Entry(int behavior, ServerboundQibTriggeredPacket.Type qibType, int entityId, int count) {
+    }
+
+    private ServerboundQibTriggeredBatchPacket(RegistryFriendlyByteBuf buf) {
+        this(
+                buf.readList(FriendlyByteBuf::readUtf),
+                buf.readList((buffer) -> new Entry(buffer.readVarInt(), buffer.readEnum(ServerboundQibTriggeredPacket.Type.class), buffer.readVarInt(), buffer.readVarInt()))
+        );
+    }
+
+    private void write(RegistryFriendlyByteBuf buf) {
+        buf.writeCollection(behaviors, FriendlyByteBuf::writeUtf);
+        buf.writeCollection(entries, (buffer, entry) -> {
+            buffer.writeVarInt(entry.behavior());
+            buffer.writeEnum(entry.qibType());
+            buffer.writeVarInt(entry.entityId());
+            buffer.writeVarInt(entry.count());
+        });
+    }
+
+    @Override
+    public NoxesiumPayloadType<?> noxesiumType() {
+        return NoxesiumPackets.SERVER_QIB_TRIGGERED_BATCH;
+    }
+}
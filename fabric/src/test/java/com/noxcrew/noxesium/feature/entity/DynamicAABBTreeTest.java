@@ -0,0 +1,177 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import net.minecraft.world.phys.AABB;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs random inserts, moves and removals against a [DynamicAABBTree] and checks
+ * its structure and query results against a brute-force scan of all boxes.
+ */
+public class DynamicAABBTreeTest {
+
+    /**
+     * The amount of distinct ids used, so ids are re-used after being removed.
+     */
+    private static final int IDS = 400;
+
+    /**
+     * The amount of random operations per run.
+     */
+    private static final int OPERATIONS = 20_000;
+
+    /**
+     * The size of the area in which boxes are placed.
+     */
+    private static final double AREA = 128.0;
+
+    /**
+     * Returns a random box somewhere in the area.
+     */
+    private static AABB randomBox(Random random) {
+        var x = random.nextDouble() * AREA;
+        var y = random.nextDouble() * 16.0;
+        var z = random.nextDouble() * AREA;
+        return new AABB(x, y, z, x + 0.25 + random.nextDouble() * 3.0, y + 0.25 + random.nextDouble() * 3.0, z + 0.25 + random.nextDouble() * 3.0);
+    }
+
+    /**
+     * Checks that [tree] finds exactly the boxes in [expected] that clip [query].
+     */
+    private static void assertFinds(DynamicAABBTree tree, Map<Integer, AABB> expected, AABB query) {
+        var output = new IntArrayList();
+        tree.find(query, output);
+        var found = new IntOpenHashSet(output);
+        assertEquals(output.size(), found.size(), "Tree returned duplicate ids for " + query);
+
+        var matches = new IntOpenHashSet();
+        for (var entry : expected.entrySet()) {
+            if (entry.getValue().intersects(query)) {
+                matches.add((int) entry.getKey());
+            }
+        }
+        assertEquals(matches, found, "Tree found different ids for " + query);
+    }
+
+    /**
+     * Checks that [tree] is consistent, holds everything in [expected] and is balanced.
+     */
+    private static void assertStructure(DynamicAABBTree tree, Map<Integer, AABB> expected) {
+        tree.validate();
+        assertEquals(expected.size(), tree.size());
+
+        var box = new double[6];
+        for (var entry : expected.entrySet()) {
+            assertTrue(tree.copyBox(entry.getKey(), box, 0));
+            var aabb = entry.getValue();
+            assertEquals(new AABB(box[0], box[1], box[2], box[3], box[4], box[5]), aabb);
+        }
+
+        // Without re-balancing random inserts quickly build trees far deeper than this
+        if (expected.size() > 1) {
+            var log = 32 - Integer.numberOfLeadingZeros(expected.size());
+            assertTrue(tree.getHeight() <= 3 * log, "Tree of " + expected.size() + " values has height " + tree.getHeight());
+        }
+    }
+
+    /**
+     * Runs random operations on [tree] which initially holds [expected].
+     */
+    private static void runOperations(DynamicAABBTree tree, Map<Integer, AABB> expected, Random random) {
+        for (var operation = 0; operation < OPERATIONS; operation++) {
+            var id = random.nextInt(IDS);
+            var kind = random.nextInt(10);
+            if (kind < 3) {
+                // Remove a value, which may not be in the tree
+                assertEquals(expected.remove(id) != null, tree.remove(id));
+            } else if (kind < 7 && expected.containsKey(id)) {
+                // Move a value slightly, mostly staying within its enlarged box
+                var box = expected.get(id);
+                var moved = box.move((random.nextDouble() - 0.5) * 0.3, (random.nextDouble() - 0.5) * 0.3, (random.nextDouble() - 0.5) * 0.3);
+                assertFalse(tree.update(id, moved));
+                expected.put(id, moved);
+            } else {
+                // Insert a value or move it somewhere else entirely
+                var box = randomBox(random);
+                assertEquals(!expected.containsKey(id), tree.update(id, box));
+                expected.put(id, box);
+            }
+
+            if (operation % 97 == 0) {
+                assertStructure(tree, expected);
+            }
+            if (operation % 13 == 0) {
+                assertFinds(tree, expected, randomBox(random).inflate(random.nextDouble() * 8.0));
+            }
+        }
+        assertStructure(tree, expected);
+    }
+
+    @Test
+    public void randomOperationsMatchBruteForce() {
+        for (var seed = 0; seed < 5; seed++) {
+            runOperations(new DynamicAABBTree(), new HashMap<>(), new Random(seed));
+        }
+    }
+
+    @Test
+    public void builtTreeMatchesBruteForce() {
+        var random = new Random(42);
+        var expected = new HashMap<Integer, AABB>();
+        var ids = new int[IDS];
+        var packed = new double[IDS * 6];
+        for (var id = 0; id < IDS; id++) {
+            var box = randomBox(random);
+            expected.put(id, box);
+            ids[id] = id;
+            packed[id * 6] = box.minX;
+            packed[id * 6 + 1] = box.minY;
+            packed[id * 6 + 2] = box.minZ;
+            packed[id * 6 + 3] = box.maxX;
+            packed[id * 6 + 4] = box.maxY;
+            packed[id * 6 + 5] = box.maxZ;
+        }
+
+        // A freshly built tree is split in half at every level
+        var tree = DynamicAABBTree.build(new SpatialSnapshot(0L, ids, packed));
+        assertEquals(32 - Integer.numberOfLeadingZeros(IDS - 1), tree.getHeight());
+        assertStructure(tree, expected);
+        for (var query = 0; query < 200; query++) {
+            assertFinds(tree, expected, randomBox(random).inflate(random.nextDouble() * 8.0));
+        }
+
+        // The built tree has to keep working when it is changed afterwards
+        runOperations(tree, expected, random);
+    }
+
+    @Test
+    public void removingEverythingEmptiesTree() {
+        var random = new Random(7);
+        var tree = new DynamicAABBTree();
+        var expected = new HashMap<Integer, AABB>();
+        for (var id = 0; id < IDS; id++) {
+            var box = randomBox(random);
+            tree.update(id, box);
+            expected.put(id, box);
+        }
+        assertStructure(tree, expected);
+
+        for (var id = 0; id < IDS; id++) {
+            assertTrue(tree.remove(id));
+            expected.remove(id);
+            if (id % 50 == 0) assertStructure(tree, expected);
+        }
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.getHeight());
+        assertFinds(tree, expected, new AABB(0.0, 0.0, 0.0, AREA, 16.0, AREA));
+    }
+}
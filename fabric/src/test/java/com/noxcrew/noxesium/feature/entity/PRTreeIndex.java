@@ -0,0 +1,142 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import net.minecraft.world.phys.AABB;
+import org.khelekore.prtree.MBRConverter;
+import org.khelekore.prtree.PRTree;
+import org.khelekore.prtree.SimpleMBR;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The way interaction entities were stored before [DynamicAABBTree], kept to
+ * benchmark against. Entities are loaded into a [PRTree] which is immutable, so
+ * moved entities are kept in a map of pending entities which every query scans
+ * linearly while their old position in the tree is ignored. The tree is only
+ * rebuilt with the pending entities when [rebuild] is called, which used to
+ * happen every 2.5 seconds. Queries collect the clipped entities into a new set.
+ */
+public class PRTreeIndex {
+
+    private static final int DEFAULT_BRANCHING_FACTOR = 30;
+
+    /**
+     * An entity stored in the tree.
+     */
+    private record Entry(int id, AABB box) {
+    }
+
+    /**
+     * Converts from an entry to an MBR.
+     */
+    private static class EntryMBRConverter implements MBRConverter<Entry> {
+
+        @Override
+        public int getDimensions() {
+            return 3;
+        }
+
+        @Override
+        public double getMin(int i, Entry entry) {
+            var aabb = entry.box();
+            return i == 0 ? aabb.minX : i == 1 ? aabb.minY : aabb.minZ;
+        }
+
+        @Override
+        public double getMax(int i, Entry entry) {
+            var aabb = entry.box();
+            return i == 0 ? aabb.maxX : i == 1 ? aabb.maxY : aabb.maxZ;
+        }
+    }
+
+    private final EntryMBRConverter converter = new EntryMBRConverter();
+    private final Map<Integer, Entry> pendingEntities = new ConcurrentHashMap<>();
+    private final Set<Integer> removedEntities = ConcurrentHashMap.newKeySet();
+    private Map<Integer, Entry> staticEntities = new HashMap<>();
+    private PRTree<Entry> staticModel = new PRTree<>(converter, DEFAULT_BRANCHING_FACTOR);
+
+    /**
+     * Creates a new tree containing all entities in [snapshot].
+     */
+    public PRTreeIndex(SpatialSnapshot snapshot) {
+        var packed = snapshot.getPackedBounds();
+        for (var index = 0; index < snapshot.size(); index++) {
+            var offset = index * 6;
+            var id = snapshot.getId(index);
+            pendingEntities.put(id, new Entry(id, new AABB(packed[offset], packed[offset + 1], packed[offset + 2], packed[offset + 3], packed[offset + 4], packed[offset + 5])));
+        }
+        rebuild();
+    }
+
+    /**
+     * Returns the amount of entities waiting for the next rebuild.
+     */
+    public int getPendingSize() {
+        return pendingEntities.size();
+    }
+
+    /**
+     * Moves the entity with [id] to [box], it is stored as a pending entity
+     * until the next rebuild.
+     */
+    public void update(int id, AABB box) {
+        removedEntities.add(id);
+        pendingEntities.put(id, new Entry(id, box));
+    }
+
+    /**
+     * Rebuilds the tree with all pending entities.
+     */
+    public void rebuild() {
+        var addedEntities = new HashSet<>(pendingEntities.keySet());
+        var removingEntities = new HashSet<>(removedEntities);
+        removingEntities.removeAll(addedEntities);
+
+        var newStaticEntities = new HashMap<>(staticEntities);
+        for (var id : addedEntities) {
+            newStaticEntities.put(id, pendingEntities.get(id));
+        }
+        newStaticEntities.keySet().removeAll(removingEntities);
+
+        var newModel = new PRTree<>(converter, DEFAULT_BRANCHING_FACTOR);
+        newModel.load(newStaticEntities.values());
+
+        staticModel = newModel;
+        staticEntities = newStaticEntities;
+        pendingEntities.keySet().removeAll(addedEntities);
+        removedEntities.removeAll(addedEntities);
+        removedEntities.removeAll(removingEntities);
+    }
+
+    /**
+     * Returns the ids of all entities that clip [hitbox].
+     */
+    public HashSet<Integer> find(AABB hitbox) {
+        double[] values = {hitbox.minX, hitbox.maxX, hitbox.minY, hitbox.maxY, hitbox.minZ, hitbox.maxZ};
+        var mbr = new SimpleMBR(values);
+        var collisions = new HashSet<Integer>();
+
+        // Go through the model but ignoring removed entities
+        if (removedEntities.isEmpty()) {
+            for (var entry : staticModel.find(mbr)) {
+                collisions.add(entry.id());
+            }
+        } else {
+            for (var entry : staticModel.find(mbr)) {
+                if (removedEntities.contains(entry.id())) continue;
+                collisions.add(entry.id());
+            }
+        }
+
+        // Go through all pending entities that are not yet in the model
+        for (var entry : pendingEntities.values()) {
+            if (entry.box().intersects(hitbox)) {
+                collisions.add(entry.id());
+            }
+        }
+        return collisions;
+    }
+}
@@ -0,0 +1,139 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibCondition;
+import com.noxcrew.noxesium.api.qib.QibDefinition;
+import com.noxcrew.noxesium.api.qib.QibEffect;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that a qib tick in which no collisions change does not allocate anything.
+ * Allocations are measured through the amount of bytes allocated by the current thread.
+ */
+public class QibAllocationTest {
+
+    /**
+     * The amount of ticks run before measuring, enough for the cache to settle.
+     */
+    private static final int WARMUP_TICKS = 20_000;
+
+    /**
+     * The amount of ticks measured.
+     */
+    private static final int MEASURED_TICKS = 10_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    /**
+     * A context where every entity runs the same behavior while inside it.
+     */
+    private static class SteadyContext implements QibEngine.Context {
+        private final CompiledQibDefinition definition = CompiledQibDefinition.compile(
+            new QibDefinition(null, null, new QibEffect.AddVelocity(0.0, 0.1, 0.0), null, false)
+        );
+        private int triggers;
+
+        @Override
+        public int getBehavior(int entityId) {
+            return 0;
+        }
+
+        @Override
+        public @Nullable CompiledQibDefinition getDefinition(int behavior) {
+            return behavior == 0 ? definition : null;
+        }
+
+        @Override
+        public boolean test(QibCondition condition) {
+            return false;
+        }
+
+        @Override
+        public void apply(QibProgram.Instruction instruction) {
+        }
+
+        @Override
+        public void onTrigger(int behavior, ServerboundQibTriggeredPacket.Type type, int entityId) {
+            triggers++;
+        }
+    }
+
+    @BeforeAll
+    public static void setup() {
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(), "Allocations cannot be measured on this JVM");
+    }
+
+    /**
+     * Creates a tree with a grid of entities, the player stands inside the one at the origin.
+     */
+    private static DynamicAABBTree createTree() {
+        var tree = new DynamicAABBTree();
+        var id = 0;
+        for (var x = -16; x <= 16; x++) {
+            for (var z = -16; z <= 16; z++) {
+                tree.update(id++, x * 4.0 - 0.5, 0.0, z * 4.0 - 0.5, x * 4.0 + 0.5, 2.0, z * 4.0 + 0.5);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the amount of bytes allocated by the current thread while running [runnable].
+     */
+    private static long measure(Runnable runnable) {
+        var start = threads.getCurrentThreadAllocatedBytes();
+        runnable.run();
+        return threads.getCurrentThreadAllocatedBytes() - start;
+    }
+
+    @Test
+    public void steadyTickDoesNotAllocate() {
+        var engine = new QibEngine(new LayeredSpatialIndex(createTree()));
+        var context = new SteadyContext();
+        var box = new AABB(-0.3, 0.0, -0.3, 0.3, 1.8, 0.3);
+        Runnable warmup = () -> {
+            for (var tick = 0; tick < WARMUP_TICKS; tick++) {
+                engine.tick(box, Vec3.ZERO, context);
+            }
+        };
+        Runnable measured = () -> {
+            for (var tick = 0; tick < MEASURED_TICKS; tick++) {
+                engine.tick(box, Vec3.ZERO, context);
+            }
+        };
+
+        // Measuring itself can allocate the first time, so measure the warmup as well
+        measure(warmup);
+        var bytes = measure(measured);
+        assertEquals(WARMUP_TICKS + MEASURED_TICKS, context.triggers, "The player should be inside a single entity on every tick");
+        assertEquals(0L, bytes, "Steady qib ticks allocated " + bytes + " bytes");
+    }
+
+    @Test
+    public void treeFindDoesNotAllocate() {
+        var tree = createTree();
+        var output = new IntArrayList();
+        var box = new AABB(-6.0, 0.0, -6.0, 6.0, 1.8, 6.0);
+        Runnable query = () -> {
+            for (var tick = 0; tick < MEASURED_TICKS; tick++) {
+                tree.find(box, output);
+                output.clear();
+            }
+        };
+
+        measure(query);
+        var bytes = measure(query);
+        assertEquals(0L, bytes, "Finding entities in the tree allocated " + bytes + " bytes");
+    }
+}
@@ -0,0 +1,82 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays traces recorded with [QibReplay] against a [QibEngine] using each type
+ * of index. Each invocation replays a single tick of the trace, starting over with
+ * a cleared engine once the end of the trace is reached, so the results are the
+ * time spent per tick. Running with `-prof gc` also reports the bytes allocated
+ * per tick as `gc.alloc.rate.norm`.
+ * <p>
+ * Run through the `qibReplay` Gradle task which passes the traces at `-PqibTraces`,
+ * or the ones in the test resources, as the `trace` parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QibReplayBenchmark {
+
+    @Param({"src/test/resources/qib-traces/sample.bin"})
+    public String trace;
+
+    @Param({"TREE", "GRID"})
+    public String index;
+
+    private QibReplayHarness.Replay replay;
+    private QibEngine engine;
+    private QibReplayHarness.ReplayContext context;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        // Compiling effects resolves registry entries so the registries have to be loaded
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        replay = QibReplayHarness.prepare(QibReplay.read(Path.of(trace)), QibSpatialIndexType.valueOf(index));
+        if (replay.trace().size() == 0) {
+            throw new IllegalArgumentException("Trace " + trace + " has no ticks");
+        }
+        engine = replay.newEngine();
+        context = replay.newContext();
+    }
+
+    /**
+     * Replays the next tick of the trace.
+     */
+    @Benchmark
+    public int tick() {
+        replay.tick(engine, context, next);
+        if (++next == replay.trace().size()) {
+            // Make sure we are measuring a replay that still does what was recorded
+            if (context.getChecksum() != replay.trace().checksum()) {
+                throw new IllegalStateException("Replaying " + trace + " with " + index + " differs from the recording");
+            }
+            next = 0;
+            engine.clear();
+            context.reset();
+        }
+        return engine.drainExecutedEffects();
+    }
+}
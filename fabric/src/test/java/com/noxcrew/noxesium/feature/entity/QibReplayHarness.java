@@ -0,0 +1,236 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibCondition;
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepares traces written by [QibReplay] to be replayed against a [QibEngine]
+ * without a running client. Replaying a trace keeps a checksum of all triggered
+ * behaviors and can record each trigger, so changes to the qib system can be
+ * checked for changes in behavior by [QibReplayTest].
+ * <p>
+ * The time and memory spent per tick are measured by [QibReplayBenchmark], run it
+ * through the `qibReplay` Gradle task which defaults to the traces in the test
+ * resources. The raw performance of each type of index on the layout of a trace
+ * is measured by [SpatialIndexComparisonBenchmark].
+ */
+public class QibReplayHarness {
+
+    /**
+     * Returns all trace files at [paths], folders are searched for files ending in `.bin`.
+     */
+    public static List<Path> list(String... paths) throws IOException {
+        var result = new ArrayList<Path>();
+        for (var argument : paths) {
+            var path = Path.of(argument);
+            if (Files.isDirectory(path)) {
+                try (var files = Files.list(path)) {
+                    result.addAll(files.filter((file) -> file.getFileName().toString().endsWith(".bin")).sorted().toList());
+                }
+            } else {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the behaviors of [trace] and builds an index of the given [type]
+     * from its layout so it can be replayed.
+     */
+    public static Replay prepare(QibReplay.Trace trace, QibSpatialIndexType type) {
+        // Assign ids to all behaviors and compile them once
+        var ids = new Object2IntOpenHashMap<String>();
+        ids.defaultReturnValue(-1);
+        var names = new ArrayList<String>();
+        for (var name : trace.definitions().keySet()) {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+        var definitions = new CompiledQibDefinition[names.size()];
+        for (var index = 0; index < definitions.length; index++) {
+            definitions[index] = CompiledQibDefinition.compile(trace.definitions().get(names.get(index)));
+        }
+
+        var layout = trace.layout();
+        var entityBehaviors = new Int2IntOpenHashMap(layout.size());
+        entityBehaviors.defaultReturnValue(-1);
+        for (var index = 0; index < layout.size(); index++) {
+            var behavior = trace.behaviors()[index];
+            if (behavior != null) {
+                entityBehaviors.put(layout.getId(index), ids.getInt(behavior));
+            }
+        }
+        return new Replay(trace, new LayeredSpatialIndex(SpatialIndex.build(type, layout)), names, definitions, entityBehaviors);
+    }
+
+    /**
+     * A trace that is ready to be replayed against [index].
+     */
+    public record Replay(
+        QibReplay.Trace trace,
+        LayeredSpatialIndex index,
+        List<String> names,
+        CompiledQibDefinition[] definitions,
+        Int2IntOpenHashMap entityBehaviors
+    ) {
+
+        /**
+         * Creates a new engine that uses the index of this replay.
+         */
+        public QibEngine newEngine() {
+            return new QibEngine(index);
+        }
+
+        /**
+         * Creates a new context that has not seen any triggers yet.
+         */
+        public ReplayContext newContext() {
+            return new ReplayContext(names, definitions, entityBehaviors);
+        }
+
+        /**
+         * Replays every tick of the trace on [engine].
+         */
+        public void run(QibEngine engine, ReplayContext context) {
+            for (var tick = 0; tick < trace.size(); tick++) {
+                tick(engine, context, tick);
+            }
+            context.effects = engine.drainExecutedEffects();
+        }
+
+        /**
+         * Replays a single [tick] of the trace on [engine].
+         */
+        public void tick(QibEngine engine, ReplayContext context, int tick) {
+            context.tick = tick;
+            context.flags = trace.flags()[tick];
+            if ((context.flags & QibReplay.JUMPED) != 0) {
+                engine.jump(context);
+            }
+            engine.tick(trace.boxes()[tick], trace.velocities()[tick], context);
+        }
+    }
+
+    /**
+     * A behavior that was triggered on [tick] of a replayed trace.
+     */
+    public record Trigger(int tick, ServerboundQibTriggeredPacket.Type type, String behavior, int entityId) {
+    }
+
+    /**
+     * Provides the engine with the state of the player as it was recorded.
+     */
+    public static class ReplayContext implements QibEngine.Context {
+        private final List<String> names;
+        private final CompiledQibDefinition[] definitions;
+        private final Int2IntOpenHashMap entityBehaviors;
+        @Nullable
+        private List<Trigger> recorded;
+        private int tick;
+        private byte flags;
+        private int triggers;
+        private int effects;
+        private long checksum;
+
+        private ReplayContext(List<String> names, CompiledQibDefinition[] definitions, Int2IntOpenHashMap entityBehaviors) {
+            this.names = names;
+            this.definitions = definitions;
+            this.entityBehaviors = entityBehaviors;
+        }
+
+        /**
+         * Starts recording every behavior triggered from now on, see [getRecordedTriggers].
+         */
+        public ReplayContext recordTriggers() {
+            recorded = new ArrayList<>();
+            return this;
+        }
+
+        /**
+         * Returns all behaviors triggered since [recordTriggers] was called.
+         */
+        public List<Trigger> getRecordedTriggers() {
+            return recorded == null ? List.of() : recorded;
+        }
+
+        /**
+         * Forgets about all behaviors triggered so far so the trace can be replayed again.
+         */
+        public void reset() {
+            tick = 0;
+            flags = 0;
+            triggers = 0;
+            effects = 0;
+            checksum = 0L;
+            if (recorded != null) recorded.clear();
+        }
+
+        /**
+         * Returns the amount of behaviors triggered so far.
+         */
+        public int getTriggers() {
+            return triggers;
+        }
+
+        /**
+         * Returns the amount of effects executed by the last full replay.
+         */
+        public int getEffects() {
+            return effects;
+        }
+
+        /**
+         * Returns the checksum of all behaviors triggered so far.
+         */
+        public long getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public int getBehavior(int entityId) {
+            return entityBehaviors.get(entityId);
+        }
+
+        @Override
+        public @Nullable CompiledQibDefinition getDefinition(int behavior) {
+            return behavior >= 0 && behavior < definitions.length ? definitions[behavior] : null;
+        }
+
+        @Override
+        public boolean test(QibCondition condition) {
+            return switch (condition) {
+                case IS_GLIDING -> (flags & QibReplay.GLIDING) != 0;
+                case IS_RIPTIDING -> (flags & QibReplay.RIPTIDING) != 0;
+                case IS_IN_AIR -> (flags & QibReplay.ON_GROUND) == 0;
+                case IS_ON_GROUND -> (flags & QibReplay.ON_GROUND) != 0;
+                case IS_IN_WATER -> (flags & QibReplay.IN_WATER) != 0;
+                case IS_IN_WATER_OR_RAIN -> (flags & QibReplay.IN_WATER_OR_RAIN) != 0;
+            };
+        }
+
+        @Override
+        public void apply(QibProgram.Instruction instruction) {
+            // The movement of the player is taken from the trace so effects are not applied
+        }
+
+        @Override
+        public void onTrigger(int behavior, ServerboundQibTriggeredPacket.Type type, int entityId) {
+            triggers++;
+            checksum = QibReplay.updateChecksum(checksum, names.get(behavior), type, entityId);
+            if (recorded != null) {
+                recorded.add(new Trigger(tick, type, names.get(behavior), entityId));
+            }
+        }
+    }
+}
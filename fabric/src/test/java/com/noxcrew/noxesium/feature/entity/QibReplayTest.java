@@ -0,0 +1,122 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import com.noxcrew.noxesium.feature.entity.QibReplayHarness.Trigger;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket.Type.ENTER;
+import static com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket.Type.INSIDE;
+import static com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket.Type.JUMP;
+import static com.noxcrew.noxesium.network.serverbound.ServerboundQibTriggeredPacket.Type.LEAVE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays the traces committed to the test resources and checks that every type
+ * of index triggers exactly the behaviors that were triggered while recording.
+ * The sample trace is also checked against the exact ticks on which it triggers.
+ */
+public class QibReplayTest {
+
+    private static final Path TRACES = Path.of("src/test/resources/qib-traces");
+
+    /**
+     * A trace of a player walking along a row of entities, one block wide with four
+     * blocks between them, at 0.2 blocks per tick while jumping every third tick.
+     * The row cycles through the `boost`, `ring` and `pad` behaviors and an entity
+     * without behavior, next to the row are entities which are never touched.
+     */
+    private static final Path SAMPLE = TRACES.resolve("sample.bin");
+
+    @BeforeAll
+    public static void setup() {
+        // Compiling effects resolves registry entries so the registries have to be loaded
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        assertTrue(Files.isDirectory(TRACES), "Missing qib traces in " + TRACES.toAbsolutePath());
+    }
+
+    @Test
+    public void replayMatchesRecording() throws Exception {
+        var paths = QibReplayHarness.list(TRACES.toString());
+        assertFalse(paths.isEmpty(), "No qib traces found in " + TRACES.toAbsolutePath());
+
+        for (var path : paths) {
+            var trace = QibReplay.read(path);
+            for (var type : QibSpatialIndexType.values()) {
+                var replay = QibReplayHarness.prepare(trace, type);
+                var context = replay.newContext();
+                replay.run(replay.newEngine(), context);
+                assertTrue(context.getTriggers() > 0, path.getFileName() + " did not trigger anything with " + type);
+                assertEquals(trace.checksum(), context.getChecksum(), path.getFileName() + " differs from the recording with " + type);
+            }
+        }
+    }
+
+    @Test
+    public void sampleTriggersExpectedSequence() throws Exception {
+        var trace = QibReplay.read(SAMPLE);
+        for (var type : QibSpatialIndexType.values()) {
+            var replay = QibReplayHarness.prepare(trace, type);
+            var context = replay.newContext().recordTriggers();
+            replay.run(replay.newEngine(), context);
+            var triggers = context.getRecordedTriggers();
+
+            // The first cycle of the row enters, leaves and jumps on exactly these ticks
+            var events = triggers.stream().filter((trigger) -> trigger.type() != INSIDE).toList();
+            assertEquals(List.of(
+                new Trigger(14, ENTER, "boost", 100),
+                new Trigger(39, ENTER, "ring", 101),
+                new Trigger(48, LEAVE, "ring", 101),
+                new Trigger(64, ENTER, "pad", 102),
+                new Trigger(66, JUMP, "pad", 102),
+                new Trigger(114, ENTER, "boost", 104),
+                new Trigger(139, ENTER, "ring", 105),
+                new Trigger(148, LEAVE, "ring", 105),
+                new Trigger(164, ENTER, "pad", 106),
+                new Trigger(165, JUMP, "pad", 106)
+            ), events.subList(0, 10), "Unexpected triggers with " + type);
+            assertEquals(new Trigger(966, JUMP, "pad", 138), events.getLast(), "Unexpected last trigger with " + type);
+
+            // The boost triggers every tick the player is inside of it, starting on the tick it entered
+            var inside = triggers.stream().filter((trigger) -> trigger.type() == INSIDE && trigger.entityId() == 100).mapToInt(Trigger::tick).toArray();
+            assertArrayEquals(new int[]{14, 15, 16, 17, 18, 19, 20, 21, 22}, inside, "Unexpected inside triggers with " + type);
+
+            // Entities without a behavior and entities next to the row never trigger
+            assertTrue(triggers.stream().noneMatch((trigger) -> trigger.entityId() == 103 || trigger.entityId() >= 1000), "Untouched entity triggered with " + type);
+            assertEquals(140, triggers.size(), "Unexpected amount of triggers with " + type);
+
+            // Every behavior in the sample applies a single velocity
+            assertEquals(triggers.size(), context.getEffects(), "Unexpected amount of effects with " + type);
+            assertEquals(trace.checksum(), context.getChecksum());
+        }
+    }
+
+    @Test
+    public void traceSurvivesRoundTrip() throws Exception {
+        for (var path : QibReplayHarness.list(TRACES.toString())) {
+            var trace = QibReplay.read(path);
+            var copy = Files.createTempFile("qib-trace", ".bin");
+            try {
+                QibReplay.write(trace, copy);
+                var read = QibReplay.read(copy);
+                assertEquals(trace.checksum(), read.checksum());
+                assertEquals(trace.size(), read.size());
+                assertEquals(trace.layout().size(), read.layout().size());
+                assertEquals(trace.definitions(), read.definitions());
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+        }
+    }
+}
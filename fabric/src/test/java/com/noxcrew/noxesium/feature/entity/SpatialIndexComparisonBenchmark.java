@@ -0,0 +1,195 @@
+package com.noxcrew.noxesium.feature.entity;
+
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.world.phys.AABB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the spatial indices used for qibs against the [PRTreeIndex] they replaced.
+ * Each invocation either finds the entities around a player-sized box, sweeps such a
+ * box along a short movement or moves a single entity, which is what happens on every
+ * tick and whenever an interaction entity moves respectively.
+ * <p>
+ * Each layout is either an amount of entities spread out over a generated map or the
+ * path of a trace recorded with [QibReplay], in which case the recorded layout of
+ * interaction entities is used. Traces can be passed with `-p layout=<path>`.
+ * <p>
+ * The [PRTreeIndex] keeps moved entities pending until it is rebuilt, so it is rebuilt
+ * after as many moves as would happen in the 2.5 seconds between rebuilds. Queries
+ * start out with half that many entities pending, the average amount between rebuilds.
+ * It cannot sweep so it finds everything in the box covering the whole movement instead.
+ * <p>
+ * Run through the `jmh` Gradle task.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexComparisonBenchmark {
+
+    /**
+     * The amount of pre-generated queries and movements that are cycled through.
+     */
+    private static final int QUERIES = 4096;
+
+    /**
+     * The amount of entities moved between two rebuilds of the [PRTreeIndex], based
+     * on 20 moving entities per tick over the 50 ticks between rebuilds.
+     */
+    private static final int MOVES_PER_REBUILD = 20 * 50;
+
+    @Param({"1000", "10000", "50000", "src/test/resources/qib-traces/sample.bin"})
+    public String layout;
+
+    @Param({"PRTREE", "TREE", "GRID"})
+    public String index;
+
+    private AABB[] queries;
+    private double[] sweeps;
+    private AABB[] movements;
+    private int[] moved;
+    private int next = 0;
+    private int moves = 0;
+
+    private PRTreeIndex prTree;
+    private SpatialIndex spatialIndex;
+    private final IntArrayList output = new IntArrayList();
+
+    @Setup
+    public void setup() throws IOException {
+        var random = new Random(layout.hashCode());
+        var snapshot = layout.chars().allMatch(Character::isDigit) ? generate(Integer.parseInt(layout), random) : QibReplay.read(Path.of(layout)).layout();
+        var entities = snapshot.size();
+        if (entities == 0) {
+            throw new IllegalArgumentException("Layout " + layout + " has no entities");
+        }
+        var packed = snapshot.getPackedBounds();
+
+        // Place player-sized boxes near random entities and pick entities to move slightly
+        queries = new AABB[QUERIES];
+        sweeps = new double[QUERIES * 3];
+        movements = new AABB[QUERIES];
+        moved = new int[QUERIES];
+        for (var query = 0; query < QUERIES; query++) {
+            var offset = random.nextInt(entities) * 6;
+            var x = (packed[offset] + packed[offset + 3]) / 2.0 + random.nextGaussian() * 2.0;
+            var y = packed[offset + 1] + random.nextGaussian();
+            var z = (packed[offset + 2] + packed[offset + 5]) / 2.0 + random.nextGaussian() * 2.0;
+            queries[query] = new AABB(x - 0.3, y, z - 0.3, x + 0.3, y + 1.8, z + 0.3);
+            sweeps[query * 3] = random.nextGaussian() * 0.5;
+            sweeps[query * 3 + 1] = random.nextGaussian() * 0.5;
+            sweeps[query * 3 + 2] = random.nextGaussian() * 0.5;
+
+            var entity = random.nextInt(entities);
+            var shift = random.nextGaussian() * 0.25;
+            offset = entity * 6;
+            moved[query] = snapshot.getId(entity);
+            movements[query] = new AABB(packed[offset] + shift, packed[offset + 1], packed[offset + 2] + shift, packed[offset + 3] + shift, packed[offset + 4], packed[offset + 5] + shift);
+        }
+
+        if (index.equals("PRTREE")) {
+            prTree = new PRTreeIndex(snapshot);
+        } else {
+            spatialIndex = SpatialIndex.build(QibSpatialIndexType.valueOf(index), snapshot);
+        }
+
+        // Move entities until the amount pending is what it is halfway between rebuilds
+        for (var move = 0; move < MOVES_PER_REBUILD / 2; move++) {
+            move();
+        }
+        next = 0;
+    }
+
+    /**
+     * Spreads [entities] entities out over an area that grows with the amount of
+     * entities, keeping the density similar to that of a busy map.
+     */
+    private static SpatialSnapshot generate(int entities, Random random) {
+        var size = Math.sqrt(entities) * 8.0;
+        var ids = new int[entities];
+        var packed = new double[entities * 6];
+        for (var entity = 0; entity < entities; entity++) {
+            var x = random.nextDouble() * size;
+            var y = random.nextInt(32);
+            var z = random.nextDouble() * size;
+            var width = 0.5 + random.nextDouble() * 2.5;
+            var height = 0.5 + random.nextDouble() * 2.5;
+            ids[entity] = entity;
+            packed[entity * 6] = x;
+            packed[entity * 6 + 1] = y;
+            packed[entity * 6 + 2] = z;
+            packed[entity * 6 + 3] = x + width;
+            packed[entity * 6 + 4] = y + height;
+            packed[entity * 6 + 5] = z + width;
+        }
+        return new SpatialSnapshot(0L, ids, packed);
+    }
+
+    /**
+     * Finds the entities around a player.
+     */
+    @Benchmark
+    public int find() {
+        var query = queries[next++ & (QUERIES - 1)];
+        if (prTree != null) {
+            return prTree.find(query).size();
+        }
+        spatialIndex.find(query, output);
+        var result = output.size();
+        output.clear();
+        return result;
+    }
+
+    /**
+     * Finds the entities a player moved through.
+     */
+    @Benchmark
+    public int sweep() {
+        var query = next++ & (QUERIES - 1);
+        var dx = sweeps[query * 3];
+        var dy = sweeps[query * 3 + 1];
+        var dz = sweeps[query * 3 + 2];
+        if (prTree != null) {
+            return prTree.find(queries[query].expandTowards(-dx, -dy, -dz)).size();
+        }
+        spatialIndex.sweep(queries[query], dx, dy, dz, output);
+        var result = output.size();
+        output.clear();
+        return result;
+    }
+
+    /**
+     * Moves a single entity.
+     */
+    @Benchmark
+    public void move() {
+        var query = next++ & (QUERIES - 1);
+        if (prTree != null) {
+            prTree.update(moved[query], movements[query]);
+            if (++moves == MOVES_PER_REBUILD) {
+                moves = 0;
+                prTree.rebuild();
+            }
+        } else {
+            spatialIndex.update(moved[query], movements[query]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how the [ElementAtlasPacker] places regions on shelves and
+ * invalidates them between generations.
+ */
+public class ElementAtlasPackerTest {
+
+    /**
+     * Creates a packer for an atlas of [width] by [height] pixels.
+     */
+    private static ElementAtlasPacker create(int width, int height) {
+        var packer = new ElementAtlasPacker();
+        packer.resize(width, height);
+        return packer;
+    }
+
+    /**
+     * Returns whether [first] and [second] share any pixels.
+     */
+    private static boolean overlaps(ElementAtlas.Region first, ElementAtlas.Region second) {
+        return first.x() < second.x() + second.width() && second.x() < first.x() + first.width() &&
+            first.y() < second.y() + second.height() && second.y() < first.y() + first.height();
+    }
+
+    @Test
+    public void roundsUpToGranularity() {
+        assertEquals(16, ElementAtlasPacker.roundUp(0));
+        assertEquals(16, ElementAtlasPacker.roundUp(1));
+        assertEquals(16, ElementAtlasPacker.roundUp(16));
+        assertEquals(32, ElementAtlasPacker.roundUp(17));
+    }
+
+    @Test
+    public void packsRegionsOntoShelves() {
+        var packer = create(64, 64);
+
+        // Regions of the same height share a shelf until it is full
+        var first = packer.allocate(32, 16);
+        var second = packer.allocate(32, 16);
+        assertEquals(new ElementAtlas.Region(0, 0, 32, 16, packer.getGeneration()), first);
+        assertEquals(new ElementAtlas.Region(32, 0, 32, 16, packer.getGeneration()), second);
+
+        // A full shelf starts a new one above it
+        var third = packer.allocate(16, 32);
+        assertEquals(new ElementAtlas.Region(0, 16, 16, 32, packer.getGeneration()), third);
+
+        // A region fits onto an existing shelf that is tall enough
+        var fourth = packer.allocate(16, 16);
+        assertEquals(new ElementAtlas.Region(16, 16, 16, 16, packer.getGeneration()), fourth);
+    }
+
+    @Test
+    public void prefersShelfWithLeastWastedHeight() {
+        var packer = create(64, 128);
+        packer.allocate(48, 64);
+        packer.allocate(32, 32);
+
+        // Both shelves fit the region but the upper one wastes less height
+        var region = packer.allocate(16, 32);
+        assertNotNull(region);
+        assertEquals(64, region.y());
+        assertEquals(32, region.x());
+    }
+
+    @Test
+    public void returnsNullWhenFull() {
+        var packer = create(32, 32);
+        assertNotNull(packer.allocate(32, 16));
+        assertNotNull(packer.allocate(32, 16));
+        assertNull(packer.allocate(16, 16));
+        assertNull(create(32, 32).allocate(16, 48));
+        assertNull(create(32, 32).allocate(48, 16));
+    }
+
+    @Test
+    public void regionsNeverOverlap() {
+        var packer = create(256, 256);
+        var regions = new ArrayList<ElementAtlas.Region>();
+        for (var index = 0; index < 64; index++) {
+            var region = packer.allocate(16 * (1 + index % 5), 16 * (1 + index % 3));
+            if (region == null) break;
+            assertTrue(region.x() + region.width() <= 256 && region.y() + region.height() <= 256);
+            for (var other : regions) {
+                assertFalse(overlaps(region, other), region + " overlaps " + other);
+            }
+            regions.add(region);
+        }
+        assertFalse(regions.isEmpty());
+    }
+
+    @Test
+    public void clearingStartsNewGeneration() {
+        var packer = create(64, 64);
+        var region = packer.allocate(64, 64);
+        assertNotNull(region);
+        assertNull(packer.allocate(16, 16));
+
+        // Freeing space only takes effect once the packer is cleared
+        packer.free(region);
+        assertTrue(packer.hasFreed());
+        assertNull(packer.allocate(16, 16));
+
+        var generation = packer.getGeneration();
+        packer.clear();
+        assertNotEquals(generation, packer.getGeneration());
+        assertFalse(packer.hasFreed());
+        assertEquals(new ElementAtlas.Region(0, 0, 16, 16, packer.getGeneration()), packer.allocate(16, 16));
+
+        // Regions of an old generation are not counted as freed
+        packer.free(region);
+        assertFalse(packer.hasFreed());
+    }
+
+    @Test
+    public void resizingStartsNewGeneration() {
+        var packer = create(64, 64);
+        var region = packer.allocate(64, 64);
+        assertNotNull(region);
+
+        packer.resize(64, 128);
+        assertNotEquals(region.generation(), packer.getGeneration());
+        assertEquals(128, packer.getHeight());
+        assertEquals(new ElementAtlas.Region(0, 0, 64, 128, packer.getGeneration()), packer.allocate(64, 128));
+    }
+}
@@ -0,0 +1,115 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks when the [ElementScheduler] updates elements, using frames that are
+ * far enough apart to never be held back by the 20 updates per second cap.
+ */
+public class ElementSchedulerTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    /**
+     * The time between frames, just above the minimum time between updates.
+     */
+    private static final long FRAME = 60 * MILLIS;
+
+    /**
+     * Runs frames starting after [start] until the scheduler wants to update and
+     * returns the amount of frames skipped before that.
+     */
+    private static int countSkipped(ElementScheduler scheduler, long start) {
+        var skipped = 0;
+        var now = start + FRAME;
+        while (!scheduler.shouldUpdate(now)) {
+            skipped++;
+            now += FRAME;
+        }
+        return skipped;
+    }
+
+    @Test
+    public void updatesFirstFrame() {
+        assertTrue(new ElementScheduler().shouldUpdate(0L));
+    }
+
+    @Test
+    public void capsUpdatesAtTwentyPerSecond() {
+        var scheduler = new ElementScheduler();
+        scheduler.onUpdate(0L, true);
+        assertFalse(scheduler.shouldUpdate(16 * MILLIS));
+        assertFalse(scheduler.shouldUpdate(49 * MILLIS));
+        assertTrue(scheduler.shouldUpdate(50 * MILLIS));
+    }
+
+    @Test
+    public void changedElementsUpdateEveryFrame() {
+        var scheduler = new ElementScheduler();
+        var now = 0L;
+        for (var frame = 0; frame < 10; frame++) {
+            assertTrue(scheduler.shouldUpdate(now));
+            scheduler.onUpdate(now, true);
+            now += FRAME;
+        }
+    }
+
+    @Test
+    public void unchangedElementsBackOffExponentially() {
+        var scheduler = new ElementScheduler();
+        var now = 0L;
+        scheduler.onUpdate(now, true);
+
+        // With frames 60ms apart the once per second minimum is only reached when skipping 16
+        for (var expected : new int[]{1, 2, 4, 8}) {
+            scheduler.onUpdate(now, false);
+            var skipped = countSkipped(scheduler, now);
+            assertEquals(expected, skipped);
+            now += (skipped + 1) * FRAME;
+        }
+    }
+
+    @Test
+    public void updatesAtLeastOncePerSecond() {
+        var scheduler = new ElementScheduler();
+        var now = 0L;
+
+        // Build up a long streak of identical frames so the back-off is far beyond a second
+        for (var update = 0; update < 20; update++) {
+            scheduler.onUpdate(now, false);
+        }
+        assertFalse(scheduler.shouldUpdate(now + 999 * MILLIS));
+        assertTrue(scheduler.shouldUpdate(now + 1000 * MILLIS));
+    }
+
+    @Test
+    public void changeResetsBackOff() {
+        var scheduler = new ElementScheduler();
+        for (var update = 0; update < 5; update++) {
+            scheduler.onUpdate(0L, false);
+        }
+        scheduler.onUpdate(0L, true);
+        assertTrue(scheduler.shouldUpdate(FRAME));
+    }
+
+    @Test
+    public void countsSkippedFramesPerSecond() {
+        var scheduler = new ElementScheduler();
+        scheduler.shouldUpdate(0L);
+        scheduler.onUpdate(0L, true);
+
+        // Every frame within the first 50ms is skipped
+        for (var frame = 1; frame <= 5; frame++) {
+            assertFalse(scheduler.shouldUpdate(frame * MILLIS));
+        }
+        assertEquals(0, scheduler.getSkippedPerSecond());
+
+        // The count is published once the next window starts
+        scheduler.shouldUpdate(1000 * MILLIS);
+        assertEquals(5, scheduler.getSkippedPerSecond());
+    }
+}
@@ -0,0 +1,130 @@
+package com.noxcrew.noxesium.feature.ui.wrapper;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which changes [ElementVariables] reports. Variables in these tests read
+ * from fields instead of the game, so they are evaluated without a client.
+ */
+public class ElementVariablesTest {
+
+    private int intValue = 0;
+    private long longValue = 0L;
+    private double doubleValue = 0.0;
+    private boolean booleanValue = false;
+    private String objectValue = "a";
+
+    /**
+     * Evaluates [variables] without a client.
+     */
+    private static int evaluate(ElementVariables variables) {
+        return variables.evaluate(null, null);
+    }
+
+    /**
+     * Creates variables that read every field of this test.
+     */
+    private ElementVariables createVariables() {
+        var variables = new ElementVariables();
+        variables.addInt("int", (minecraft, deltaTracker) -> intValue);
+        variables.addLong("long", (minecraft, deltaTracker) -> longValue);
+        variables.addDouble("double", (minecraft, deltaTracker) -> doubleValue);
+        variables.addBoolean("boolean", (minecraft, deltaTracker) -> booleanValue);
+        variables.addObject("object", (minecraft, deltaTracker) -> objectValue);
+        return variables;
+    }
+
+    @Test
+    public void firstEvaluationChangesEverything() {
+        var variables = createVariables();
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        for (var index = 0; index < variables.size(); index++) {
+            assertEquals(1, variables.getChanges(index));
+        }
+    }
+
+    @Test
+    public void unchangedValuesReportNothing() {
+        var variables = createVariables();
+        evaluate(variables);
+        assertEquals(0, evaluate(variables));
+        assertEquals(0, evaluate(variables));
+    }
+
+    @Test
+    public void reportsEachTypeOfChange() {
+        var variables = createVariables();
+        evaluate(variables);
+
+        intValue = 5;
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertEquals("int", variables.getName(variables.getLastChanged()));
+        assertEquals(5, variables.getInt(0));
+
+        longValue = Long.MAX_VALUE;
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertEquals(Long.MAX_VALUE, variables.getLong(1));
+
+        doubleValue = 0.5;
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertEquals(0.5, variables.getDouble(2));
+
+        booleanValue = true;
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertTrue(variables.getBoolean(3));
+
+        // Objects are compared by equality rather than identity
+        objectValue = new String("a");
+        assertEquals(0, evaluate(variables));
+        objectValue = "b";
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertEquals("b", variables.<String>getObject(4));
+
+        assertEquals(2, variables.getChanges(0));
+        assertEquals(2, variables.getChanges(4));
+    }
+
+    @Test
+    public void nanDoesNotChangeEveryFrame() {
+        var variables = createVariables();
+        doubleValue = Double.NaN;
+        evaluate(variables);
+        assertEquals(0, evaluate(variables));
+    }
+
+    @Test
+    public void animatedChangesAreFlagged() {
+        var variables = createVariables();
+        variables.setAnimated(2);
+        assertEquals(ElementVariables.CHANGED | ElementVariables.ANIMATED, evaluate(variables));
+
+        // Only changes to the animated variable are flagged as animated
+        intValue = 1;
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        doubleValue = 0.25;
+        assertEquals(ElementVariables.CHANGED | ElementVariables.ANIMATED, evaluate(variables));
+        intValue = 2;
+        doubleValue = 0.5;
+        assertEquals(ElementVariables.CHANGED | ElementVariables.ANIMATED, evaluate(variables));
+    }
+
+    @Test
+    public void addingVariableChangesEverything() {
+        var variables = createVariables();
+        evaluate(variables);
+        variables.addInt("extra", (minecraft, deltaTracker) -> 0);
+        assertEquals(ElementVariables.CHANGED, evaluate(variables));
+        assertEquals(0, evaluate(variables));
+    }
+
+    @Test
+    public void rejectsInvalidVariables() {
+        var variables = createVariables();
+        assertThrows(IllegalStateException.class, () -> variables.addInt("int", (minecraft, deltaTracker) -> 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> variables.setAnimated(variables.size()));
+    }
+}
@@ -9,6 +9,7 @@ import com.noxcrew.noxesium.paper.api.network.NoxesiumPacket
 import com.noxcrew.noxesium.paper.api.network.NoxesiumPackets
 import com.noxcrew.noxesium.paper.api.network.clientbound.ClientboundChangeServerRulesPacket
 import com.noxcrew.noxesium.paper.api.network.clientbound.ClientboundServerInformationPacket
+import com.noxcrew.noxesium.paper.api.network.serverbound.handle
 import com.noxcrew.noxesium.paper.api.rule.RemoteServerRule
 import com.noxcrew.noxesium.paper.v0.NoxesiumListenerV0
 import com.noxcrew.noxesium.paper.v1.NoxesiumListenerV1
@@ -85,6 +86,11 @@ public open class NoxesiumManager(
             saveSettings(player, packet.settings)
         }
 
+        // Pass batched qib triggers on to the listeners of individual triggers
+        NoxesiumPackets.SERVER_QIB_TRIGGERED_BATCH.addListener(this) { packet, player ->
+            packet.forEachTrigger { it.handle(player) }
+        }
+
         // Register the event handler
         Bukkit.getPluginManager().registerEvents(this, plugin)
     }
@@ -0,0 +1,32 @@
+package com.noxcrew.noxesium.paper.api.event
+
+import com.noxcrew.noxesium.api.qib.QibEffect
+import com.noxcrew.noxesium.paper.api.network.serverbound.ServerboundQibTriggeredPacket
+import org.bukkit.entity.Interaction
+import org.bukkit.entity.Player
+import org.bukkit.event.HandlerList
+import org.bukkit.event.player.PlayerEvent
+
+/** Emitted by [QibEngine] when it determines that a player triggered a qib interaction. */
+public class QibTriggeredEvent(
+    player: Player,
+    /** The interaction entity that was triggered. */
+    public val entity: Interaction,
+    /** The name of the qib behavior of [entity]. */
+    public val behavior: String,
+    /** The type of interaction that was triggered. */
+    public val qibType: ServerboundQibTriggeredPacket.Type,
+    /** The effect the client runs for this interaction. */
+    public val effect: QibEffect,
+) : PlayerEvent(player) {
+
+    public companion object {
+        @JvmStatic
+        public val HANDLER_LIST: HandlerList = HandlerList()
+
+        @JvmStatic
+        public fun getHandlerList(): HandlerList = HANDLER_LIST
+    }
+
+    override fun getHandlers(): HandlerList = HANDLER_LIST
+}
@@ -0,0 +1,64 @@
+package com.noxcrew.noxesium.paper.api.network.serverbound
+
+import com.noxcrew.noxesium.paper.api.network.NoxesiumPackets
+import net.minecraft.network.FriendlyByteBuf
+import net.minecraft.network.RegistryFriendlyByteBuf
+import org.bukkit.entity.Player
+
+/**
+ * Sent to the server to inform it about all qib interactions the client triggered
+ * in a single tick. Each behavior name is only sent once, entries refer to them by
+ * their index in [behaviors]. Identical triggers are merged into a single entry.
+ *
+ * Each entry is also emitted as a [ServerboundQibTriggeredPacket] so existing
+ * listeners keep receiving individual triggers, see [forEachTrigger].
+ */
+public data class ServerboundQibTriggeredBatchPacket(
+    public val behaviors: List<String>,
+    public val entries: List<Entry>,
+) : ServerboundNoxesiumPacket(NoxesiumPackets.SERVER_QIB_TRIGGERED_BATCH) {
+
+    /**
+     * A qib interaction with the behavior at index [behavior] in [behaviors] that
+     * was triggered [count] times.
+     */
+    public data class Entry(
+        public val behavior: Int,
+        public val qibType: ServerboundQibTriggeredPacket.Type,
+        public val entityId: Int,
+        public val count: Int,
+    )
+
+    public constructor(buffer: RegistryFriendlyByteBuf, player: Player, protocolVersion: Int) : this(
+        buffer.readList(FriendlyByteBuf::readUtf),
+        buffer.readList { buf ->
+            Entry(
+                buf.readVarInt(),
+                buf.readEnum(ServerboundQibTriggeredPacket.Type::class.java),
+                buf.readVarInt(),
+                buf.readVarInt(),
+            )
+        },
+    )
+
+    public companion object {
+        /**
+         * The maximum amount of times a single entry is passed on, the client sends
+         * a batch every tick so anything above this can only come from a bad client.
+         */
+        public const val MAX_COUNT: Int = 20
+    }
+
+    /**
+     * Calls [handler] for every trigger in this batch, once for each time it was triggered.
+     * Entries referring to unknown behaviors or with a non-positive count are skipped and
+     * counts are capped to [MAX_COUNT].
+     */
+    public inline fun forEachTrigger(handler: (ServerboundQibTriggeredPacket) -> Unit) {
+        for (entry in entries) {
+            if (entry.behavior !in behaviors.indices || entry.count <= 0) continue
+            val packet = ServerboundQibTriggeredPacket(behaviors[entry.behavior], entry.qibType, entry.entityId)
+            repeat(minOf(entry.count, MAX_COUNT)) { handler(packet) }
+        }
+    }
+}
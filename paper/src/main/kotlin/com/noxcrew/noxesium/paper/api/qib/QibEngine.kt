@@ -0,0 +1,278 @@
+package com.noxcrew.noxesium.paper.api.qib
+
+import com.destroystokyo.paper.event.player.PlayerJumpEvent
+import com.noxcrew.noxesium.api.qib.QibDefinition
+import com.noxcrew.noxesium.api.qib.QibEffect
+import com.noxcrew.noxesium.paper.api.NoxesiumManager
+import com.noxcrew.noxesium.paper.api.event.QibTriggeredEvent
+import com.noxcrew.noxesium.paper.api.network.serverbound.ServerboundQibTriggeredPacket
+import com.noxcrew.noxesium.paper.api.rule.ServerRules
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap
+import org.bukkit.Bukkit
+import org.bukkit.entity.Entity
+import org.bukkit.entity.Interaction
+import org.bukkit.entity.Player
+import org.bukkit.event.EventHandler
+import org.bukkit.event.EventPriority
+import org.bukkit.event.HandlerList
+import org.bukkit.event.Listener
+import org.bukkit.event.entity.EntityRemoveEvent
+import org.bukkit.event.entity.EntityTeleportEvent
+import org.bukkit.event.player.PlayerQuitEvent
+import org.bukkit.event.player.PlayerTeleportEvent
+import org.bukkit.event.world.EntitiesLoadEvent
+import org.bukkit.event.world.WorldUnloadEvent
+import java.util.UUID
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Determines server-side which qib interactions players trigger, using the same
+ * logic as the client. This allows servers to act on qib interactions without
+ * having to trust the triggers reported by clients, or to verify them with
+ * [isConfirmed]. Each triggered interaction is emitted as a [QibTriggeredEvent].
+ *
+ * Qibs have to be registered with [track] as the server does not know which
+ * interaction entities have a behavior. Each world keeps its own spatial index
+ * of qibs. Once per tick the positions of all players are collected after which
+ * the movement of all players is checked against the index of their world, with
+ * each world being checked in parallel on [executor].
+ *
+ * Only players that have received qib definitions through [ServerRules.qibBehaviors]
+ * are simulated. Effects are not applied on the server, listeners of [QibTriggeredEvent]
+ * can decide to act on them.
+ */
+public class QibEngine(
+    private val manager: NoxesiumManager,
+    private val rules: ServerRules,
+    private val executor: Executor = ForkJoinPool.commonPool(),
+) : Listener {
+
+    public companion object {
+        /** The amount of ticks a trigger reported by a client may differ from the server. */
+        public const val CONFIRM_TICKS: Int = 10
+    }
+
+    /** A qib being tracked by this engine. */
+    private data class TrackedQib(
+        val entity: Interaction,
+        val world: UUID,
+        val behavior: String,
+        val widthZ: Double,
+    )
+
+    /** The qibs in a single world and the players to simulate in it this tick. */
+    private inner class WorldIndex {
+        val grid = QibSpatialGrid()
+        val behaviors = Int2ObjectOpenHashMap<String>()
+        val players = ArrayList<QibPlayerState>()
+
+        /** Simulates all players in this world, may run on any thread. */
+        fun simulate() {
+            try {
+                for (player in players) {
+                    player.simulate(grid, behaviors)
+                }
+            } catch (x: Exception) {
+                manager.logger.error("Caught exception while simulating qib interactions", x)
+            }
+        }
+    }
+
+    private val worlds = HashMap<UUID, WorldIndex>()
+    private val tracked = Int2ObjectOpenHashMap<TrackedQib>()
+    private val unloaded = HashMap<UUID, TrackedQib>()
+    private val players = HashMap<UUID, QibPlayerState>()
+    private val batches = ArrayList<WorldIndex>()
+    private var task: Int = -1
+
+    /**
+     * Registers this engine.
+     */
+    public fun register() {
+        Bukkit.getPluginManager().registerEvents(this, manager.plugin)
+        task = Bukkit.getScheduler().scheduleSyncRepeatingTask(manager.plugin, ::tick, 1, 1)
+    }
+
+    /**
+     * Unregisters this engine.
+     */
+    public fun unregister() {
+        HandlerList.unregisterAll(this)
+        Bukkit.getScheduler().cancelTask(task)
+        worlds.clear()
+        tracked.clear()
+        unloaded.clear()
+        players.clear()
+    }
+
+    /**
+     * Starts tracking [entity] as a qib with [behavior]. The qib is [widthZ] wide on
+     * the Z-axis, which should match [com.noxcrew.noxesium.paper.api.rule.EntityRules.interactionWidthZ].
+     */
+    public fun track(entity: Interaction, behavior: String, widthZ: Double = entity.interactionWidth.toDouble()) {
+        untrack(entity)
+        val qib = TrackedQib(entity, entity.world.uid, behavior, widthZ)
+        tracked.put(entity.entityId, qib)
+        place(qib)
+    }
+
+    /**
+     * Stops tracking [entity].
+     */
+    public fun untrack(entity: Entity) {
+        unloaded -= entity.uniqueId
+        val qib = tracked.remove(entity.entityId) ?: return
+        unplace(qib)
+    }
+
+    /**
+     * Updates the position of [entity] after it has been moved.
+     */
+    public fun update(entity: Interaction) {
+        val qib = tracked[entity.entityId] ?: return
+        track(entity, qib.behavior, qib.widthZ)
+    }
+
+    /**
+     * Returns whether the server saw [player] trigger the interaction in [packet]
+     * in the last [CONFIRM_TICKS] ticks.
+     */
+    public fun isConfirmed(player: Player, packet: ServerboundQibTriggeredPacket): Boolean =
+        players[player.uniqueId]?.isConfirmed(QibTrigger(packet.behavior, packet.qibType, packet.entityId), Bukkit.getCurrentTick()) ?: false
+
+    /** Adds [qib] to the index of its world at its current position. */
+    private fun place(qib: TrackedQib) {
+        val location = qib.entity.location
+        val dx = qib.entity.interactionWidth / 2.0
+        val dz = qib.widthZ / 2.0
+        val index = worlds.getOrPut(qib.world) { WorldIndex() }
+        index.grid.update(
+            qib.entity.entityId,
+            location.x - dx, location.y, location.z - dz,
+            location.x + dx, location.y + qib.entity.interactionHeight, location.z + dz
+        )
+        index.behaviors.put(qib.entity.entityId, qib.behavior)
+    }
+
+    /** Removes [qib] from the index of its world. */
+    private fun unplace(qib: TrackedQib) {
+        val index = worlds[qib.world] ?: return
+        index.grid.remove(qib.entity.entityId)
+        index.behaviors.remove(qib.entity.entityId)
+    }
+
+    /** Simulates all players and emits the interactions they triggered. */
+    private fun tick() {
+        if (tracked.isEmpty()) return
+
+        // Collect the position of every player on the main thread
+        val currentTick = Bukkit.getCurrentTick()
+        for (player in Bukkit.getOnlinePlayers()) {
+            val index = worlds[player.world.uid] ?: continue
+            if (index.grid.size == 0) continue
+            val definitions = manager.getServerRule(player, rules.qibBehaviors)?.value
+            if (definitions.isNullOrEmpty()) continue
+
+            val state = players.getOrPut(player.uniqueId) { QibPlayerState(player) }
+            state.prepare(player.boundingBox, player.world.uid, definitions, currentTick)
+            if (index.players.isEmpty()) batches += index
+            index.players += state
+        }
+        if (batches.isEmpty()) return
+
+        // Simulate each world in parallel, the main thread handles the first world itself
+        val futures = List(batches.size - 1) { CompletableFuture.runAsync(batches[it + 1]::simulate, executor) }
+        batches[0].simulate()
+        for (future in futures) {
+            future.join()
+        }
+
+        // Emit all triggered interactions on the main thread
+        for (index in batches) {
+            for (state in index.players) {
+                for (trigger in state.triggers) {
+                    val qib = tracked[trigger.entityId] ?: continue
+                    val effect = state.definitions[trigger.behavior]?.getEffect(trigger.type) ?: continue
+                    Bukkit.getPluginManager().callEvent(QibTriggeredEvent(state.player, qib.entity, trigger.behavior, trigger.type, effect))
+                }
+                state.triggers.clear()
+            }
+            index.players.clear()
+        }
+        batches.clear()
+    }
+
+    /** Returns the effect of this definition that runs for [type]. */
+    private fun QibDefinition.getEffect(type: ServerboundQibTriggeredPacket.Type): QibEffect? =
+        when (type) {
+            ServerboundQibTriggeredPacket.Type.JUMP -> onJump
+            ServerboundQibTriggeredPacket.Type.INSIDE -> whileInside
+            ServerboundQibTriggeredPacket.Type.ENTER -> onEnter
+            ServerboundQibTriggeredPacket.Type.LEAVE -> onLeave
+        }
+
+    @EventHandler
+    public fun onPlayerJump(e: PlayerJumpEvent) {
+        players[e.player.uniqueId]?.jumpedAt = Bukkit.getCurrentTick()
+    }
+
+    /** Stops players from sweeping through everything between their old and new position. */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public fun onPlayerTeleport(e: PlayerTeleportEvent) {
+        players[e.player.uniqueId]?.teleported()
+    }
+
+    @EventHandler
+    public fun onPlayerQuit(e: PlayerQuitEvent) {
+        players -= e.player.uniqueId
+    }
+
+    /**
+     * Moves qibs along when they are teleported, the new position
+     * is only known a tick later.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public fun onEntityTeleport(e: EntityTeleportEvent) {
+        val entity = e.entity as? Interaction ?: return
+        if (!tracked.containsKey(entity.entityId)) return
+        Bukkit.getScheduler().scheduleSyncDelayedTask(manager.plugin, {
+            if (entity.isValid) update(entity)
+        }, 1)
+    }
+
+    /**
+     * Stops tracking qibs that are removed for good. Qibs in chunks that unload are
+     * remembered so they can be placed again once they load.
+     */
+    @EventHandler
+    public fun onEntityRemoved(e: EntityRemoveEvent) {
+        if (e.cause != EntityRemoveEvent.Cause.UNLOAD) {
+            untrack(e.entity)
+            return
+        }
+        val qib = tracked.remove(e.entity.entityId) ?: return
+        unplace(qib)
+        unloaded[e.entity.uniqueId] = qib
+    }
+
+    /** Places qibs again when their chunk loads, loaded entities have a new entity id. */
+    @EventHandler
+    public fun onEntitiesLoad(e: EntitiesLoadEvent) {
+        if (unloaded.isEmpty()) return
+        for (entity in e.entities) {
+            if (entity !is Interaction) continue
+            val qib = unloaded.remove(entity.uniqueId) ?: continue
+            track(entity, qib.behavior, qib.widthZ)
+        }
+    }
+
+    @EventHandler
+    public fun onWorldUnload(e: WorldUnloadEvent) {
+        val uid = e.world.uid
+        worlds -= uid
+        tracked.values.removeIf { it.world == uid }
+        unloaded.values.removeIf { it.world == uid }
+    }
+}
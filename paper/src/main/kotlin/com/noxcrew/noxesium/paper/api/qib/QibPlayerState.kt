@@ -0,0 +1,202 @@
+package com.noxcrew.noxesium.paper.api.qib
+
+import com.noxcrew.noxesium.api.qib.QibDefinition
+import com.noxcrew.noxesium.paper.api.network.serverbound.ServerboundQibTriggeredPacket
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet
+import org.bukkit.entity.Player
+import org.bukkit.util.BoundingBox
+import java.util.UUID
+
+/** A single qib interaction triggered by a player. */
+internal data class QibTrigger(
+    val behavior: String,
+    val type: ServerboundQibTriggeredPacket.Type,
+    val entityId: Int,
+)
+
+/**
+ * Stores which qibs a single player is colliding with and determines the
+ * interactions they trigger each tick, mirroring the logic used by the client.
+ *
+ * The position and definitions are set on the main thread by [prepare], after
+ * which [simulate] may run on any thread.
+ */
+internal class QibPlayerState(val player: Player) {
+
+    private val box = DoubleArray(6)
+    private val lastBox = DoubleArray(6)
+    private var hasLastBox = false
+    private var lastTick = Int.MIN_VALUE
+    private var world: UUID? = null
+    private var tick = 0L
+
+    /** The server tick at which the player last jumped. */
+    var jumpedAt: Int = Int.MIN_VALUE
+
+    // Whether the player jumped since the last tick they were prepared
+    private var jumping = false
+
+    /** The qib definitions sent to the player. */
+    var definitions: Map<String, QibDefinition> = emptyMap()
+        private set
+
+    /** The interactions triggered in the last tick. */
+    val triggers: MutableList<QibTrigger> = ArrayList()
+
+    // The tick at which the player started colliding with each behavior and each entity
+    private val collidingWithTypes = Object2LongOpenHashMap<String>()
+    private val collidingWithEntities = Int2LongOpenHashMap()
+    private val collidingBehaviors = Int2ObjectOpenHashMap<String>()
+    private val triggeredJump = IntOpenHashSet()
+
+    /** The server tick at which each interaction was last triggered, used to confirm triggers reported by the client. */
+    private val recent = Object2IntOpenHashMap<QibTrigger>()
+
+    // Re-used between ticks to avoid allocating new collections every tick
+    private val hits = IntArrayList()
+    private val hitSet = IntOpenHashSet()
+    private val collidingTypes = ObjectOpenHashSet<String>()
+
+    /**
+     * Stores the current [boundingBox] in [world] and [definitions] of the player at
+     * server tick [currentTick]. If the player was not simulated on the previous tick
+     * the next sweep starts at the current position. If the player changed worlds
+     * they are no longer colliding with any of the qibs of the previous world.
+     * Jumps are only used if they happened since the previous server tick.
+     */
+    fun prepare(boundingBox: BoundingBox, world: UUID, definitions: Map<String, QibDefinition>, currentTick: Int) {
+        if (lastTick != currentTick - 1) hasLastBox = false
+        if (this.world != world) {
+            this.world = world
+            hasLastBox = false
+            collidingWithTypes.clear()
+            collidingWithEntities.clear()
+            collidingBehaviors.clear()
+            triggeredJump.clear()
+        }
+        lastTick = currentTick
+        jumping = jumpedAt >= currentTick - 1
+        jumpedAt = Int.MIN_VALUE
+        this.definitions = definitions
+        box[0] = boundingBox.minX
+        box[1] = boundingBox.minY
+        box[2] = boundingBox.minZ
+        box[3] = boundingBox.maxX
+        box[4] = boundingBox.maxY
+        box[5] = boundingBox.maxZ
+    }
+
+    /**
+     * Marks that the player was teleported, so the next sweep starts at their new
+     * position instead of moving them through everything in between.
+     */
+    fun teleported() {
+        hasLastBox = false
+    }
+
+    /**
+     * Moves the player through the qibs in [grid] whose behaviors are stored in
+     * [behaviors] and stores all triggered interactions in [triggers].
+     */
+    fun simulate(grid: QibSpatialGrid, behaviors: Int2ObjectMap<String>) {
+        tick++
+        recent.object2IntEntrySet().removeIf { lastTick - it.intValue > QibEngine.CONFIRM_TICKS }
+
+        // Jumps happen before the movement of this tick is checked
+        if (jumping) {
+            jumping = false
+            jump()
+        }
+
+        // Sweep the hitbox from the last position to the current one so we
+        // collide with everything the player moved through this tick.
+        hits.clear()
+        grid.sweep(if (hasLastBox) lastBox else null, box, hits)
+        box.copyInto(lastBox)
+        hasLastBox = true
+
+        // Determine all current collisions
+        hitSet.clear()
+        collidingTypes.clear()
+        for (index in 0 until hits.size) {
+            val entityId = hits.getInt(index)
+            val behavior = behaviors[entityId] ?: continue
+            hitSet.add(entityId)
+            val definition = definitions[behavior] ?: continue
+
+            // Try to trigger the entry
+            if ((!definition.triggerEnterLeaveOnSwitch && !collidingWithTypes.containsKey(behavior)) ||
+                (definition.triggerEnterLeaveOnSwitch && !collidingWithEntities.containsKey(entityId))
+            ) {
+                if (definition.onEnter != null) trigger(behavior, ServerboundQibTriggeredPacket.Type.ENTER, entityId)
+            }
+
+            // Always trigger the while inside logic
+            if (definition.whileInside != null) trigger(behavior, ServerboundQibTriggeredPacket.Type.INSIDE, entityId)
+            collidingTypes.add(behavior)
+            collidingWithTypes.putIfAbsent(behavior, tick)
+            collidingWithEntities.putIfAbsent(entityId, tick)
+            collidingBehaviors.put(entityId, behavior)
+        }
+
+        // Only keep the types you are still colliding with
+        collidingWithTypes.keys.retainAll(collidingTypes)
+        if (collidingWithEntities.isEmpty()) return
+
+        val iterator = collidingWithEntities.keys.iterator()
+        while (iterator.hasNext()) {
+            // If you're still colliding with this entity we ignore it
+            val entityId = iterator.nextInt()
+            if (entityId in hitSet) continue
+            iterator.remove()
+            triggeredJump.remove(entityId)
+
+            // Execute the behavior if we always do or if you've left this type
+            val behavior = collidingBehaviors.remove(entityId) ?: continue
+            val definition = definitions[behavior] ?: continue
+            if ((!definition.triggerEnterLeaveOnSwitch && !collidingWithTypes.containsKey(behavior)) ||
+                (definition.triggerEnterLeaveOnSwitch && !collidingWithEntities.containsKey(entityId))
+            ) {
+                if (definition.onLeave != null) trigger(behavior, ServerboundQibTriggeredPacket.Type.LEAVE, entityId)
+            }
+        }
+    }
+
+    /**
+     * Returns whether the player triggered [trigger] in the last [QibEngine.CONFIRM_TICKS]
+     * ticks before server tick [currentTick].
+     */
+    fun isConfirmed(trigger: QibTrigger, currentTick: Int): Boolean =
+        recent.containsKey(trigger) && currentTick - recent.getInt(trigger) <= QibEngine.CONFIRM_TICKS
+
+    /** Triggers the jump behavior of all entities the player is colliding with. */
+    private fun jump() {
+        val iterator = collidingWithEntities.keys.iterator()
+        while (iterator.hasNext()) {
+            // Don't trigger jumping twice for the same entity!
+            val entityId = iterator.nextInt()
+            if (entityId in triggeredJump) continue
+
+            val behavior = collidingBehaviors[entityId] ?: continue
+            val definition = definitions[behavior] ?: continue
+            if (definition.onJump != null) {
+                trigger(behavior, ServerboundQibTriggeredPacket.Type.JUMP, entityId)
+                triggeredJump.add(entityId)
+            }
+        }
+    }
+
+    /** Records that the player triggered the given interaction. */
+    private fun trigger(behavior: String, type: ServerboundQibTriggeredPacket.Type, entityId: Int) {
+        val trigger = QibTrigger(behavior, type, entityId)
+        triggers += trigger
+        recent.put(trigger, lastTick)
+    }
+}
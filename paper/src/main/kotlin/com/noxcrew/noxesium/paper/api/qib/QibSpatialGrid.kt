@@ -0,0 +1,177 @@
+package com.noxcrew.noxesium.paper.api.qib
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap
+import it.unimi.dsi.fastutil.ints.IntArrayList
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * A uniform grid of columns storing the boxes of interaction entities by their id.
+ * Each entity is linked into every column it overlaps, so moving an entity only
+ * touches the columns it enters or leaves.
+ *
+ * Queries re-use scratch state and may only be run by one thread at a time, the
+ * grid must not be changed while a query is running.
+ */
+internal class QibSpatialGrid(private val cellSize: Double = 4.0) {
+
+    private val cells = Long2ObjectOpenHashMap<IntArrayList>()
+    private val boxes = Int2ObjectOpenHashMap<DoubleArray>()
+
+    // Scratch state used by queries
+    private val tested = IntOpenHashSet()
+    private val times = DoubleArrayList()
+    private val state = DoubleArray(9)
+
+    /** The amount of entities in this grid. */
+    val size: Int
+        get() = boxes.size
+
+    /** Stores the entity with [id] at the given box, returns whether it was newly added. */
+    fun update(id: Int, minX: Double, minY: Double, minZ: Double, maxX: Double, maxY: Double, maxZ: Double): Boolean {
+        val existing = boxes[id]
+        if (existing != null) {
+            // Only re-link the entity if it moved into different columns
+            if (cell(existing[0]) != cell(minX) || cell(existing[2]) != cell(minZ) ||
+                cell(existing[3]) != cell(maxX) || cell(existing[5]) != cell(maxZ)
+            ) {
+                unlink(id, existing)
+                link(id, minX, minZ, maxX, maxZ)
+            }
+            existing[0] = minX
+            existing[1] = minY
+            existing[2] = minZ
+            existing[3] = maxX
+            existing[4] = maxY
+            existing[5] = maxZ
+            return false
+        }
+
+        boxes[id] = doubleArrayOf(minX, minY, minZ, maxX, maxY, maxZ)
+        link(id, minX, minZ, maxX, maxZ)
+        return true
+    }
+
+    /** Removes the entity with [id], returns whether it was in this grid. */
+    fun remove(id: Int): Boolean {
+        val existing = boxes.remove(id) ?: return false
+        unlink(id, existing)
+        return true
+    }
+
+    /** Removes all entities. */
+    fun clear() {
+        cells.clear()
+        boxes.clear()
+    }
+
+    /**
+     * Adds the ids of all entities touched by a box moving from [from] to [to] to
+     * [output], ordered by the moment at which they were first touched. If [from]
+     * is `null` the box did not move and only overlapping entities are found.
+     */
+    fun sweep(from: DoubleArray?, to: DoubleArray, output: IntArrayList) {
+        val start = from ?: to
+
+        // Cast the center of the moving box through all boxes grown by its half extents
+        state[0] = (start[0] + start[3]) / 2.0
+        state[1] = (start[1] + start[4]) / 2.0
+        state[2] = (start[2] + start[5]) / 2.0
+        state[3] = (to[3] - to[0]) / 2.0
+        state[4] = (to[4] - to[1]) / 2.0
+        state[5] = (to[5] - to[2]) / 2.0
+        state[6] = (to[0] + to[3]) / 2.0 - state[0]
+        state[7] = (to[1] + to[4]) / 2.0 - state[1]
+        state[8] = (to[2] + to[5]) / 2.0 - state[2]
+
+        val minCellX = cell(min(start[0], to[0]))
+        val maxCellX = cell(max(start[3], to[3]))
+        val minCellZ = cell(min(start[2], to[2]))
+        val maxCellZ = cell(max(start[5], to[5]))
+        for (x in minCellX..maxCellX) {
+            for (z in minCellZ..maxCellZ) {
+                val cell = cells[key(x, z)] ?: continue
+                for (index in 0 until cell.size) {
+                    val id = cell.getInt(index)
+                    if (!tested.add(id)) continue
+
+                    val time = time(boxes[id] ?: continue)
+                    if (time.isInfinite()) continue
+
+                    // Insert the hit sorted by time of impact, there are only ever a few hits
+                    var position = output.size
+                    output.add(id)
+                    times.add(time)
+                    while (position > 0 && times.getDouble(position - 1) > time) {
+                        output.set(position, output.getInt(position - 1))
+                        times.set(position, times.getDouble(position - 1))
+                        position--
+                    }
+                    output.set(position, id)
+                    times.set(position, time)
+                }
+            }
+        }
+        tested.clear()
+        times.clear()
+    }
+
+    /**
+     * Returns the first moment between 0 and 1 at which the current sweep touches
+     * [box], or infinity if it never does.
+     */
+    private fun time(box: DoubleArray): Double {
+        var enter = 0.0
+        var exit = 1.0
+        for (axis in 0 until 3) {
+            val center = state[axis]
+            val extent = state[axis + 3]
+            val movement = state[axis + 6]
+            val lower = box[axis] - extent
+            val upper = box[axis + 3] + extent
+
+            if (movement == 0.0) {
+                // Without movement on this axis we have to be inside the entire time
+                if (center <= lower || center >= upper) return Double.POSITIVE_INFINITY
+            } else {
+                val near = (lower - center) / movement
+                val far = (upper - center) / movement
+                enter = max(enter, min(near, far))
+                exit = min(exit, max(near, far))
+                if (enter > exit) return Double.POSITIVE_INFINITY
+            }
+        }
+        return enter
+    }
+
+    /** Adds [id] to all columns overlapping the given area. */
+    private fun link(id: Int, minX: Double, minZ: Double, maxX: Double, maxZ: Double) {
+        for (x in cell(minX)..cell(maxX)) {
+            for (z in cell(minZ)..cell(maxZ)) {
+                cells.getOrPut(key(x, z)) { IntArrayList(4) }.add(id)
+            }
+        }
+    }
+
+    /** Removes [id] from all columns overlapping [box]. */
+    private fun unlink(id: Int, box: DoubleArray) {
+        for (x in cell(box[0])..cell(box[3])) {
+            for (z in cell(box[2])..cell(box[5])) {
+                val key = key(x, z)
+                val cell = cells[key] ?: continue
+                cell.rem(id)
+                if (cell.isEmpty()) cells.remove(key)
+            }
+        }
+    }
+
+    /** Returns the column coordinate of [value]. */
+    private fun cell(value: Double): Int = floor(value / cellSize).toInt()
+
+    /** Returns the key of the column at [x], [z]. */
+    private fun key(x: Int, z: Int): Long = (x.toLong() shl 32) or (z.toLong() and 0xFFFFFFFFL)
+}
@@ -2,6 +2,7 @@ package com.noxcrew.noxesium.paper.api.rule
 
 import com.noxcrew.noxesium.api.protocol.rule.ServerRuleIndices
 import com.noxcrew.noxesium.api.qib.QibDefinition
+import com.noxcrew.noxesium.api.qib.QibSpatialIndexType
 import com.noxcrew.noxesium.paper.api.NoxesiumManager
 import com.noxcrew.noxesium.paper.api.RuleFunction
 import org.bukkit.inventory.ItemStack
@@ -99,6 +100,11 @@ public class ServerRules(
      */
     public val riptideCoyoteTime: RuleFunction<Int> = register(ServerRuleIndices.RIPTIDE_COYOTE_TIME, 10) { IntServerRule(it, 5) }
 
+    /**
+     * Sets the type of spatial index used to find colliding qibs.
+     */
+    public val qibSpatialIndex: RuleFunction<Optional<QibSpatialIndexType>> = register(ServerRuleIndices.QIB_SPATIAL_INDEX, 13, ::OptionalEnumServerRule)
+
     /** Registers a new [rule]. */
     private fun <T : Any> register(index: Int, minimumProtocol: Int, rule: (Int) -> RemoteServerRule<T>): RuleFunction<T> {
         val function = RuleFunction(index, rule)